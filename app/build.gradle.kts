@@ -2,6 +2,9 @@
 plugins {
     // Apply the application plugin to add support for building a CLI application in Java.
     application
+
+    // JMH benchmarks under src/jmh/java, run with `./gradlew jmh`
+    alias(libs.plugins.jmh)
 }
 
 repositories {
@@ -50,6 +53,125 @@ tasks.named<Test>("test") {
     useJUnitPlatform()
 }
 
+jmh {
+    jmhVersion = libs.versions.jmh.asProvider()
+
+    // benchmark 可以用 src/test 裡的 stub (例如 SlowTodoRepository)，不用在 jmh 裡再複製一份
+    includeTests = true
+
+    // 結果輸出成 JSON, 方便在不同 build 之間 diff
+    resultFormat = "JSON"
+    resultsFile = layout.buildDirectory.file("reports/jmh/results.json")
+
+    fork = 1
+    warmupIterations = 2
+    warmup = "1s"
+    iterations = 3
+    timeOnIteration = "2s"
+
+    // 只跑部分 benchmark: ./gradlew jmh -PjmhIncludes=DatabaseManagerBenchmark
+    providers.gradleProperty("jmhIncludes").orNull?.let { includes = listOf(it) }
+
+    // 加上 profiler，例如 GC profiler 的 gc.alloc.rate.norm (bytes/op): ./gradlew jmh -PjmhProfilers=gc
+    providers.gradleProperty("jmhProfilers").orNull?.let { profilers = it.split(",") }
+}
+
+// Json 的 benchmark suite 用自己的 JMH 設定跑 (只跑 JsonBenchmark、加上 GC profiler)，跟上面的 jmh 設定無關
+// 直接執行 jmhJar，不用看 command line 上的 task 名稱來切換 includes / profilers
+val jsonBenchmarkResults = layout.buildDirectory.file("reports/jmh/json-results.json")
+
+tasks.register<JavaExec>("jsonBenchmarkRun") {
+    group = "verification"
+    description = "Runs JsonBenchmark with the GC profiler."
+    classpath(tasks.named("jmhJar"))
+    mainClass = "org.openjdk.jmh.Main"
+
+    val resultsFile = jsonBenchmarkResults.get().asFile
+    args("todolist\\.utils\\.json\\.JsonBenchmark\\.", "-prof", "gc",
+        "-f", "1", "-wi", "3", "-w", "1s", "-i", "3", "-r", "2s",
+        "-rf", "json", "-rff", resultsFile.absolutePath)
+    outputs.file(resultsFile)
+    outputs.upToDateWhen { false }
+    doFirst { resultsFile.parentFile.mkdirs() }
+}
+
+// 跑完 JsonBenchmark 之後跟 baseline 比較 bytes/op (gc.alloc.rate.norm)，多配置超過 threshold 時 build 失敗
+// ns/op 只印出來參考：fork 1 次、幾秒鐘的量測誤差太大，拿來當 gate 會一直誤判；配置量則很穩定
+//   ./gradlew --offline jsonBenchmark
+//   ./gradlew --offline jsonBenchmark -PjmhRegressionThreshold=0.2   # 預設 0.10 (10%)
+//   ./gradlew --offline jsonBenchmark -PjmhUpdateBaseline=true       # 用這次的結果更新 baseline
+// baseline (src/jmh/baseline/JsonBenchmark.json) 是 benchmark + params -> bytes/op，
+// 要在執行 gate 的機器上用 -PjmhUpdateBaseline=true 產生之後再 commit (JDK / GC 設定不同，bytes/op 也會不同)；
+// 找不到 baseline 或 baseline 裡沒有的 benchmark 都算失敗
+tasks.register("jsonBenchmark") {
+    group = "verification"
+    description = "Runs JsonBenchmark and fails when bytes/op regress against the committed baseline."
+    dependsOn("jsonBenchmarkRun")
+
+    val results = jsonBenchmarkResults
+    val baseline = layout.projectDirectory.file("src/jmh/baseline/JsonBenchmark.json")
+    val threshold = providers.gradleProperty("jmhRegressionThreshold").map { it.toDouble() }.orElse(0.10)
+    val updateBaseline = providers.gradleProperty("jmhUpdateBaseline").map { it.toBoolean() }.orElse(false)
+
+    doLast {
+        // benchmark + params -> (ns/op, bytes/op)
+        @Suppress("UNCHECKED_CAST")
+        fun scores(file: File): Map<String, Pair<Double, Double?>> =
+            (groovy.json.JsonSlurper().parse(file) as List<Map<String, Any?>>).associate { run ->
+                val params = (run["params"] as Map<String, Any?>?).orEmpty().toSortedMap().entries
+                    .joinToString(",") { "${it.key}=${it.value}" }
+                val primary = run["primaryMetric"] as Map<String, Any?>
+                val secondary = run["secondaryMetrics"] as Map<String, Map<String, Any?>>?
+                val bytes = secondary?.get("gc.alloc.rate.norm")?.get("score") as Number?
+                "${(run["benchmark"] as String).substringAfterLast('.')}($params)" to
+                    ((primary["score"] as Number).toDouble() to bytes?.toDouble())
+            }
+
+        val current = scores(results.get().asFile)
+        val baselineFile = baseline.asFile
+        if (updateBaseline.get()) {
+            val missing = current.filterValues { it.second == null }.keys
+            if (missing.isNotEmpty()) {
+                throw GradleException("No gc.alloc.rate.norm for: ${missing.joinToString()}")
+            }
+            baselineFile.parentFile.mkdirs()
+            baselineFile.writeText(current.toSortedMap().entries.joinToString(",\n", "{\n", "\n}\n") {
+                "  \"${it.key}\": ${Math.rint(it.value.second!!)}"
+            })
+            logger.lifecycle("Updated baseline $baselineFile")
+            return@doLast
+        }
+        if (!baselineFile.exists()) {
+            throw GradleException("No baseline at $baselineFile, run with -PjmhUpdateBaseline=true to create one")
+        }
+
+        @Suppress("UNCHECKED_CAST")
+        val previous = (groovy.json.JsonSlurper().parse(baselineFile) as Map<String, Number>)
+            .mapValues { it.value.toDouble() }
+        val limit = 1 + threshold.get()
+        val regressions = mutableListOf<String>()
+        for ((key, score) in current) {
+            val (nanos, bytes) = score
+            val baseBytes = previous[key]
+            logger.lifecycle("%-48s %12.1f ns/op %12.0f B/op (baseline %s)".format(key, nanos, bytes ?: Double.NaN,
+                baseBytes?.let { "%.0f".format(it) } ?: "none"))
+            if (bytes == null || baseBytes == null) {
+                regressions += "$key: no " + (if (bytes == null) "gc.alloc.rate.norm in the results" else "baseline")
+                continue
+            }
+            // JVM 量到的配置量大約有幾十 bytes 的誤差，很小的絕對差距不算 regression
+            if (bytes > baseBytes * limit && bytes - baseBytes > 64) {
+                regressions += "$key: %.0f -> %.0f B/op".format(baseBytes, bytes)
+            }
+        }
+
+        if (regressions.isNotEmpty()) {
+            throw GradleException("JsonBenchmark allocation regressed more than %.0f%%:\n  ".format(
+                threshold.get() * 100) + regressions.joinToString("\n  "))
+        }
+    }
+}
+
 tasks.register<Jar>("fatJar") {
     // 設定 JAR 檔案的基本名稱
     archiveBaseName.set("${project.name}-all")
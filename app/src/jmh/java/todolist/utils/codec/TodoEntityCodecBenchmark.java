@@ -0,0 +1,82 @@
+package todolist.utils.codec;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import todolist.entities.TodoEntity;
+import todolist.utils.json.Json;
+
+// 比較 /v3 cache value 使用 JSON (Gson) 與 TodoEntityCodec (binary / binary + Deflate) 的 encode / decode 耗時
+// 每筆 entity 的 bytes 在 setup 時印出，decode ns/entry = 結果 / entities
+//
+// ./gradlew jmh -PjmhIncludes=TodoEntityCodecBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TodoEntityCodecBenchmark {
+
+  @Param({ "10", "100", "1000" })
+  public int entities;
+
+  private final TodoEntityCodec binaryCodec = new TodoEntityCodec(0);
+  private final TodoEntityCodec compressedCodec = new TodoEntityCodec(TodoEntityCodec.DEFAULT_COMPRESSION_THRESHOLD);
+
+  private List<TodoEntity> todos;
+  private String json;
+  private byte[] binary;
+  private byte[] compressed;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    todos = new ArrayList<>(entities);
+    for (int i = 1; i <= entities; i++) {
+      todos.add(new TodoEntity(i, "Learn SQL " + i, "Understand the basics of SQL, part " + i, i % 2 == 0));
+    }
+    json = Json.toJSON(todos);
+    binary = binaryCodec.encode(todos);
+    compressed = compressedCodec.encode(todos);
+
+    System.out.printf("%nentities=%d bytes/entry json=%.1f binary=%.1f binary+deflate=%.1f%n", entities,
+        (double) Json.toBytes(todos).length / entities, (double) binary.length / entities,
+        (double) compressed.length / entities);
+  }
+
+  @Benchmark
+  public String encodeJson() {
+    return Json.toJSON(todos);
+  }
+
+  @Benchmark
+  public byte[] encodeBinary() {
+    return binaryCodec.encode(todos);
+  }
+
+  @Benchmark
+  public byte[] encodeCompressed() {
+    return compressedCodec.encode(todos);
+  }
+
+  @Benchmark
+  public List<TodoEntity> decodeJson() {
+    return Json.fromJSONToList(json, TodoEntity.class);
+  }
+
+  @Benchmark
+  public List<TodoEntity> decodeBinary() {
+    return binaryCodec.decode(binary);
+  }
+
+  @Benchmark
+  public List<TodoEntity> decodeCompressed() {
+    return compressedCodec.decode(compressed);
+  }
+}
@@ -0,0 +1,72 @@
+package todolist.utils.codec;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import todolist.entities.TodoEntity;
+import todolist.utils.json.Json;
+
+// 比較 list response 的兩種格式：JSON (預設) 和 Accept: application/x-todo-binary 的 binary format
+// client 端 decode 也算進來，JSON 用 Json.fromJSON(byte[])，binary 用 TodoEntityCodec.decode
+// 兩種格式的 response 大小在 setup 時印出
+//
+// ./gradlew jmh -PjmhIncludes=WireFormatBenchmark -PjmhProfilers=gc
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class WireFormatBenchmark {
+
+  @Param({ "10", "100", "1000" })
+  public int entities;
+
+  @Param({ "ascii", "cjk" })
+  public String text;
+
+  private List<TodoEntity> todos;
+  private byte[] json;
+  private byte[] binary;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    todos = new ArrayList<>(entities);
+    for (int i = 1; i <= entities; i++) {
+      todos.add("cjk".equals(text)
+          ? new TodoEntity(i, "學習 PostgreSQL 索引 #" + i, "第 " + i + " 項：整理待辦事項並更新進度，完成後通知團隊。", i % 2 == 0)
+          : new TodoEntity(i, "Learn SQL " + i, "Understand the basics of SQL, part " + i, i % 2 == 0));
+    }
+    json = Json.toBytes(todos);
+    binary = TodoEntityCodec.UNCOMPRESSED.encode(todos);
+
+    System.out.printf("%nentities=%d text=%s bytes json=%d binary=%d (%.0f%%)%n", entities, text, json.length,
+        binary.length, 100.0 * binary.length / json.length);
+  }
+
+  @Benchmark
+  public byte[] encodeJson() {
+    return Json.toBytes(todos);
+  }
+
+  @Benchmark
+  public byte[] encodeBinary() {
+    return TodoEntityCodec.UNCOMPRESSED.encode(todos);
+  }
+
+  @Benchmark
+  public TodoEntity[] decodeJson() {
+    return Json.fromJSON(json, TodoEntity[].class);
+  }
+
+  @Benchmark
+  public List<TodoEntity> decodeBinary() {
+    return TodoEntityCodec.UNCOMPRESSED.decode(binary);
+  }
+}
@@ -0,0 +1,126 @@
+package todolist.utils.database.postgres;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.infra.Blackhole;
+
+// 比較所有 DatabaseManager 實作的借出 + 歸還 throughput 與 latency (SampleTime 會輸出 p50/p99)
+//
+// 連線是 StubConnectionFactory 產生的 stub, 量到的只有 pool 本身的 lock / CAS / bookkeeping 開銷
+// v2 在連線用完時會直接丟例外 (fail fast), 失敗次數記在 borrowFailed counter
+//
+// ./gradlew jmh -PjmhIncludes=DatabaseManagerBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DatabaseManagerBenchmark {
+
+  @Param({ "v1", "v2", "v3", "v4", "v5" })
+  public String implementation;
+
+  @Param({ "4", "10", "32" })
+  public int poolSize;
+
+  private DatabaseManager databaseManager;
+  private PrintStream originalOut;
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Failures {
+    public long borrowFailed;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      borrowFailed = 0;
+    }
+  }
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    // v1, v2 每次歸還都會 println, 避免 console I/O 蓋過 pool 本身的開銷
+    originalOut = System.out;
+    System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+    ConnectionFactory connectionFactory = new StubConnectionFactory();
+    long borrowTimeoutMs = 30000;
+    long validationIntervalMs = 30000;
+    switch (implementation) {
+      case "v1":
+        databaseManager = new DatabaseManagerImpl(connectionFactory, poolSize, borrowTimeoutMs, validationIntervalMs);
+        break;
+      case "v2":
+        databaseManager = new DatabaseManagerImplv2(connectionFactory, poolSize);
+        break;
+      case "v3":
+        databaseManager = new DatabaseManagerImplv3(connectionFactory, poolSize, borrowTimeoutMs);
+        break;
+      case "v4":
+        databaseManager = new DatabaseManagerImplv4(connectionFactory, poolSize, borrowTimeoutMs,
+            validationIntervalMs);
+        break;
+      case "v5":
+        databaseManager = new DatabaseManagerImplv5(connectionFactory, poolSize, borrowTimeoutMs,
+            validationIntervalMs);
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown implementation: " + implementation);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    databaseManager.shutdown();
+    System.setOut(originalOut);
+  }
+
+  private void borrowAndRelease(Blackhole blackhole, Failures failures) {
+    try (DatabaseConnection connection = databaseManager.getConnection()) {
+      blackhole.consume(connection);
+    } catch (Exception e) {
+      failures.borrowFailed++;
+    }
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void borrowRelease_1thread(Blackhole blackhole, Failures failures) {
+    borrowAndRelease(blackhole, failures);
+  }
+
+  @Benchmark
+  @Threads(8)
+  public void borrowRelease_8threads(Blackhole blackhole, Failures failures) {
+    borrowAndRelease(blackhole, failures);
+  }
+
+  @Benchmark
+  @Threads(32)
+  public void borrowRelease_32threads(Blackhole blackhole, Failures failures) {
+    borrowAndRelease(blackhole, failures);
+  }
+
+  @Benchmark
+  @Threads(64)
+  public void borrowRelease_64threads(Blackhole blackhole, Failures failures) {
+    borrowAndRelease(blackhole, failures);
+  }
+
+  @Benchmark
+  @Threads(128)
+  public void borrowRelease_128threads(Blackhole blackhole, Failures failures) {
+    borrowAndRelease(blackhole, failures);
+  }
+}
@@ -0,0 +1,30 @@
+package todolist.utils.database.postgres;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+
+// 不需要 Postgres 的 stub connection, 所有 pool 實作都可以拿來量測借還本身的開銷
+// isValid() 立刻回傳 true, 其他方法都是 no-op
+public class StubConnectionFactory implements ConnectionFactory {
+
+  @Override
+  public Connection create() {
+    return (Connection) Proxy.newProxyInstance(StubConnectionFactory.class.getClassLoader(),
+        new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "isValid":
+              return true;
+            case "isClosed":
+              return false;
+            case "hashCode":
+              return System.identityHashCode(proxy);
+            case "equals":
+              return proxy == args[0];
+            case "toString":
+              return "StubConnection@" + Integer.toHexString(System.identityHashCode(proxy));
+            default:
+              return null;
+          }
+        });
+  }
+}
@@ -0,0 +1,102 @@
+package todolist.utils.database.redis;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+// 比較逐一呼叫 (N 次 round trip) 與 batch operations (MGET / pipeline, 1 次 round trip) 讀寫 N 個 key 的耗時
+//
+// 需要真的 Redis (docker compose up todo-redis)，連線設定跟 app 一樣讀 db.properties 的 redis.url
+// 差距主要來自 round trip，Redis 在遠端 (RTT 越大) 時 batch 的優勢越明顯
+//
+// ./gradlew jmh -PjmhIncludes=RedisBatchBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RedisBatchBenchmark {
+  private static final String KEY_PREFIX = "bench:batch:";
+  private static final long TTL_SECONDS = 300;
+
+  @Param({ "10", "100", "1000" })
+  public int keyCount;
+
+  private RedisManager redisManager;
+  private List<String> keys;
+  private List<String> hashKeys;
+  private Map<String, String> values;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    redisManager = RedisManagerImpl.getInstance();
+    keys = new ArrayList<>(keyCount);
+    hashKeys = new ArrayList<>(keyCount);
+    values = new LinkedHashMap<>();
+    for (int i = 0; i < keyCount; i++) {
+      String key = KEY_PREFIX + "string:" + i;
+      String hashKey = KEY_PREFIX + "hash:" + i;
+      keys.add(key);
+      hashKeys.add(hashKey);
+      values.put(key, "{\"id\":" + i + ",\"title\":\"title " + i + "\",\"completed\":false}");
+      redisManager.hset(hashKey, "title", "title " + i);
+      redisManager.hset(hashKey, "completed", "false");
+    }
+    redisManager.msetWithExpiry(values, TTL_SECONDS);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    for (int i = 0; i < keyCount; i++) {
+      redisManager.delete(keys.get(i));
+      redisManager.delete(hashKeys.get(i));
+    }
+  }
+
+  @Benchmark
+  public void getSequential(Blackhole blackhole) {
+    for (String key : keys) {
+      blackhole.consume(redisManager.get(key));
+    }
+  }
+
+  @Benchmark
+  public List<String> mget() {
+    return redisManager.mget(keys);
+  }
+
+  @Benchmark
+  public void setWithExpirySequential() {
+    for (Map.Entry<String, String> entry : values.entrySet()) {
+      redisManager.setWithExpiry(entry.getKey(), entry.getValue(), TTL_SECONDS);
+    }
+  }
+
+  @Benchmark
+  public void msetWithExpiry() {
+    redisManager.msetWithExpiry(values, TTL_SECONDS);
+  }
+
+  @Benchmark
+  public void hgetAllSequential(Blackhole blackhole) {
+    for (String hashKey : hashKeys) {
+      blackhole.consume(redisManager.hgetAll(hashKey));
+    }
+  }
+
+  @Benchmark
+  public List<Map<String, String>> hgetAllPipelined() {
+    return redisManager.hgetAllPipelined(hashKeys);
+  }
+}
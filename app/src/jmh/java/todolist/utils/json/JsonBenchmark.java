@@ -0,0 +1,86 @@
+package todolist.utils.json;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import todolist.entities.TodoEntity;
+
+// Json 的 hot path：encode (toJSON / toBytes) 和 decode (fromJSON(byte[]) / fromJSONToList / fromJSONToMap)
+// - entities：小 (一般的一頁)、中、大 (匯出或大的 per_page)
+// - text：ascii 或 cjk (中日文加上 emoji，UTF-8 每個字 3 / 4 bytes，跟正式資料比較接近)
+//
+// ./gradlew jsonBenchmark 會帶 GC profiler (bytes/op = gc.alloc.rate.norm) 跑這個 suite，
+// 再跟 commit 進來的 baseline 比較 bytes/op，超過 regression threshold 時 build 失敗 (ns/op 只印出來參考)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class JsonBenchmark {
+  private static final String[] CJK_TITLES = {
+      "學習 PostgreSQL 索引 🐘", "買牛奶和雞蛋 🥛", "準備週會簡報 📊", "データベースの移行 🚚", "閱讀《設計資料密集型應用》📚",
+  };
+
+  @Param({ "10", "100", "1000" })
+  public int entities;
+
+  @Param({ "ascii", "cjk" })
+  public String text;
+
+  private List<TodoEntity> todos;
+  private byte[] listBytes;
+  private String listJson;
+  private String mapJson;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    todos = new ArrayList<>(entities);
+    Map<String, TodoEntity> byId = new LinkedHashMap<>();
+    for (int i = 1; i <= entities; i++) {
+      TodoEntity todo = "cjk".equals(text)
+          ? new TodoEntity(i, CJK_TITLES[i % CJK_TITLES.length] + " #" + i,
+              "第 " + i + " 項：整理待辦事項並更新進度，完成後通知團隊。", i % 2 == 0)
+          : new TodoEntity(i, "Learn SQL " + i, "Understand the basics of SQL, part " + i, i % 2 == 0);
+      todos.add(todo);
+      byId.put(String.valueOf(i), todo);
+    }
+    listBytes = Json.toBytes(todos);
+    listJson = Json.toJSON(todos);
+    mapJson = Json.toJSON(byId);
+  }
+
+  @Benchmark
+  public String toJSON() {
+    return Json.toJSON(todos);
+  }
+
+  @Benchmark
+  public byte[] toBytes() {
+    return Json.toBytes(todos);
+  }
+
+  // fromJSON 只接受 Class，用 array type decode 整個 list
+  @Benchmark
+  public TodoEntity[] fromJSONBytes() {
+    return Json.fromJSON(listBytes, TodoEntity[].class);
+  }
+
+  @Benchmark
+  public List<TodoEntity> fromJSONToList() {
+    return Json.fromJSONToList(listJson, TodoEntity.class);
+  }
+
+  @Benchmark
+  public Map<String, TodoEntity> fromJSONToMap() {
+    return Json.fromJSONToMap(mapJson, String.class, TodoEntity.class);
+  }
+}
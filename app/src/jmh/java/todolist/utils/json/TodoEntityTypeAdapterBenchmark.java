@@ -0,0 +1,95 @@
+package todolist.utils.json;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import todolist.entities.TodoEntity;
+
+// 比較 Gson reflective adapter (原本的做法) 和手寫 TypeAdapter 的 encode / decode
+// - reflective*: new Gson() + request body 先讀成 String，List type 每次重新建立
+// - adapter*: Json 註冊的 TodoEntityTypeAdapter，request body 直接從 InputStream decode
+//
+// bytes/op 用 GC profiler 的 gc.alloc.rate.norm：
+// ./gradlew jmh -PjmhIncludes=TodoEntityTypeAdapterBenchmark -PjmhProfilers=gc
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TodoEntityTypeAdapterBenchmark {
+
+  @Param({ "1", "100" })
+  public int entities;
+
+  private final Gson reflective = new Gson();
+  private final OutputStream discard = OutputStream.nullOutputStream();
+
+  private List<TodoEntity> todos;
+  private byte[] body; // 單筆 todo 的 request body
+  private String listJson;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    todos = new ArrayList<>(entities);
+    for (int i = 1; i <= entities; i++) {
+      todos.add(new TodoEntity(i, "Learn SQL " + i, "Understand the basics of SQL, part " + i, i % 2 == 0));
+    }
+    body = Json.toBytes(todos.get(0));
+    listJson = Json.toJSON(todos);
+
+    // 確認兩種做法的輸出一樣
+    if (!reflective.toJson(todos).equals(listJson)) {
+      throw new IllegalStateException("TodoEntityTypeAdapter output differs from reflective Gson");
+    }
+  }
+
+  @Benchmark
+  public TodoEntity reflectiveDecodeBody() throws IOException {
+    InputStream input = new ByteArrayInputStream(body);
+    return reflective.fromJson(new String(input.readAllBytes(), StandardCharsets.UTF_8), TodoEntity.class);
+  }
+
+  @Benchmark
+  public TodoEntity adapterDecodeBody() {
+    return Json.fromJSON(new ByteArrayInputStream(body), TodoEntity.class);
+  }
+
+  @Benchmark
+  public List<TodoEntity> reflectiveDecodeList() {
+    return reflective.fromJson(listJson, TypeToken.getParameterized(List.class, TodoEntity.class).getType());
+  }
+
+  @Benchmark
+  public List<TodoEntity> adapterDecodeList() {
+    return Json.fromJSONToList(listJson, TodoEntity.class);
+  }
+
+  @Benchmark
+  public byte[] reflectiveEncodeList() {
+    return reflective.toJson(todos).getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Benchmark
+  public byte[] adapterEncodeList() {
+    return Json.toBytes(todos);
+  }
+
+  @Benchmark
+  public void adapterStreamList() throws IOException {
+    Json.toStream(todos, discard);
+  }
+}
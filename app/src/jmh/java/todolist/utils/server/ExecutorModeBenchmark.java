@@ -0,0 +1,70 @@
+package todolist.utils.server;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URL;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import todolist.controllers.TodoController;
+
+// 比較每種 ExecutorMode 在慢查詢 (每次 50ms) 下的 latency (SampleTime 會輸出 p50/p99) 與 throughput
+// 32 個 client thread 同時送 GET /v1/todos; INLINE 的 request 全部排隊在 dispatcher thread 上
+//
+// ./gradlew jmh -PjmhIncludes=ExecutorModeBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(32)
+public class ExecutorModeBenchmark {
+  private static final long QUERY_LATENCY_MS = 50;
+
+  @Param({ "INLINE", "POOL", "VIRTUAL" })
+  public ExecutorMode mode;
+
+  private HttpServer server;
+  private ExecutorService executor;
+  private URL url;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    server = HttpServer.create(new InetSocketAddress(0), 0);
+    server.createContext("/v1/todos", new TodoController(new SlowTodoRepository(QUERY_LATENCY_MS)));
+    executor = mode.create(ExecutorMode.DEFAULT_POOL_SIZE);
+    server.setExecutor(executor);
+    server.start();
+    url = URI.create("http://localhost:" + server.getAddress().getPort() + "/v1/todos").toURL();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    server.stop(0);
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+
+  @Benchmark
+  public int getTodos() throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    connection.setRequestProperty("Content-Type", "application/json");
+    try (InputStream input = connection.getInputStream()) {
+      input.readAllBytes();
+    }
+    return connection.getResponseCode();
+  }
+}
@@ -4,6 +4,7 @@ import com.sun.net.httpserver.HttpServer;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
 
 import todolist.utils.logger.LoggerImpl;
 import todolist.utils.database.postgres.DatabaseManagerImpl;
@@ -17,6 +18,11 @@ import todolist.repositories.mongodb.TodoMongoRepositoryImpl;
 
 import todolist.controllers.TodoNotificationController;
 
+import todolist.utils.server.AdmissionHandler;
+import todolist.utils.server.CompressionHandler;
+import todolist.utils.server.ExecutorMode;
+import todolist.utils.server.MetricsHandler;
+
 public class App {
   public static void main(String[] args) throws IOException {
     Thread.setDefaultUncaughtExceptionHandler((thread, throwable) -> {
@@ -24,44 +30,90 @@ public class App {
           .error("Unhandled exception in thread:" + thread.getName() + "message:" + throwable.getMessage());
     });
 
-    int PORT = 8080;
+    int PORT = parseEnvOrDefault("PORT", 8080);
 
-    try {
-      String portEnv = System.getenv("PORT");
-      if (portEnv != null) {
-        PORT = Integer.parseInt(portEnv);
-      }
-    } catch (Exception e) {
-      PORT = 8080;
-    }
+    // 執行緒模式: inline | pool | virtual, 預設 virtual
+    ExecutorMode executorMode = ExecutorMode.parseOrDefault(System.getenv("SERVER_EXECUTOR"), ExecutorMode.VIRTUAL);
+    int poolSize = parseEnvOrDefault("SERVER_POOL_SIZE", ExecutorMode.DEFAULT_POOL_SIZE);
+
+    // Admission control, 每個 route 各自的上限
+    int maxInFlight = parseEnvOrDefault("ADMISSION_MAX_IN_FLIGHT", 64);
+    int maxQueueDepth = parseEnvOrDefault("ADMISSION_MAX_QUEUE", 128);
+    int maxQueueTimeMs = parseEnvOrDefault("ADMISSION_QUEUE_TIMEOUT_MS", 1000);
+
+    // Response 壓縮 (gzip / deflate), 小於 COMPRESSION_MIN_BYTES 的 response 不壓縮
+    int compressionMinBytes = parseEnvOrDefault("COMPRESSION_MIN_BYTES", CompressionHandler.DEFAULT_MIN_BYTES);
+    int compressionLevel = parseEnvOrDefault("COMPRESSION_LEVEL", CompressionHandler.DEFAULT_LEVEL);
 
     HttpServer server = HttpServer.create(new InetSocketAddress(PORT), 0);
 
+    // 各個 route 的 admission / compression handler 都註冊到 GET /metrics
+    MetricsHandler metrics = new MetricsHandler();
+
     // 建立上下文，初始化 `postgresql` manager ->
     // 注入 DatabaseManagerImpl, 初始化 todo postgresql repository ->
     // 指定 URL 路徑和處理器 controller
-    server.createContext("/v1/todos", new TodoController(new TodoRepositoryImpl(new DatabaseManagerImpl())));
+    CompressionHandler v1Compression = new CompressionHandler(
+        new TodoController(new TodoRepositoryImpl(new DatabaseManagerImpl())),
+        compressionMinBytes, compressionLevel);
+    AdmissionHandler v1Admission = new AdmissionHandler("/v1/todos", v1Compression,
+        maxInFlight, maxQueueDepth, maxQueueTimeMs);
+    server.createContext("/v1/todos", v1Admission);
+    metrics.register("v1.compression", v1Compression::getMetrics).register("v1.admission", v1Admission::getMetrics);
 
     // 建立上下文，初始化 `mongo` manager ->
     // 注入 MongoManagerImpl, 初始化 todo mono repository ->
     // 指定 URL 路徑和處理器 controller
-    server.createContext("/v2/todos", new TodoMongoController(new TodoMongoRepositoryImpl(new MongoManagerImpl())));
+    CompressionHandler v2Compression = new CompressionHandler(
+        new TodoMongoController(new TodoMongoRepositoryImpl(new MongoManagerImpl())),
+        compressionMinBytes, compressionLevel);
+    AdmissionHandler v2Admission = new AdmissionHandler("/v2/todos", v2Compression,
+        maxInFlight, maxQueueDepth, maxQueueTimeMs);
+    server.createContext("/v2/todos", v2Admission);
+    metrics.register("v2.compression", v2Compression::getMetrics).register("v2.admission", v2Admission::getMetrics);
 
     // 建立上下文，初始化 `postgresql` manager ->
     // 注入 MongoManagerImpl, 初始化 todo postgresql with redis repository ->
     // 指定 URL 路徑和處理器 controller
-    server.createContext("/v3/todos", new TodoController(new TodoRepositoryWithRedisImpl(new DatabaseManagerImpl())));
+    CompressionHandler v3Compression = new CompressionHandler(
+        new TodoController(new TodoRepositoryWithRedisImpl(new DatabaseManagerImpl())),
+        compressionMinBytes, compressionLevel);
+    AdmissionHandler v3Admission = new AdmissionHandler("/v3/todos", v3Compression,
+        maxInFlight, maxQueueDepth, maxQueueTimeMs);
+    server.createContext("/v3/todos", v3Admission);
+    metrics.register("v3.compression", v3Compression::getMetrics).register("v3.admission", v3Admission::getMetrics);
 
     // 建立上下文，初始化 `kafaka` manager ->
     // 注入 KafakaManagerImpl, 初始化 todo kafka repository ->
     // 指定 URL 路徑和處理器 controller
-    server.createContext("/v4/todos", new TodoNotificationController());
+    AdmissionHandler v4Admission = new AdmissionHandler("/v4/todos", new TodoNotificationController(),
+        maxInFlight, maxQueueDepth, maxQueueTimeMs);
+    server.createContext("/v4/todos", v4Admission);
+    metrics.register("v4.admission", v4Admission::getMetrics);
 
-    // 設置執行緒池，null 表示默認執行緒池
-    server.setExecutor(null);
+    server.createContext("/metrics", metrics);
+
+    // 設置執行緒池，INLINE 模式為 null 表示默認執行緒池 (單一 dispatcher thread)
+    ExecutorService executor = executorMode.create(poolSize);
+    server.setExecutor(executor);
+    if (executor != null) {
+      Runtime.getRuntime().addShutdownHook(new Thread(executor::shutdown));
+    }
 
     // 啟動伺服器
     server.start();
-    System.out.println("Server is running, listening port: " + PORT);
+    System.out.println("Server is running, listening port: " + PORT + ", executor mode: " + executorMode);
+  }
+
+  private static int parseEnvOrDefault(String name, int defaultValue) {
+    try {
+      String value = System.getenv(name);
+      if (value != null) {
+        return Integer.parseInt(value);
+      }
+    } catch (Exception e) {
+      System.out.println("Invalid value for " + name + ". Using default value: " + defaultValue);
+    }
+    return defaultValue;
   }
 }
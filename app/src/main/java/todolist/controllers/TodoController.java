@@ -5,18 +5,25 @@ import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpExchange;
 import java.nio.charset.StandardCharsets;
 import java.net.URLDecoder;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Optional;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import todolist.utils.json.Json;
+import todolist.utils.server.ResponseFormat;
 import todolist.entities.TodoEntity;
+import todolist.repositories.postgresql.TodoCursor;
+import todolist.repositories.postgresql.TodoPage;
 import todolist.repositories.postgresql.TodoRepository;
 
 public class TodoController implements HttpHandler {
+  private static final int EXPORT_BUFFER_SIZE = 16 * 1024;
+  private static final int RESPONSE_BUFFER_SIZE = 16 * 1024;
   private final TodoRepository todoRepository;
 
   public TodoController(TodoRepository todoRepository) {
@@ -64,6 +71,11 @@ public class TodoController implements HttpHandler {
 
   // GET，列出所有待辦事項 or 通過 ID 獲取單一待辦
   private void handleGet(HttpExchange exchange) throws IOException {
+    if (exchange.getRequestURI().getPath().endsWith("/export")) {
+      handleExport(exchange);
+      return;
+    }
+
     Integer todoId = null;
     try {
       String path = exchange.getRequestURI().getPath();
@@ -80,7 +92,35 @@ public class TodoController implements HttpHandler {
     headers.set("Content-Type", "application/json; charset=UTF-8");
     byte[] responseBytes;
     if (todoId == null) {
-      responseBytes = Json.toBytes(todoRepository.getTodos(parseQuery(exchange.getRequestURI().getQuery())));
+      Map<String, String> params = parseQuery(exchange.getRequestURI().getQuery());
+      if (TodoCursor.isKeyset(params) && TodoCursor.afterId(params) == null) {
+        responseBytes = Json.toBytes(new HashMap<>(Map.of("message", "Invalid cursor")));
+        exchange.sendResponseHeaders(400, responseBytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+          os.write(responseBytes);
+        }
+        return;
+      }
+
+      // near cache hit 的 TodoPage 帶著 encode 好的 JSON，直接寫出 bytes；
+      // Redis page cache / index hit 還是要 decode 之後重新 encode
+      TodoPage page = todoRepository.getTodoPage(params);
+      // 下一頁的 cursor 放在 header，response body 維持原本的 JSON array
+      if (page.nextCursor() != null) {
+        headers.set(TodoCursor.NEXT_CURSOR_HEADER, page.nextCursor());
+      }
+      // Accept 要求 binary format 時用 TodoEntityCodec 的格式，其他情況維持 JSON；
+      // 兩種格式都由 TodoPage encode 一次之後共用，near cache hit 時不用再 encode
+      headers.set("Vary", "Accept");
+      ResponseFormat format = ResponseFormat.negotiate(exchange.getRequestHeaders().get("Accept"));
+      headers.set("Content-Type", format.contentType());
+      // 長度未知 (還沒 encode) 時用 chunked response，一邊 serialize 一邊輸出
+      long contentLength = page.contentLength(format);
+      exchange.sendResponseHeaders(200, contentLength >= 0 ? contentLength : 0);
+      try (OutputStream os = new BufferedOutputStream(exchange.getResponseBody(), RESPONSE_BUFFER_SIZE)) {
+        page.writeTo(format, os);
+      }
+      return;
     } else {
       Optional<TodoEntity> todo = todoRepository.getTodoById(todoId);
       if (todo.isPresent()) {
@@ -95,11 +135,41 @@ public class TodoController implements HttpHandler {
     }
   }
 
+  // GET /export，以 NDJSON (一行一個 JSON object) 串流輸出所有待辦事項
+  // 長度未知所以用 chunked response，每筆 record 直接寫到 OutputStream，記憶體用量與 table 大小無關
+  //
+  // 最後一行是結尾 record：成功時 {"exported":N}，中途失敗時 {"error":"...","exported":N} (N = 已輸出的筆數)
+  // chunked response 在 close 時一定會寫出結尾 chunk，client 沒辦法從 HTTP 層分辨資料不完整，
+  // 所以要檢查最後一行是不是沒有 error 的 exported record
+  private void handleExport(HttpExchange exchange) throws IOException {
+    exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson; charset=UTF-8");
+    exchange.sendResponseHeaders(200, 0);
+
+    try (OutputStream os = new BufferedOutputStream(exchange.getResponseBody(), EXPORT_BUFFER_SIZE)) {
+      int[] exported = { 0 };
+      Map<String, Object> trailer = new LinkedHashMap<>();
+      try {
+        todoRepository.exportTodos(todo -> {
+          Json.toStream(todo, os);
+          os.write('\n');
+          exported[0]++;
+        });
+      } catch (IOException e) {
+        // client 已經斷線時寫 error record 也會失敗，交給外層 close 處理
+        e.printStackTrace();
+        trailer.put("error", "Export failed after " + exported[0] + " todos");
+      }
+      trailer.put("exported", exported[0]);
+      Json.toStream(trailer, os);
+      os.write('\n');
+    }
+  }
+
   // POST，新增待辦事項
   private void handlePost(HttpExchange exchange) throws IOException {
     try (InputStream input = exchange.getRequestBody()) {
       Optional<TodoEntity> createdTodo = todoRepository
-          .createTodo(Json.fromJSON(new String(input.readAllBytes(), StandardCharsets.UTF_8), TodoEntity.class));
+          .createTodo(Json.fromJSON(input, TodoEntity.class));
 
       byte[] responseBytes;
       if (createdTodo.isPresent()) {
@@ -140,28 +210,19 @@ public class TodoController implements HttpHandler {
       return;
     }
 
-    if (!todoRepository.getTodoById(todoId).isPresent()) {
-      byte[] responseBytes = Json.toBytes(
-          new HashMap<>(Map.of("message", "Missing todo id or todo item not found")));
-      exchange.sendResponseHeaders(404, responseBytes.length);
-      try (OutputStream os = exchange.getResponseBody()) {
-        os.write(responseBytes);
-      }
-      return;
-    }
-
     try (InputStream input = exchange.getRequestBody()) {
       Optional<TodoEntity> updatedTodo = todoRepository.updateTodo(todoId,
-          Json.fromJSON(new String(input.readAllBytes(), StandardCharsets.UTF_8), TodoEntity.class));
+          Json.fromJSON(input, TodoEntity.class));
 
+      // updateTodo 使用 UPDATE ... RETURNING，沒有返回 record 代表 todo 不存在
       byte[] responseBytes;
       if (updatedTodo.isPresent()) {
         responseBytes = Json.toBytes(updatedTodo.get());
         exchange.sendResponseHeaders(200, responseBytes.length);
       } else {
         responseBytes = Json.toBytes(
-            new HashMap<>(Map.of("message", "Update todo failed with id -> " + todoId)));
-        exchange.sendResponseHeaders(400, responseBytes.length);
+            new HashMap<>(Map.of("message", "Missing todo id or todo item not found")));
+        exchange.sendResponseHeaders(404, responseBytes.length);
       }
 
       try (OutputStream os = exchange.getResponseBody()) {
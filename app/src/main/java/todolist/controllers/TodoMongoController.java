@@ -13,7 +13,9 @@ import java.util.Optional;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import todolist.utils.codec.TodoMongoEntityCodec;
 import todolist.utils.json.Json;
+import todolist.utils.server.ResponseFormat;
 import todolist.entities.TodoMongoEntity;
 import todolist.repositories.mongodb.TodoMongoRepository;
 
@@ -81,7 +83,15 @@ public class TodoMongoController implements HttpHandler {
     headers.set("Content-Type", "application/json; charset=UTF-8");
     byte[] responseBytes;
     if (todoId == null) {
-      responseBytes = Json.toBytes(todoRepository.getTodos(parseQuery(exchange.getRequestURI().getQuery())));
+      // Accept 要求 binary format 時用 TodoMongoEntityCodec encode，其他情況維持 JSON
+      List<TodoMongoEntity> todos = todoRepository.getTodos(parseQuery(exchange.getRequestURI().getQuery()));
+      headers.set("Vary", "Accept");
+      if (ResponseFormat.negotiate(exchange.getRequestHeaders().get("Accept")) == ResponseFormat.BINARY) {
+        headers.set("Content-Type", ResponseFormat.BINARY.contentType());
+        responseBytes = TodoMongoEntityCodec.INSTANCE.encode(todos);
+      } else {
+        responseBytes = Json.toBytes(todos);
+      }
     } else {
       Optional<TodoMongoEntity> todo = todoRepository.getTodoById(todoId);
       if (todo.isPresent()) {
@@ -100,7 +110,7 @@ public class TodoMongoController implements HttpHandler {
   private void handlePost(HttpExchange exchange) throws IOException {
     try (InputStream input = exchange.getRequestBody()) {
       Optional<TodoMongoEntity> createdTodo = todoRepository
-          .createTodo(Json.fromJSON(input.readAllBytes(), TodoMongoEntity.class));
+          .createTodo(Json.fromJSON(input, TodoMongoEntity.class));
 
       byte[] responseBytes;
       if (createdTodo.isPresent()) {
@@ -158,7 +168,7 @@ public class TodoMongoController implements HttpHandler {
 
     try (InputStream input = exchange.getRequestBody()) {
       Optional<TodoMongoEntity> updatedTodo = todoRepository.updateTodo(todoId,
-          Json.fromJSON(input.readAllBytes(), TodoMongoEntity.class));
+          Json.fromJSON(input, TodoMongoEntity.class));
 
       byte[] responseBytes;
       if (updatedTodo.isPresent()) {
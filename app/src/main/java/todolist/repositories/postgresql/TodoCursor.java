@@ -0,0 +1,72 @@
+package todolist.repositories.postgresql;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import todolist.entities.TodoEntity;
+
+// Keyset pagination 的 cursor：`after=<cursor>` 會 seek 到 todos.id 之後的 record
+// cursor 對 client 來說是 opaque 的，內容是 base64url("id:<last id>")
+public final class TodoCursor {
+  public static final String AFTER_PARAM = "after";
+  public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+  public static final int DEFAULT_PER_PAGE = 10;
+
+  private static final String PREFIX = "id:";
+
+  private TodoCursor() {
+  }
+
+  public static String encode(int lastId) {
+    return Base64.getUrlEncoder().withoutPadding()
+        .encodeToString((PREFIX + lastId).getBytes(StandardCharsets.UTF_8));
+  }
+
+  // 無效的 cursor 返回 null
+  public static Integer decode(String cursor) {
+    if (cursor == null || cursor.isEmpty()) {
+      return null;
+    }
+    try {
+      String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+      if (!decoded.startsWith(PREFIX)) {
+        return null;
+      }
+      int lastId = Integer.parseInt(decoded.substring(PREFIX.length()));
+      return lastId >= 0 ? lastId : null;
+    } catch (IllegalArgumentException e) { // 包含 NumberFormatException
+      return null;
+    }
+  }
+
+  public static boolean isKeyset(Map<String, String> params) {
+    return params.containsKey(AFTER_PARAM);
+  }
+
+  // `after=` (空值) 代表從第一筆開始，無效的 cursor 返回 null
+  public static Integer afterId(Map<String, String> params) {
+    String cursor = params.get(AFTER_PARAM);
+    if (cursor == null) {
+      return null;
+    }
+    return cursor.isEmpty() ? 0 : decode(cursor);
+  }
+
+  // 只有拿到完整的一頁才返回下一頁的 cursor，最後一頁返回 null
+  public static String next(List<TodoEntity> todos, Map<String, String> params) {
+    int perPage = DEFAULT_PER_PAGE;
+    try {
+      perPage = Integer.parseInt(params.getOrDefault("per_page", String.valueOf(DEFAULT_PER_PAGE)));
+    } catch (NumberFormatException e) {
+      // repository 同樣會 fallback 到 default value
+    }
+    if (perPage <= 0) {
+      perPage = DEFAULT_PER_PAGE;
+    }
+    if (todos.isEmpty() || todos.size() < perPage) {
+      return null;
+    }
+    return encode(todos.get(todos.size() - 1).id);
+  }
+}
@@ -0,0 +1,51 @@
+package todolist.repositories.postgresql;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import todolist.entities.TodoEntity;
+import todolist.utils.database.postgres.DatabaseConnection;
+import todolist.utils.database.postgres.DatabaseManager;
+
+// TodoRepository.exportTodos 的共用實作 (TodoRepositoryImpl / TodoRepositoryWithRedisImpl 都直接讀 PostgreSQL)
+// autocommit 關閉 + fetch size 讓 pg driver 使用 server-side cursor，每次只拉 EXPORT_FETCH_SIZE 筆到 heap
+final class TodoExporter {
+  static final int EXPORT_FETCH_SIZE = 500;
+
+  private TodoExporter() {
+  }
+
+  // 返回輸出的筆數；查詢失敗時丟 IOException
+  static int exportTodos(DatabaseManager databaseManager, TodoRepository.TodoWriter writer) throws IOException {
+    String query = "SELECT * FROM todos ORDER BY id";
+    int count = 0;
+
+    try (DatabaseConnection connection = databaseManager.getConnection()) {
+      connection.setAutoCommit(false);
+      try (PreparedStatement pstmt = connection.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY,
+          ResultSet.CONCUR_READ_ONLY)) {
+        pstmt.setFetchSize(EXPORT_FETCH_SIZE);
+        try (ResultSet rs = pstmt.executeQuery()) {
+          while (rs.next()) {
+            writer.write(new TodoEntity(rs.getInt("id"), rs.getString("title"), rs.getString("description"),
+                rs.getBoolean("completed")));
+            count++;
+          }
+        }
+        connection.commit();
+      } finally {
+        // 還回 pool 之前恢復 autocommit，寫入失敗 (client 斷線) 時也要結束 transaction
+        if (!connection.getAutoCommit()) {
+          connection.rollback();
+          connection.setAutoCommit(true);
+        }
+      }
+    } catch (SQLException e) {
+      e.printStackTrace();
+      throw new IOException("Export todos failed after " + count + " rows", e);
+    }
+
+    return count;
+  }
+}
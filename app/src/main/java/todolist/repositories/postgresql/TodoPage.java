@@ -0,0 +1,98 @@
+package todolist.repositories.postgresql;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import todolist.entities.TodoEntity;
+import todolist.utils.codec.TodoEntityCodec;
+import todolist.utils.json.Json;
+import todolist.utils.server.ResponseFormat;
+
+// 一頁 todos 連同 encode 好的 response body (JSON 或 binary) 和下一頁的 cursor
+// near cache 直接保存 TodoPage，只有 near cache hit 時 controller 把 bytes 寫到 OutputStream，不用再 serialize；
+// Redis 裡存的是 binary，L2 hit 要先 decode 再用 of() 重新 encode
+//
+// 每個格式在第一次輸出時才 encode，之後共用同一份 bytes：只被要求 JSON 的 page 不會 encode binary，反之亦然
+//
+// 不會被 cache 的 page 用 streamed() 建立，JSON 在 writeTo 時直接 serialize 到 OutputStream，
+// 不需要先 encode 成完整的 byte[]，這時 JSON 的 contentLength 未知 (-1)
+//
+// todos 建立之後不會再改變，可以給多個 request 同時使用
+public final class TodoPage {
+  private final List<TodoEntity> todos;
+  private final boolean streamed;
+  private final String nextCursor;
+  // 兩個 request 同時第一次輸出時可能各 encode 一次，結果相同，留下哪一份都可以
+  private volatile byte[] json;
+  private volatile byte[] binary;
+
+  private TodoPage(List<TodoEntity> todos, boolean streamed, String nextCursor) {
+    this.todos = todos;
+    this.streamed = streamed;
+    this.nextCursor = nextCursor;
+  }
+
+  public static TodoPage of(List<TodoEntity> todos, Map<String, String> params) {
+    return new TodoPage(Collections.unmodifiableList(todos), false, TodoCursor.next(todos, params));
+  }
+
+  public static TodoPage streamed(List<TodoEntity> todos, Map<String, String> params) {
+    return new TodoPage(Collections.unmodifiableList(todos), true, TodoCursor.next(todos, params));
+  }
+
+  public List<TodoEntity> todos() {
+    return todos;
+  }
+
+  // 沒有下一頁時返回 null
+  public String nextCursor() {
+    return nextCursor;
+  }
+
+  // streamed page 的 JSON 長度未知，返回 -1
+  public long contentLength(ResponseFormat format) {
+    if (format == ResponseFormat.JSON && streamed) {
+      return -1;
+    }
+    return encoded(format).length;
+  }
+
+  // bytes 是共用的，不直接交出去，避免被修改
+  public void writeTo(ResponseFormat format, OutputStream os) throws IOException {
+    if (format == ResponseFormat.JSON && streamed) {
+      Json.toStream(todos, os);
+    } else {
+      os.write(encoded(format));
+    }
+  }
+
+  private byte[] encoded(ResponseFormat format) {
+    if (format == ResponseFormat.BINARY) {
+      byte[] bytes = binary;
+      if (bytes == null) {
+        binary = bytes = TodoEntityCodec.UNCOMPRESSED.encode(todos);
+      }
+      return bytes;
+    }
+    byte[] bytes = json;
+    if (bytes == null) {
+      json = bytes = Json.toBytes(todos);
+    }
+    return bytes;
+  }
+
+  // Near cache 的 weight：list 本身加上 encode 好的 bytes
+  // put 進 near cache 時通常還沒 encode，依照字串長度預留兩種格式的空間 (UTF-8 最多 3 bytes / char)
+  public long weight() {
+    long weight = 16;
+    for (TodoEntity todo : todos) {
+      int chars = (todo.title != null ? todo.title.length() : 0)
+          + (todo.description != null ? todo.description.length() : 0);
+      weight += 32 + chars * 2 // list 裡的 TodoEntity (UTF-16)
+          + 2 * (48 + chars * 3); // JSON 和 binary
+    }
+    return weight;
+  }
+}
@@ -0,0 +1,365 @@
+package todolist.repositories.postgresql;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import todolist.entities.TodoEntity;
+import todolist.utils.database.redis.RedisManager;
+import todolist.utils.database.redis.RedisManagerImpl;
+import todolist.utils.loader.ConfigLoader;
+
+// Redis 上的 todos pagination index，page 不用查 PostgreSQL，寫入也不會讓其他 page 失效
+//
+// - todos:index       sorted set，member 和 score 都是 todo id (跟 PostgreSQL 的 ORDER BY id 一致)
+// - todos:item:<id>   hash，t (title)、d (description)、f (flags，跟 TodoEntityCodec 相同)
+// - todos:index:ready 存在時 index 才是完整的
+//
+// todos:index:ready 只保存 readyTtlSeconds：/v1 (TodoRepositoryImpl) 或其他直接寫 PostgreSQL 的寫入不會更新 index，
+// 過期之後 page 改走原本的 cache / PostgreSQL 並在背景 rebuild，這些寫入最多 readyTtlSeconds 之後就會出現在 page 裡
+// (跟 page cache 的 redis.cache.ttl.seconds 一樣的上限)
+//
+// page 查詢：`after` cursor 用 ZRANGEBYSCORE，page/per_page 用 ZRANGE (by rank)，
+// 拿到 id 之後一次 pipelined HMGET 取回內容，總共兩次 round trip
+// 寫入時 put/remove 直接更新 index，rebuild 從 PostgreSQL 重建整個 index
+public class TodoRedisIndex {
+  private static final String INDEX_KEY = "todos:index";
+  private static final String ITEM_KEY_PREFIX = "todos:item:";
+  private static final String READY_KEY = "todos:index:ready";
+  private static final String BUILDING_KEY = "todos:index:building";
+  private static final String REBUILD_LOCK_KEY = "todos:index:rebuild:lock";
+
+  private static final String TITLE = "t";
+  private static final String DESCRIPTION = "d";
+  private static final String FLAGS = "f";
+  private static final String[] FIELDS = { TITLE, DESCRIPTION, FLAGS };
+  private static final int COMPLETED = 1;
+  private static final int TITLE_NULL = 1 << 1;
+  private static final int DESCRIPTION_NULL = 1 << 2;
+
+  private static final int REBUILD_BATCH_SIZE = 500;
+  private static final int MAX_REBUILD_ATTEMPTS = 3;
+  private static final long READY_CHECK_INTERVAL_MS = 1000;
+  private static final long REBUILD_LOCK_TTL_MS = TimeUnit.MINUTES.toMillis(5);
+
+  // rebuild 的資料來源，通常是 TodoRepository::exportTodos
+  @FunctionalInterface
+  public interface Exporter {
+    int exportTodos(TodoRepository.TodoWriter writer) throws IOException;
+  }
+
+  private final Supplier<RedisManager> redisManager;
+  private final boolean enabled;
+  // 每次寫入都會 INCR 的 key (cache generation)，rebuild 前後不一致代表 rebuild 期間有寫入
+  private final String versionKey;
+  private final Exporter exporter;
+  private final long rebuildRetryMs;
+  private final long readyTtlSeconds;
+  private final ScheduledExecutorService rebuildExecutor;
+  private final AtomicBoolean rebuildScheduled = new AtomicBoolean();
+  private volatile long lastRebuildAt;
+
+  private volatile boolean ready;
+  private volatile long readyCheckedAt;
+
+  // Metrics
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder notReadyCount = new LongAdder();
+  private final LongAdder inconsistentCount = new LongAdder();
+  private final LongAdder rebuildCount = new LongAdder();
+  private final LongAdder rebuildFailedCount = new LongAdder();
+
+  public TodoRedisIndex(String versionKey, Exporter exporter) {
+    this(RedisManagerImpl::getInstance, versionKey, exporter,
+        Boolean.parseBoolean(ConfigLoader.load(TodoRedisIndex.class, "redis.index.enabled", "true")),
+        Long.parseLong(ConfigLoader.load(TodoRedisIndex.class, "redis.index.rebuild.interval.seconds", "3600")),
+        Long.parseLong(ConfigLoader.load(TodoRedisIndex.class, "redis.index.rebuild.retry.seconds", "30")),
+        Long.parseLong(ConfigLoader.load(TodoRedisIndex.class, "redis.index.ready.ttl.seconds", "60")));
+  }
+
+  // rebuildIntervalSeconds <= 0 代表只在 index 不完整時 rebuild，不定期重建
+  // readyTtlSeconds <= 0 代表 index 一直有效，只有在所有寫入都經過 put/remove 時才可以這樣設定
+  // redisManager 用 Supplier 延遲取得，建立 index 時不需要連上 Redis
+  public TodoRedisIndex(Supplier<RedisManager> redisManager, String versionKey, Exporter exporter, boolean enabled,
+      long rebuildIntervalSeconds, long rebuildRetrySeconds, long readyTtlSeconds) {
+    this.redisManager = redisManager;
+    this.versionKey = versionKey;
+    this.exporter = exporter;
+    this.enabled = enabled;
+    this.rebuildRetryMs = TimeUnit.SECONDS.toMillis(rebuildRetrySeconds);
+    this.readyTtlSeconds = readyTtlSeconds;
+    this.rebuildExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "todos-index-rebuild");
+      thread.setDaemon(true);
+      return thread;
+    });
+    if (enabled && rebuildIntervalSeconds > 0) {
+      // 定期重建，修正漏掉的 incremental update
+      rebuildExecutor.scheduleWithFixedDelay(() -> rebuildQuietly(false), rebuildIntervalSeconds,
+          rebuildIntervalSeconds, TimeUnit.SECONDS);
+    }
+  }
+
+  // index 不完整或資料不一致時返回 null，呼叫端改走原本的 cache / PostgreSQL
+  // Redis 失敗時丟出 RuntimeException
+  public List<TodoEntity> page(Integer afterId, int perPage, int offset) {
+    if (!isReady()) {
+      notReadyCount.increment();
+      return null;
+    }
+
+    RedisManager redis = redisManager.get();
+    List<String> ids = afterId != null
+        ? redis.zrangeByScore(INDEX_KEY, afterId + 1, Double.POSITIVE_INFINITY, 0, perPage)
+        : redis.zrange(INDEX_KEY, offset, (long) offset + perPage - 1);
+    if (ids.isEmpty()) {
+      hitCount.increment();
+      return new ArrayList<>();
+    }
+
+    List<String> itemKeys = new ArrayList<>(ids.size());
+    for (String id : ids) {
+      itemKeys.add(ITEM_KEY_PREFIX + id);
+    }
+    List<List<String>> items = redis.hmgetPipelined(itemKeys, FIELDS);
+
+    List<TodoEntity> todos = new ArrayList<>(ids.size());
+    for (int i = 0; i < ids.size(); i++) {
+      TodoEntity todo = decode(Integer.parseInt(ids.get(i)), items.get(i));
+      // 跟刪除同時發生時可能拿到 id 但 hash 已經刪掉，這次改查 DB
+      if (todo == null) {
+        inconsistentCount.increment();
+        return null;
+      }
+      todos.add(todo);
+    }
+    hitCount.increment();
+    return todos;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  // 先寫 hash 再加進 index，讀取端拿到 id 時 hash 一定已經存在
+  public void put(TodoEntity todo) {
+    if (!enabled) {
+      return;
+    }
+    RedisManager redis = redisManager.get();
+    redis.hsetAll(ITEM_KEY_PREFIX + todo.id, encode(todo));
+    redis.zaddAll(INDEX_KEY, Map.of(String.valueOf(todo.id), (double) todo.id));
+  }
+
+  // 先從 index 移除再刪 hash
+  public void remove(int todoId) {
+    if (!enabled) {
+      return;
+    }
+    RedisManager redis = redisManager.get();
+    redis.zrem(INDEX_KEY, String.valueOf(todoId));
+    redis.delete(ITEM_KEY_PREFIX + todoId);
+  }
+
+  // incremental update 失敗時呼叫：標記 index 不完整並安排 rebuild
+  public void invalidate() {
+    if (!enabled) {
+      return;
+    }
+    redisManager.get().delete(READY_KEY);
+    ready = false;
+    readyCheckedAt = System.currentTimeMillis();
+    scheduleRebuild();
+  }
+
+  // ready 狀態在 local 最多 cache READY_CHECK_INTERVAL_MS，不用每個 request 都多一次 round trip
+  private boolean isReady() {
+    if (!enabled) {
+      return false;
+    }
+    long now = System.currentTimeMillis();
+    if (now - readyCheckedAt >= READY_CHECK_INTERVAL_MS) {
+      ready = redisManager.get().get(READY_KEY) != null;
+      readyCheckedAt = now;
+    }
+    if (!ready) {
+      scheduleRebuild();
+    }
+    return ready;
+  }
+
+  // 同時只會有一個 rebuild 排隊，失敗之後至少間隔 rebuildRetryMs 才會再試
+  private void scheduleRebuild() {
+    if (!rebuildScheduled.compareAndSet(false, true)) {
+      return;
+    }
+    long delay = Math.max(0, lastRebuildAt + rebuildRetryMs - System.currentTimeMillis());
+    rebuildExecutor.schedule(() -> {
+      rebuildScheduled.set(false);
+      rebuildQuietly(true);
+    }, delay, TimeUnit.MILLISECONDS);
+  }
+
+  // onlyIfNotReady：排隊期間其他 instance 已經重建完成的話就不用再做一次
+  private void rebuildQuietly(boolean onlyIfNotReady) {
+    try {
+      if (onlyIfNotReady && redisManager.get().get(READY_KEY) != null) {
+        return;
+      }
+      rebuild();
+    } catch (RuntimeException e) {
+      rebuildFailedCount.increment();
+      System.err.println("Todos index rebuild failed: " + e.getMessage());
+    }
+  }
+
+  // 從 PostgreSQL 串流所有 todos 寫進 BUILDING_KEY，完成後 RENAME 成 INDEX_KEY (atomic)
+  // 多個 instance 用 Redis lock 保證同時只有一個在 rebuild，沒拿到 lock 返回 false
+  //
+  // 寫入的順序是 commit -> bump version -> put/remove (-> 再 bump 一次，見 TodoRepositoryWithRedisImpl.refreshCache)：
+  // load 前後 version 相同代表 snapshot 之後沒有寫入，才 RENAME；RENAME 之後才 bump 的寫入會直接更新新的 index
+  // version 不同就不發布 BUILDING_KEY，標記 index 不完整並重來，最多 MAX_REBUILD_ATTEMPTS 次
+  // (load 期間被刪除的 todo 可能被舊 snapshot 寫回 hash，只要 id 不進 INDEX_KEY 就不會被讀到；
+  // 被更新的 todo 的 hash 可能被舊內容覆蓋，重來時會用新的 snapshot 覆寫)
+  // RENAME 和第二次檢查之間的寫入一樣會讓 index 標記成不完整
+  // 已經刪除的 todo 留下的 hash 不會被清掉，不在 index 裡的 hash 不會被讀到
+  public boolean rebuild() {
+    if (!enabled) {
+      return false;
+    }
+    lastRebuildAt = System.currentTimeMillis();
+    RedisManager redis = redisManager.get();
+    // lock 的值是這次 rebuild 的 token，釋放時只刪自己的 lock (見 releaseLock)
+    String lockToken = UUID.randomUUID().toString();
+    if (!redis.setIfAbsentWithExpiry(REBUILD_LOCK_KEY, lockToken, REBUILD_LOCK_TTL_MS)) {
+      return false;
+    }
+
+    try {
+      for (int attempt = 1; attempt <= MAX_REBUILD_ATTEMPTS; attempt++) {
+        rebuildCount.increment();
+        String version = redis.get(versionKey);
+        long start = System.currentTimeMillis();
+        redis.delete(BUILDING_KEY);
+        int count = load(redis);
+        boolean unchanged = Objects.equals(version, redis.get(versionKey));
+        if (unchanged) {
+          if (count > 0) {
+            redis.rename(BUILDING_KEY, INDEX_KEY);
+          } else {
+            redis.delete(INDEX_KEY);
+          }
+          unchanged = Objects.equals(version, redis.get(versionKey));
+        } else {
+          redis.delete(BUILDING_KEY);
+        }
+
+        if (unchanged) {
+          if (readyTtlSeconds > 0) {
+            redis.setWithExpiry(READY_KEY, "1", readyTtlSeconds);
+          } else {
+            redis.set(READY_KEY, "1");
+          }
+          ready = true;
+          readyCheckedAt = System.currentTimeMillis();
+          System.out.println("Todos index rebuilt with " + count + " todos in "
+              + (System.currentTimeMillis() - start) + " ms");
+          return true;
+        }
+        // 新的 index 可能少了 rebuild 期間的寫入，重建完成之前不能使用
+        redis.delete(READY_KEY);
+        ready = false;
+        System.out.println("Todos changed during index rebuild, retrying (attempt " + attempt + ")");
+      }
+      rebuildFailedCount.increment();
+      return false;
+    } finally {
+      releaseLock(redis, lockToken);
+    }
+  }
+
+  // 超過 REBUILD_LOCK_TTL_MS 之後 lock 可能已經被其他 instance 拿走，值不是自己的 token 就不刪
+  // GET 和 DEL 之間 lock 剛好過期的機會很小，RedisManager 沒有 script 可以做 compare-and-delete
+  private void releaseLock(RedisManager redis, String lockToken) {
+    if (lockToken.equals(redis.get(REBUILD_LOCK_KEY))) {
+      redis.delete(REBUILD_LOCK_KEY);
+    }
+  }
+
+  // 每 REBUILD_BATCH_SIZE 筆用一次 pipeline 寫 hash、一次 ZADD 寫 index
+  private int load(RedisManager redis) {
+    Map<String, Map<String, String>> items = new HashMap<>();
+    Map<String, Double> scores = new HashMap<>();
+    try {
+      int count = exporter.exportTodos(todo -> {
+        items.put(ITEM_KEY_PREFIX + todo.id, encode(todo));
+        scores.put(String.valueOf(todo.id), (double) todo.id);
+        if (items.size() >= REBUILD_BATCH_SIZE) {
+          flush(redis, items, scores);
+        }
+      });
+      flush(redis, items, scores);
+      return count;
+    } catch (IOException e) {
+      throw new IllegalStateException("Export todos for index rebuild failed", e);
+    }
+  }
+
+  private static void flush(RedisManager redis, Map<String, Map<String, String>> items, Map<String, Double> scores) {
+    redis.hsetAllPipelined(items);
+    redis.zaddAll(BUILDING_KEY, scores);
+    items.clear();
+    scores.clear();
+  }
+
+  private static Map<String, String> encode(TodoEntity todo) {
+    int flags = (todo.completed ? COMPLETED : 0)
+        | (todo.title == null ? TITLE_NULL : 0)
+        | (todo.description == null ? DESCRIPTION_NULL : 0);
+    Map<String, String> fields = new HashMap<>(4);
+    fields.put(TITLE, todo.title != null ? todo.title : "");
+    fields.put(DESCRIPTION, todo.description != null ? todo.description : "");
+    fields.put(FLAGS, String.valueOf(flags));
+    return fields;
+  }
+
+  // hash 不存在時 HMGET 返回的欄位都是 null
+  private static TodoEntity decode(int id, List<String> values) {
+    String title = values.get(0);
+    String description = values.get(1);
+    String flagsValue = values.get(2);
+    if (title == null || description == null || flagsValue == null) {
+      return null;
+    }
+    int flags;
+    try {
+      flags = Integer.parseInt(flagsValue);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+    return new TodoEntity(id,
+        (flags & TITLE_NULL) != 0 ? null : title,
+        (flags & DESCRIPTION_NULL) != 0 ? null : description,
+        (flags & COMPLETED) != 0);
+  }
+
+  public Map<String, Long> getMetrics() {
+    Map<String, Long> metrics = new HashMap<>();
+    metrics.put("todos.index.hit", hitCount.sum());
+    metrics.put("todos.index.miss", notReadyCount.sum());
+    metrics.put("todos.index.inconsistent", inconsistentCount.sum());
+    metrics.put("todos.index.rebuild", rebuildCount.sum());
+    metrics.put("todos.index.rebuild.failed", rebuildFailedCount.sum());
+    metrics.put("todos.index.ready", ready ? 1L : 0L);
+    return metrics;
+  }
+}
@@ -1,5 +1,6 @@
 package todolist.repositories.postgresql;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -15,6 +16,13 @@ public interface TodoRepository {
   // Get todos by params
   List<TodoEntity> getTodos(Map<String, String> params);
 
+  // Get todos by params，連同 response body 一起返回
+  // 預設在輸出時才 serialize (TodoPage.streamed)；有 cache 的 implementation 可以 override，
+  // cache hit 時直接返回 cache 裡已經 encode 好的 TodoPage
+  default TodoPage getTodoPage(Map<String, String> params) {
+    return TodoPage.streamed(getTodos(params), params);
+  }
+
   // Get todo by id
   Optional<TodoEntity> getTodoById(int todoId);
 
@@ -23,4 +31,13 @@ public interface TodoRepository {
 
   // Delete todo
   Optional<TodoEntity> deleteTodo(int todoId);
+
+  // Export all todos, 每一筆 record 讀出來就交給 writer，不會一次載入整個 table
+  // 返回輸出的筆數
+  int exportTodos(TodoWriter writer) throws IOException;
+
+  @FunctionalInterface
+  interface TodoWriter {
+    void write(TodoEntity todo) throws IOException;
+  }
 }
@@ -1,5 +1,6 @@
 package todolist.repositories.postgresql;
 
+import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
@@ -67,15 +68,25 @@ public class TodoRepositoryImpl implements TodoRepository {
   public List<TodoEntity> getTodos(Map<String, String> params) {
     List<TodoEntity> todos = new ArrayList<>();
 
-    int page = parsePaginationOrDefault(params, "page", 1);
-    int perPage = parsePaginationOrDefault(params, "per_page", 10);
-    int offset = (page - 1) * perPage;
-    String query = "SELECT * FROM todos LIMIT ? OFFSET ?";
+    int perPage = parsePaginationOrDefault(params, "per_page", TodoCursor.DEFAULT_PER_PAGE);
+    Integer afterId = TodoCursor.afterId(params);
+
+    // `after` cursor 走 keyset pagination：利用 primary key index seek，不會因為頁數變深而變慢
+    // 否則保留 page/per_page 的 OFFSET 查詢，加上 ORDER BY id 讓每一頁的順序穩定
+    String query = afterId != null
+        ? "SELECT * FROM todos WHERE id > ? ORDER BY id LIMIT ?"
+        : "SELECT * FROM todos ORDER BY id LIMIT ? OFFSET ?";
 
     try (DatabaseConnection connection = databaseManager.getConnection();
         PreparedStatement pstmt = connection.prepareStatement(query)) {
-      pstmt.setInt(1, perPage);
-      pstmt.setInt(2, offset);
+      if (afterId != null) {
+        pstmt.setInt(1, afterId);
+        pstmt.setInt(2, perPage);
+      } else {
+        int page = parsePaginationOrDefault(params, "page", 1);
+        pstmt.setInt(1, perPage);
+        pstmt.setInt(2, (page - 1) * perPage);
+      }
       try (ResultSet rs = pstmt.executeQuery()) {
         while (rs.next()) {
           todos.add(new TodoEntity(rs.getInt("id"), rs.getString("title"), rs.getString("description"),
@@ -114,7 +125,8 @@ public class TodoRepositoryImpl implements TodoRepository {
   // Update todo;
   @Override
   public Optional<TodoEntity> updateTodo(int todoId, TodoEntity todo) {
-    String query = "UPDATE todos SET title = ?, description = ?, completed = ? WHERE id = ?";
+    // RETURNING * 讓 UPDATE 一次 round trip 就拿回更新後的 record，不用再 getTodoById
+    String query = "UPDATE todos SET title = ?, description = ?, completed = ? WHERE id = ? RETURNING *";
 
     try (DatabaseConnection connection = databaseManager.getConnection();
         PreparedStatement pstmt = connection.prepareStatement(query)) {
@@ -123,42 +135,42 @@ public class TodoRepositoryImpl implements TodoRepository {
       pstmt.setBoolean(3, todo.completed);
       pstmt.setInt(4, todoId);
 
-      // 如果成功更新，則返回更新後的 TodoEntity otherwise return empty Optional
-      if (pstmt.executeUpdate() > 0) {
-        return getTodoById(todoId);
-      } else {
-        System.out.println("No todo found with ID: " + todoId);
-        return Optional.empty();
+      try (ResultSet rs = pstmt.executeQuery()) {
+        // 如果成功更新，返回更新後的 TodoEntity otherwise return empty Optional
+        if (rs.next()) {
+          return Optional.of(new TodoEntity(rs.getInt("id"), rs.getString("title"), rs.getString("description"),
+              rs.getBoolean("completed")));
+        } else {
+          System.out.println("No todo found with ID: " + todoId);
+          return Optional.empty();
+        }
       }
     } catch (SQLException e) {
       e.printStackTrace();
     }
 
-    return Optional.empty(); // 如果未找到 record 或更新失敗，return empty Optional
+    return Optional.empty(); // 如果未找到 record 或更新失敗，返回 empty Optional
   }
 
   // Delete todo
   @Override
   public Optional<TodoEntity> deleteTodo(int todoId) {
-    // 查詢待刪除的 record
-    Optional<TodoEntity> optionalTodo = getTodoById(todoId);
-    if (!optionalTodo.isPresent()) {
-      System.out.println("No todo found with ID: " + todoId);
-      return Optional.empty();
-    }
-
-    String query = "DELETE FROM todos WHERE id = ?";
+    // RETURNING * 直接返回被刪除的 record，不需要先查詢一次
+    String query = "DELETE FROM todos WHERE id = ? RETURNING *";
 
     try (DatabaseConnection connection = databaseManager.getConnection();
         PreparedStatement pstmt = connection.prepareStatement(query)) {
       pstmt.setInt(1, todoId);
 
-      // 刪除成功，返回被刪除的 TodoEntity otherwise return empty optional
-      if (pstmt.executeUpdate() > 0) {
-        return optionalTodo;
-      } else {
-        System.out.println("Failed to delete todo with ID: " + todoId);
-        return Optional.empty();
+      try (ResultSet rs = pstmt.executeQuery()) {
+        // 刪除成功，返回被刪除的 TodoEntity otherwise return empty optional
+        if (rs.next()) {
+          return Optional.of(new TodoEntity(rs.getInt("id"), rs.getString("title"), rs.getString("description"),
+              rs.getBoolean("completed")));
+        } else {
+          System.out.println("No todo found with ID: " + todoId);
+          return Optional.empty();
+        }
       }
     } catch (SQLException e) {
       e.printStackTrace();
@@ -166,4 +178,10 @@ public class TodoRepositoryImpl implements TodoRepository {
 
     return Optional.empty(); // 刪除失敗時返回 empty optional
   }
+
+  // Export todos
+  @Override
+  public int exportTodos(TodoWriter writer) throws IOException {
+    return TodoExporter.exportTodos(databaseManager, writer);
+  }
 }
@@ -1,28 +1,292 @@
 package todolist.repositories.postgresql;
 
+import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
 import todolist.entities.TodoEntity;
+import todolist.utils.database.redis.NearCache;
+import todolist.utils.database.redis.RedisManager;
 import todolist.utils.database.redis.RedisManagerImpl;
+import todolist.utils.database.redis.RedisUnavailableException;
+import todolist.utils.database.redis.SingleFlight;
 import todolist.utils.database.postgres.DatabaseManager;
 import todolist.utils.database.postgres.DatabaseConnection;
-import todolist.utils.json.Json;
+import todolist.utils.codec.TodoEntityCodec;
+import todolist.utils.codec.ValueCodec;
+import todolist.utils.loader.ConfigLoader;
 
 public class TodoRepositoryWithRedisImpl implements TodoRepository {
   private final DatabaseManager databaseManager;
-  private final String TODO_CACHE_KEY_PREFIX = "todos";
+  private final Supplier<RedisManager> redisManager;
+  // page / 單筆 todo 都用 TodoEntityCodec 的 binary 格式存，key 加上 bin 跟以前的 JSON entry 分開
+  private final String TODO_CACHE_KEY_PREFIX = "todos:bin";
+  private final ValueCodec<List<TodoEntity>> pageCodec = TodoEntityCodec.INSTANCE;
+  private final ValueCodec<Optional<TodoEntity>> entityCodec = TodoEntityCodec.INSTANCE.optional();
+  // 每次寫入 (create/update/delete) 都 INCR 這個 key，讀取時用目前的 generation 組 cache key，
+  // 舊 generation 的 entry 不會再被讀到，交給 TTL 自然過期，不需要 KEYS/SCAN 逐一刪除
+  private final String TODO_CACHE_GENERATION_KEY = "todos:generation";
+  // 單筆 todo 的 cache，查不到的 id 存 Optional.empty() (negative caching)，避免重複查詢不存在的 id 打到 DB
+  private final String TODO_ENTITY_CACHE_KEY_PREFIX = "todos:bin:id";
+  private final long cacheTtlSeconds;
+  private final long cacheTtlJitterSeconds;
+  private final long negativeCacheTtlSeconds;
+
+  // L1 near cache：generation 和單筆 todo 會被寫入改變，透過 pub/sub 通知所有 instance invalidate，
+  // nearCacheTtlMs 是漏掉 invalidation 訊息時最多讀到舊資料的時間；
+  // page 的 key 已經帶 generation，內容不會變，直接沿用 Redis 的 TTL；
+  // page 存成 TodoPage (含 encode 好的 JSON)，L1 hit 時 controller 直接輸出 bytes
+  private final NearCache<String> generationNearCache;
+  private final NearCache<TodoPage> pageNearCache;
+  private final NearCache<Optional<TodoEntity>> entityNearCache;
+  private final long nearCacheTtlMs;
+
+  // Cache stampede protection：JVM 內用 single-flight 合併同一個 key 的載入，
+  // 跨 instance 用短時間的 Redis lock (SET NX PX) 讓只有一個 node 查 DB 填 page cache
+  private static final long FILL_LOCK_TTL_MS = 500;
+  private static final long FILL_LOCK_POLL_MS = 20;
+  private final SingleFlight<TodoPage> pageLoads = new SingleFlight<>("todos.page");
+  private final SingleFlight<Optional<TodoEntity>> entityLoads = new SingleFlight<>("todos.entity");
+
+  // Graceful degradation：Redis 失敗 (timeout、circuit breaker open) 時讀取改查 PostgreSQL，寫入不受影響
+  // 寫入時沒辦法更新 cache 的話先記下來，Redis 恢復後第一個讀取補做 invalidation，避免讀到寫入前的舊資料
+  private static final int MAX_STALE_ENTITY_IDS = 10000;
+  private final AtomicBoolean generationBumpPending = new AtomicBoolean();
+  private final Set<Integer> staleEntityIds = ConcurrentHashMap.newKeySet();
+  private final AtomicBoolean indexRepairPending = new AtomicBoolean();
+
+  // Sorted set + hash 的 pagination index，完整時 page cache miss 不用查 PostgreSQL
+  private final TodoRedisIndex index;
 
   // DatabaseManager injection
   public TodoRepositoryWithRedisImpl(DatabaseManager databaseManager) {
+    this(databaseManager,
+        Long.parseLong(ConfigLoader.load(TodoRepositoryWithRedisImpl.class, "redis.cache.ttl.seconds", "60")),
+        Long.parseLong(ConfigLoader.load(TodoRepositoryWithRedisImpl.class, "redis.cache.ttl.jitter.seconds", "10")),
+        Long.parseLong(ConfigLoader.load(TodoRepositoryWithRedisImpl.class, "redis.cache.negative.ttl.seconds", "5")),
+        Long.parseLong(ConfigLoader.load(TodoRepositoryWithRedisImpl.class, "redis.near.cache.max.bytes", "16777216")),
+        Long.parseLong(ConfigLoader.load(TodoRepositoryWithRedisImpl.class, "redis.near.cache.ttl.ms", "2000")));
+  }
+
+  public TodoRepositoryWithRedisImpl(DatabaseManager databaseManager, long cacheTtlSeconds,
+      long cacheTtlJitterSeconds, long negativeCacheTtlSeconds, long nearCacheMaxBytes, long nearCacheTtlMs) {
+    this(databaseManager, RedisManagerImpl::getInstance, TodoRedisIndex::new, cacheTtlSeconds, cacheTtlJitterSeconds,
+        negativeCacheTtlSeconds, nearCacheMaxBytes, nearCacheTtlMs);
+  }
+
+  // redisManager 用 Supplier 延遲取得，建立 repository 時不需要連上 Redis；
+  // index 由 (generation key, exporter) 建立，exporter 是這個 repository 的 exportTodos
+  TodoRepositoryWithRedisImpl(DatabaseManager databaseManager, Supplier<RedisManager> redisManager,
+      BiFunction<String, TodoRedisIndex.Exporter, TodoRedisIndex> index, long cacheTtlSeconds,
+      long cacheTtlJitterSeconds, long negativeCacheTtlSeconds, long nearCacheMaxBytes, long nearCacheTtlMs) {
     this.databaseManager = databaseManager;
+    this.redisManager = redisManager;
+    this.cacheTtlSeconds = cacheTtlSeconds;
+    this.cacheTtlJitterSeconds = cacheTtlJitterSeconds;
+    this.negativeCacheTtlSeconds = negativeCacheTtlSeconds;
+    this.nearCacheTtlMs = nearCacheTtlMs;
+    this.generationNearCache = new NearCache<>("todos.generation", redisManager, 1024);
+    this.pageNearCache = new NearCache<>("todos.page", redisManager, nearCacheMaxBytes);
+    this.entityNearCache = new NearCache<>("todos.entity", redisManager, nearCacheMaxBytes / 4);
+    this.index = index.apply(TODO_CACHE_GENERATION_KEY, this::exportTodos);
+  }
+
+  // TTL 加上隨機 jitter，避免同一時間寫入的 entry 同時過期一起打到 DB
+  private long entityCacheTtlSeconds() {
+    return cacheTtlSeconds + ThreadLocalRandom.current().nextLong(cacheTtlJitterSeconds + 1);
+  }
+
+  private String entityCacheKey(int todoId) {
+    return TODO_ENTITY_CACHE_KEY_PREFIX + ":" + todoId;
+  }
+
+  // 寫入路徑同步更新 Redis，response 返回之後的查詢一定讀得到新資料；
+  // 讀取路徑 (read-through 填 cache) 交給 offerSetWithExpiry 在背景寫入，不增加 request latency
+  private void cacheTodo(TodoEntity todo, boolean inBackground) {
+    cacheEntity(todo.id, Optional.of(todo), entityCacheTtlSeconds(), inBackground);
+  }
+
+  private void cacheNotFound(int todoId, boolean inBackground) {
+    cacheEntity(todoId, Optional.empty(), negativeCacheTtlSeconds, inBackground);
+  }
+
+  private void cacheEntity(int todoId, Optional<TodoEntity> todo, long ttlSeconds, boolean inBackground) {
+    if (inBackground) {
+      redisManager.get().offerSetValueWithExpiry(entityCacheKey(todoId), todo, entityCodec, ttlSeconds);
+    } else {
+      redisManager.get().setValueWithExpiry(entityCacheKey(todoId), todo, entityCodec, ttlSeconds);
+      staleEntityIds.remove(todoId);
+    }
+    entityNearCache.put(entityCacheKey(todoId), todo, weigh(todo.map(List::of).orElse(List.of())),
+        Math.min(nearCacheTtlMs, ttlSeconds * 1000));
+  }
+
+  // Near cache 的 weight：大約的 heap 使用量 (bytes)
+  private static long weigh(List<TodoEntity> todos) {
+    long weight = 16;
+    for (TodoEntity todo : todos) {
+      weight += 32 + (todo.title != null ? todo.title.length() * 2 : 0)
+          + (todo.description != null ? todo.description.length() * 2 : 0);
+    }
+    return weight;
+  }
+
+  // 目前的 cache generation，key 不存在時 (還沒有任何寫入) 視為 0
+  private String currentGeneration() {
+    String generation = generationNearCache.get(TODO_CACHE_GENERATION_KEY);
+    if (generation == null) {
+      generation = redisManager.get().get(TODO_CACHE_GENERATION_KEY);
+      generation = generation != null ? generation : "0";
+      generationNearCache.put(TODO_CACHE_GENERATION_KEY, generation, 1, nearCacheTtlMs);
+    }
+    return generation;
+  }
+
+  // 寫入成功後才 bump generation：
+  // 讀取端如果在 bump 之前拿到舊 generation，查到的舊資料也只會寫進舊 generation 的 key
+  // INCR 失敗 (例如 circuit breaker open) 也一定要丟掉 L1 的 generation，
+  // 否則 nearCacheTtlMs 內還會用舊 generation 從 L1 讀到寫入前的 page
+  private void bumpGeneration() {
+    try {
+      redisManager.get().increment(TODO_CACHE_GENERATION_KEY);
+    } finally {
+      generationNearCache.invalidate(TODO_CACHE_GENERATION_KEY);
+    }
+  }
+
+  // 寫入成功後更新 cache：bump generation 讓所有 page 失效，entity cache 直接寫入新的值，
+  // pagination index 只更新這一筆 (必須在 bump 之後，見 TodoRedisIndex.rebuild)
+  // todo 為 empty 代表已經刪除
+  private void refreshCache(int todoId, Optional<TodoEntity> todo) {
+    tryBumpGeneration();
+    try {
+      if (todo.isPresent()) {
+        index.put(todo.get());
+      } else {
+        index.remove(todoId);
+      }
+    } catch (RuntimeException e) {
+      indexRepairPending.set(true); // index 少了這次寫入，恢復後重建
+      logCacheFailure("index update for todo " + todoId, e);
+    }
+    // 第一次 bump 到 index 更新之間的讀取，會用新的 generation 把寫入前的 index page 放進 near cache，
+    // index 寫好之後再 bump 一次，那個 generation 的 page 就不會再被讀到
+    if (index.isEnabled()) {
+      tryBumpGeneration();
+    }
+    entityNearCache.invalidate(entityCacheKey(todoId)); // 通知其他 instance 丟掉 L1 裡的舊資料
+    try {
+      if (todo.isPresent()) {
+        cacheTodo(todo.get(), false);
+      } else {
+        cacheNotFound(todoId, false); // 刪除後直接寫入 not found，後續查詢不用再打 DB
+      }
+    } catch (RuntimeException e) {
+      if (staleEntityIds.size() < MAX_STALE_ENTITY_IDS) {
+        staleEntityIds.add(todoId);
+      } else {
+        System.err.println("Too many stale todo cache entries, todo " + todoId + " may be stale until its TTL");
+      }
+      logCacheFailure("cache update for todo " + todoId, e);
+    }
+  }
+
+  private void tryBumpGeneration() {
+    try {
+      bumpGeneration();
+    } catch (RuntimeException e) {
+      generationBumpPending.set(true);
+      logCacheFailure("generation bump", e);
+    }
+  }
+
+  // Redis 恢復之後補做寫入時漏掉的 invalidation，還是失敗就留到下一次
+  private void repairCache() {
+    if (!generationBumpPending.get() && staleEntityIds.isEmpty() && !indexRepairPending.get()) {
+      return;
+    }
+    try {
+      if (indexRepairPending.compareAndSet(true, false)) {
+        try {
+          index.invalidate();
+        } catch (RuntimeException e) {
+          indexRepairPending.set(true);
+          throw e;
+        }
+      }
+      if (generationBumpPending.compareAndSet(true, false)) {
+        try {
+          bumpGeneration();
+        } catch (RuntimeException e) {
+          generationBumpPending.set(true);
+          throw e;
+        }
+      }
+      for (Integer todoId : staleEntityIds) {
+        redisManager.get().delete(entityCacheKey(todoId));
+        staleEntityIds.remove(todoId);
+      }
+    } catch (RuntimeException e) {
+      logCacheFailure("cache repair", e);
+    }
+  }
+
+  // Redis 讀取失敗視為 cache miss
+  private <T> T readCache(String key, ValueCodec<T> codec) {
+    try {
+      return redisManager.get().getValue(key, codec);
+    } catch (RuntimeException e) {
+      logCacheFailure("read " + key, e);
+      return null;
+    }
+  }
+
+  private List<TodoEntity> readIndex(Integer afterId, int perPage, int offset) {
+    try {
+      return index.page(afterId, perPage, offset);
+    } catch (RuntimeException e) {
+      logCacheFailure("index read", e);
+      return null;
+    }
+  }
+
+  // 讀取路徑的 cache 填入失敗不影響 response
+  private void writeCacheInBackground(String key, List<TodoEntity> todos) {
+    try {
+      redisManager.get().offerSetValueWithExpiry(key, todos, pageCodec, cacheTtlSeconds);
+    } catch (RuntimeException e) {
+      logCacheFailure("write " + key, e);
+    }
+  }
+
+  // circuit breaker open 是預期中的狀態，不用每個 request 都印 log
+  private static void logCacheFailure(String action, RuntimeException e) {
+    if (!(e instanceof RedisUnavailableException)) {
+      System.err.println("Redis " + action + " failed, falling back to PostgreSQL: " + e.getMessage());
+    }
   }
 
   // Create todo
+  // 寫入的 create / update / delete 都在 DB connection 歸還之後才 refreshCache，
+  // Redis 的 round trip (INCR、index、entity cache) 不會佔住 pool 裡的 connection
   @Override
   public Optional<TodoEntity> createTodo(TodoEntity todo) {
+    Optional<TodoEntity> createdTodo = insertTodo(todo);
+    if (createdTodo.isPresent()) {
+      refreshCache(createdTodo.get().id, createdTodo);
+    }
+    return createdTodo;
+  }
+
+  private Optional<TodoEntity> insertTodo(TodoEntity todo) {
     String query = "INSERT INTO todos (title, description, completed) VALUES (?, ?, ?) RETURNING *";
 
     try (DatabaseConnection connection = databaseManager.getConnection();
@@ -68,52 +332,186 @@ public class TodoRepositoryWithRedisImpl implements TodoRepository {
 
   @Override
   public List<TodoEntity> getTodos(Map<String, String> params) {
-    int page = parsePaginationOrDefault(params, "page", 1);
-    int perPage = parsePaginationOrDefault(params, "per_page", 10);
-    int offset = (page - 1) * perPage;
+    return getTodoPage(params).todos();
+  }
 
-    String cacheKey = String.format("%s:%d:%d:%d", TODO_CACHE_KEY_PREFIX, page, perPage, offset);
-    String cache = RedisManagerImpl.getInstance().get(cacheKey);
+  @Override
+  public TodoPage getTodoPage(Map<String, String> params) {
+    int perPage = parsePaginationOrDefault(params, "per_page", TodoCursor.DEFAULT_PER_PAGE);
+    Integer afterId = TodoCursor.afterId(params);
+    int page = afterId != null ? 0 : parsePaginationOrDefault(params, "page", 1);
+    int offset = afterId != null ? 0 : (page - 1) * perPage;
 
+    // keyset (after cursor) 和 page/per_page 使用不同的 cache key，兩者都帶上目前的 generation
+    // 拿不到 generation 代表 Redis 無法使用，不經過 cache 直接查 PostgreSQL
+    // generation 還沒 bump 成功時，目前 generation 的 page (L1 和 Redis) 都是寫入前的資料，也直接查 PostgreSQL
+    repairCache();
+    if (generationBumpPending.get()) {
+      return TodoPage.streamed(queryPageOrEmpty(afterId, perPage, offset), params);
+    }
+    String generation;
+    try {
+      generation = currentGeneration();
+    } catch (RuntimeException e) {
+      logCacheFailure("read " + TODO_CACHE_GENERATION_KEY, e);
+      return TodoPage.streamed(queryPageOrEmpty(afterId, perPage, offset), params);
+    }
+    String cacheKey = afterId != null
+        ? String.format("%s:g%s:after:%d:%d", TODO_CACHE_KEY_PREFIX, generation, afterId, perPage)
+        : String.format("%s:g%s:%d:%d:%d", TODO_CACHE_KEY_PREFIX, generation, page, perPage, offset);
+    // 先查 L1，hit 時沒有 Redis round trip，也不需要 decode / encode
+    TodoPage nearCached = pageNearCache.get(cacheKey);
+    if (nearCached != null) {
+      return nearCached;
+    }
+
+    // 同一個 key 同時 cache miss 時只有一個 request 去 Redis / DB 載入，其他 request 共用結果
+    return pageLoads.load(cacheKey, () -> loadPage(cacheKey, params, afterId, perPage, offset));
+  }
+
+  // 每個 instance 每個 page key 只 encode 一次 JSON，之後的 request 共用同一份 bytes
+  private TodoPage cachePageLocally(String cacheKey, List<TodoEntity> todos, Map<String, String> params) {
+    TodoPage page = TodoPage.of(todos, params);
+    pageNearCache.put(cacheKey, page, page.weight(), cacheTtlSeconds * 1000);
+    return page;
+  }
+
+  private TodoPage loadPage(String cacheKey, Map<String, String> params, Integer afterId, int perPage, int offset) {
+    // index 完整時直接用 ZRANGE / ZRANGEBYSCORE + pipelined HMGET 組出 page，不需要查 DB
+    List<TodoEntity> indexed = readIndex(afterId, perPage, offset);
+    if (indexed != null) {
+      return cachePageLocally(cacheKey, indexed, params);
+    }
+
+    List<TodoEntity> cache = readCache(cacheKey, pageCodec);
     if (cache != null) {
-      return Json.fromJSONToList(cache, TodoEntity.class);
+      return cachePageLocally(cacheKey, cache, params);
+    }
+
+    // 跨 instance：只有拿到 fill lock 的 node 查 DB，其他 node 等它寫入 Redis，
+    // 等不到 (例如 lock owner 查詢失敗) 才自己查 DB；拿 lock 失敗 (Redis 無法使用) 時直接查 DB
+    boolean locked;
+    try {
+      locked = redisManager.get().setIfAbsentWithExpiry(cacheKey + ":lock", "1", FILL_LOCK_TTL_MS);
+    } catch (RuntimeException e) {
+      logCacheFailure("fill lock " + cacheKey, e);
+      return TodoPage.of(queryPageOrEmpty(afterId, perPage, offset), params);
+    }
+    if (!locked) {
+      cache = awaitFill(cacheKey);
+      if (cache != null) {
+        return cachePageLocally(cacheKey, cache, params);
+      }
     }
 
+    try {
+      List<TodoEntity> todos = queryPage(afterId, perPage, offset);
+      writeCacheInBackground(cacheKey, todos);
+      return cachePageLocally(cacheKey, todos, params);
+    } catch (SQLException e) {
+      e.printStackTrace();
+    }
+
+    return TodoPage.of(List.of(), params);
+  }
+
+  private List<TodoEntity> queryPage(Integer afterId, int perPage, int offset) throws SQLException {
     List<TodoEntity> todos = new ArrayList<>();
-    String query = "SELECT * FROM todos LIMIT ? OFFSET ?";
+    // `after` cursor 走 keyset pagination：利用 primary key index seek，不會因為頁數變深而變慢
+    // 否則保留 page/per_page 的 OFFSET 查詢，加上 ORDER BY id 讓每一頁的順序穩定
+    String query = afterId != null
+        ? "SELECT * FROM todos WHERE id > ? ORDER BY id LIMIT ?"
+        : "SELECT * FROM todos ORDER BY id LIMIT ? OFFSET ?";
 
     try (DatabaseConnection connection = databaseManager.getConnection();
         PreparedStatement pstmt = connection.prepareStatement(query)) {
-      pstmt.setInt(1, perPage);
-      pstmt.setInt(2, offset);
+      if (afterId != null) {
+        pstmt.setInt(1, afterId);
+        pstmt.setInt(2, perPage);
+      } else {
+        pstmt.setInt(1, perPage);
+        pstmt.setInt(2, offset);
+      }
       try (ResultSet rs = pstmt.executeQuery()) {
         while (rs.next()) {
           todos.add(new TodoEntity(rs.getInt("id"), rs.getString("title"), rs.getString("description"),
               rs.getBoolean("completed")));
         }
       }
+    }
+    return todos;
+  }
 
-      RedisManagerImpl.getInstance().set(cacheKey, Json.toJSON(todos));
+  // Redis 無法使用時的查詢，結果不寫入任何 cache
+  private List<TodoEntity> queryPageOrEmpty(Integer afterId, int perPage, int offset) {
+    try {
+      return queryPage(afterId, perPage, offset);
     } catch (SQLException e) {
       e.printStackTrace();
+      return List.of();
     }
+  }
 
-    return todos;
+  // 每 FILL_LOCK_POLL_MS 檢查一次 Redis，最多等到 fill lock 過期
+  private List<TodoEntity> awaitFill(String cacheKey) {
+    long deadline = System.currentTimeMillis() + FILL_LOCK_TTL_MS;
+    while (System.currentTimeMillis() < deadline) {
+      try {
+        Thread.sleep(FILL_LOCK_POLL_MS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return null;
+      }
+      List<TodoEntity> cache = readCache(cacheKey, pageCodec);
+      if (cache != null) {
+        return cache;
+      }
+    }
+    return null;
   }
 
   // Get todo by id
   @Override
   public Optional<TodoEntity> getTodoById(int todoId) {
+    // read-through：依序查 L1、Redis，cache miss 才查 DB 並寫回 cache
+    repairCache();
+    Optional<TodoEntity> nearCached = entityNearCache.get(entityCacheKey(todoId));
+    if (nearCached != null) {
+      return nearCached;
+    }
+
+    return entityLoads.load(entityCacheKey(todoId), () -> loadTodo(todoId));
+  }
+
+  private Optional<TodoEntity> loadTodo(int todoId) {
+    Optional<TodoEntity> cache = readCache(entityCacheKey(todoId), entityCodec);
+    if (cache != null) {
+      entityNearCache.put(entityCacheKey(todoId), cache, weigh(cache.map(List::of).orElse(List.of())),
+          nearCacheTtlMs);
+      return cache;
+    }
+
     String query = "SELECT * FROM todos where id = ?";
 
     try (DatabaseConnection connection = databaseManager.getConnection();
         PreparedStatement pstmt = connection.prepareStatement(query)) {
       pstmt.setInt(1, todoId);
       try (ResultSet rs = pstmt.executeQuery()) {
-        return rs.next()
+        Optional<TodoEntity> todo = rs.next()
             ? Optional.of(new TodoEntity(rs.getInt("id"), rs.getString("title"), rs.getString("description"),
                 rs.getBoolean("completed")))
             : Optional.empty();
+        // SQLException 不做 negative caching，只 cache 確定不存在的 id
+        try {
+          if (todo.isPresent()) {
+            cacheTodo(todo.get(), true);
+          } else {
+            cacheNotFound(todoId, true);
+          }
+        } catch (RuntimeException e) {
+          logCacheFailure("write " + entityCacheKey(todoId), e);
+        }
+        return todo;
       }
     } catch (SQLException e) {
       e.printStackTrace();
@@ -125,7 +523,16 @@ public class TodoRepositoryWithRedisImpl implements TodoRepository {
   // Update todo;
   @Override
   public Optional<TodoEntity> updateTodo(int todoId, TodoEntity todo) {
-    String query = "UPDATE todos SET title = ?, description = ?, completed = ? WHERE id = ?";
+    Optional<TodoEntity> updatedTodo = updateRow(todoId, todo);
+    if (updatedTodo.isPresent()) {
+      refreshCache(todoId, updatedTodo); // 同一個 request 內直接更新 entity cache
+    }
+    return updatedTodo;
+  }
+
+  private Optional<TodoEntity> updateRow(int todoId, TodoEntity todo) {
+    // RETURNING * 讓 UPDATE 一次 round trip 就拿回更新後的 record，不用再 getTodoById
+    String query = "UPDATE todos SET title = ?, description = ?, completed = ? WHERE id = ? RETURNING *";
 
     try (DatabaseConnection connection = databaseManager.getConnection();
         PreparedStatement pstmt = connection.prepareStatement(query)) {
@@ -134,12 +541,16 @@ public class TodoRepositoryWithRedisImpl implements TodoRepository {
       pstmt.setBoolean(3, todo.completed);
       pstmt.setInt(4, todoId);
 
-      // 如果成功更新，返回更新後的 TodoEntity otherwise return empty Optional
-      if (pstmt.executeUpdate() > 0) {
-        return getTodoById(todoId);
-      } else {
-        System.out.println("No todo found with ID: " + todoId);
-        return Optional.empty();
+      try (ResultSet rs = pstmt.executeQuery()) {
+        // 如果成功更新，返回更新後的 TodoEntity otherwise return empty Optional
+        if (rs.next()) {
+          TodoEntity updatedTodo = new TodoEntity(rs.getInt("id"), rs.getString("title"), rs.getString("description"),
+              rs.getBoolean("completed"));
+          return Optional.of(updatedTodo);
+        } else {
+          System.out.println("No todo found with ID: " + todoId);
+          return Optional.empty();
+        }
       }
     } catch (SQLException e) {
       e.printStackTrace();
@@ -151,25 +562,30 @@ public class TodoRepositoryWithRedisImpl implements TodoRepository {
   // Delete todo
   @Override
   public Optional<TodoEntity> deleteTodo(int todoId) {
-    // 查詢待刪除的記錄
-    Optional<TodoEntity> optionalTodo = getTodoById(todoId);
-    if (!optionalTodo.isPresent()) {
-      System.out.println("No todo found with ID: " + todoId);
-      return Optional.empty();
+    Optional<TodoEntity> deletedTodo = deleteRow(todoId);
+    if (deletedTodo.isPresent()) {
+      refreshCache(todoId, Optional.empty());
     }
+    return deletedTodo;
+  }
 
-    String query = "DELETE FROM todos WHERE id = ?";
+  private Optional<TodoEntity> deleteRow(int todoId) {
+    // RETURNING * 直接返回被刪除的 record，不需要先查詢一次
+    String query = "DELETE FROM todos WHERE id = ? RETURNING *";
 
     try (DatabaseConnection connection = databaseManager.getConnection();
         PreparedStatement pstmt = connection.prepareStatement(query)) {
       pstmt.setInt(1, todoId);
 
-      // 刪除成功，返回被刪除的 TodoEntity otherwise return empty optional
-      if (pstmt.executeUpdate() > 0) {
-        return optionalTodo;
-      } else {
-        System.out.println("Failed to delete todo with ID: " + todoId);
-        return Optional.empty();
+      try (ResultSet rs = pstmt.executeQuery()) {
+        // 刪除成功，返回被刪除的 TodoEntity otherwise return empty optional
+        if (rs.next()) {
+          return Optional.of(new TodoEntity(rs.getInt("id"), rs.getString("title"), rs.getString("description"),
+              rs.getBoolean("completed")));
+        } else {
+          System.out.println("No todo found with ID: " + todoId);
+          return Optional.empty();
+        }
       }
     } catch (SQLException e) {
       e.printStackTrace();
@@ -177,4 +593,10 @@ public class TodoRepositoryWithRedisImpl implements TodoRepository {
 
     return Optional.empty(); // 刪除失敗時返回 empty optional
   }
+
+  // Export todos (直接讀 PostgreSQL，不經過 Redis cache)
+  @Override
+  public int exportTodos(TodoWriter writer) throws IOException {
+    return TodoExporter.exportTodos(databaseManager, writer);
+  }
 }
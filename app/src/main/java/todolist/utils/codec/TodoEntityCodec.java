@@ -0,0 +1,160 @@
+package todolist.utils.codec;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import todolist.entities.TodoEntity;
+
+// List<TodoEntity> 的 compact binary encoding，取代 cache 裡的 JSON 字串
+//
+// [header][varint count] 後面接 count 筆 entity：
+// [zigzag varint id][flags][varint length + UTF-8 title][varint length + UTF-8 description]
+// flags: bit0 completed, bit1 title 為 null, bit2 description 為 null (null 欄位不寫 length / bytes)
+//
+// encode 結果超過 compressionThreshold bytes 時整段 body 用 Deflate 壓縮，header 記錄是否壓縮
+// 以及原始長度，decode 時一次配置好 buffer
+public class TodoEntityCodec implements ValueCodec<List<TodoEntity>> {
+  public static final int DEFAULT_COMPRESSION_THRESHOLD = 1024;
+  public static final TodoEntityCodec INSTANCE = new TodoEntityCodec(DEFAULT_COMPRESSION_THRESHOLD);
+  // HTTP response 用 (Accept: application/x-todo-binary)，壓縮交給 HTTP 層
+  public static final TodoEntityCodec UNCOMPRESSED = new TodoEntityCodec(0);
+
+  private static final byte FORMAT_RAW = 1;
+  private static final byte FORMAT_DEFLATE = 2;
+
+  private static final int COMPLETED = 1;
+  private static final int TITLE_NULL = 1 << 1;
+  private static final int DESCRIPTION_NULL = 1 << 2;
+
+  private final int compressionThreshold;
+
+  // compressionThreshold <= 0 代表不壓縮
+  public TodoEntityCodec(int compressionThreshold) {
+    this.compressionThreshold = compressionThreshold;
+  }
+
+  @Override
+  public byte[] encode(List<TodoEntity> todos) {
+    VarintWriter writer = new VarintWriter(16 + todos.size() * 48);
+    writer.writeVarint(todos.size());
+    for (TodoEntity todo : todos) {
+      writer.writeVarint((todo.id << 1) ^ (todo.id >> 31)); // zigzag
+      int flags = (todo.completed ? COMPLETED : 0)
+          | (todo.title == null ? TITLE_NULL : 0)
+          | (todo.description == null ? DESCRIPTION_NULL : 0);
+      writer.writeByte(flags);
+      writer.writeString(todo.title);
+      writer.writeString(todo.description);
+    }
+
+    if (compressionThreshold <= 0 || writer.length < compressionThreshold) {
+      return writer.toBytes(FORMAT_RAW);
+    }
+    return deflate(writer);
+  }
+
+  @Override
+  public List<TodoEntity> decode(byte[] bytes) {
+    if (bytes == null || bytes.length == 0) {
+      throw new IllegalArgumentException("Empty todo payload");
+    }
+
+    VarintReader reader;
+    switch (bytes[0]) {
+      case FORMAT_RAW:
+        reader = new VarintReader(bytes, 1);
+        break;
+      case FORMAT_DEFLATE:
+        reader = inflate(bytes);
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown todo payload format: " + bytes[0]);
+    }
+
+    int count = reader.readVarint();
+    if (count < 0 || count > reader.remaining()) {
+      throw new IllegalArgumentException("Invalid todo count: " + count);
+    }
+    List<TodoEntity> todos = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      int zigzag = reader.readVarint();
+      int id = (zigzag >>> 1) ^ -(zigzag & 1);
+      int flags = reader.readByte();
+      String title = (flags & TITLE_NULL) != 0 ? null : reader.readString();
+      String description = (flags & DESCRIPTION_NULL) != 0 ? null : reader.readString();
+      todos.add(new TodoEntity(id, title, description, (flags & COMPLETED) != 0));
+    }
+    return todos;
+  }
+
+  // 單筆 todo 的 codec，沿用同一個格式：0 筆代表 not found (negative cache)，1 筆代表找到
+  public ValueCodec<Optional<TodoEntity>> optional() {
+    return new ValueCodec<Optional<TodoEntity>>() {
+      @Override
+      public byte[] encode(Optional<TodoEntity> todo) {
+        return TodoEntityCodec.this.encode(todo.map(List::of).orElse(List.of()));
+      }
+
+      @Override
+      public Optional<TodoEntity> decode(byte[] bytes) {
+        List<TodoEntity> todos = TodoEntityCodec.this.decode(bytes);
+        return todos.isEmpty() ? Optional.empty() : Optional.of(todos.get(0));
+      }
+    };
+  }
+
+  // [FORMAT_DEFLATE][varint 原始長度][deflate body]
+  private static byte[] deflate(VarintWriter writer) {
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try {
+      deflater.setInput(writer.buffer, 0, writer.length);
+      deflater.finish();
+      VarintWriter compressed = new VarintWriter(writer.length / 2 + 16);
+      compressed.writeVarint(writer.length);
+      while (!deflater.finished()) {
+        compressed.ensureCapacity(256);
+        compressed.length += deflater.deflate(compressed.buffer, compressed.length,
+            compressed.buffer.length - compressed.length);
+      }
+      // 壓縮後沒有比較小就存原始格式
+      if (compressed.length >= writer.length) {
+        return writer.toBytes(FORMAT_RAW);
+      }
+      return compressed.toBytes(FORMAT_DEFLATE);
+    } finally {
+      deflater.end();
+    }
+  }
+
+  private static VarintReader inflate(byte[] bytes) {
+    VarintReader header = new VarintReader(bytes, 1);
+    int length = header.readVarint();
+    if (length < 0) {
+      throw new IllegalArgumentException("Invalid todo payload length: " + length);
+    }
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(bytes, header.position, bytes.length - header.position);
+      byte[] body = new byte[length];
+      int read = 0;
+      while (read < length && !inflater.finished()) {
+        int n = inflater.inflate(body, read, length - read);
+        if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        read += n;
+      }
+      if (read != length) {
+        throw new IllegalArgumentException("Truncated todo payload");
+      }
+      return new VarintReader(body, 0);
+    } catch (DataFormatException e) {
+      throw new IllegalArgumentException("Corrupted todo payload", e);
+    } finally {
+      inflater.end();
+    }
+  }
+}
@@ -0,0 +1,66 @@
+package todolist.utils.codec;
+
+import java.util.ArrayList;
+import java.util.List;
+import todolist.entities.TodoMongoEntity;
+
+// List<TodoMongoEntity> 的 binary encoding，格式跟 TodoEntityCodec 的 raw format 一樣，
+// 只是 id 是字串 (ObjectId 的 hex)：
+//
+// [1][varint count] 後面接 count 筆 entity：
+// [flags][varint length + UTF-8 id][varint length + UTF-8 title][varint length + UTF-8 description]
+// flags: bit0 completed, bit1 title 為 null, bit2 description 為 null, bit3 id 為 null
+//
+// 只用在 HTTP response，不壓縮 (壓縮交給 HTTP 層)
+public class TodoMongoEntityCodec implements ValueCodec<List<TodoMongoEntity>> {
+  public static final TodoMongoEntityCodec INSTANCE = new TodoMongoEntityCodec();
+
+  private static final byte FORMAT_RAW = 1;
+
+  private static final int COMPLETED = 1;
+  private static final int TITLE_NULL = 1 << 1;
+  private static final int DESCRIPTION_NULL = 1 << 2;
+  private static final int ID_NULL = 1 << 3;
+
+  @Override
+  public byte[] encode(List<TodoMongoEntity> todos) {
+    VarintWriter writer = new VarintWriter(16 + todos.size() * 64);
+    writer.writeVarint(todos.size());
+    for (TodoMongoEntity todo : todos) {
+      int flags = (todo.completed ? COMPLETED : 0)
+          | (todo.title == null ? TITLE_NULL : 0)
+          | (todo.description == null ? DESCRIPTION_NULL : 0)
+          | (todo.id == null ? ID_NULL : 0);
+      writer.writeByte(flags);
+      writer.writeString(todo.id);
+      writer.writeString(todo.title);
+      writer.writeString(todo.description);
+    }
+    return writer.toBytes(FORMAT_RAW);
+  }
+
+  @Override
+  public List<TodoMongoEntity> decode(byte[] bytes) {
+    if (bytes == null || bytes.length == 0) {
+      throw new IllegalArgumentException("Empty todo payload");
+    }
+    if (bytes[0] != FORMAT_RAW) {
+      throw new IllegalArgumentException("Unknown todo payload format: " + bytes[0]);
+    }
+
+    VarintReader reader = new VarintReader(bytes, 1);
+    int count = reader.readVarint();
+    if (count < 0 || count > reader.remaining()) {
+      throw new IllegalArgumentException("Invalid todo count: " + count);
+    }
+    List<TodoMongoEntity> todos = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      int flags = reader.readByte();
+      String id = (flags & ID_NULL) != 0 ? null : reader.readString();
+      String title = (flags & TITLE_NULL) != 0 ? null : reader.readString();
+      String description = (flags & DESCRIPTION_NULL) != 0 ? null : reader.readString();
+      todos.add(new TodoMongoEntity(id, title, description, (flags & COMPLETED) != 0));
+    }
+    return todos;
+  }
+}
@@ -0,0 +1,9 @@
+package todolist.utils.codec;
+
+// Redis value 的 encode / decode，讓 RedisManager 可以用 byte[] 存任意型別
+// decode 遇到格式錯誤時丟 IllegalArgumentException
+public interface ValueCodec<T> {
+  byte[] encode(T value);
+
+  T decode(byte[] bytes);
+}
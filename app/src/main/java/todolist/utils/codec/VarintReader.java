@@ -0,0 +1,47 @@
+package todolist.utils.codec;
+
+import java.nio.charset.StandardCharsets;
+
+// VarintWriter 的反方向，資料不完整或格式錯誤時丟 IllegalArgumentException
+final class VarintReader {
+  final byte[] buffer;
+  int position;
+
+  VarintReader(byte[] buffer, int position) {
+    this.buffer = buffer;
+    this.position = position;
+  }
+
+  int remaining() {
+    return buffer.length - position;
+  }
+
+  int readByte() {
+    if (position >= buffer.length) {
+      throw new IllegalArgumentException("Truncated todo payload");
+    }
+    return buffer[position++] & 0xFF;
+  }
+
+  int readVarint() {
+    int value = 0;
+    for (int shift = 0; shift < 35; shift += 7) {
+      int b = readByte();
+      value |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IllegalArgumentException("Malformed varint");
+  }
+
+  String readString() {
+    int length = readVarint();
+    if (length < 0 || length > remaining()) {
+      throw new IllegalArgumentException("Invalid string length: " + length);
+    }
+    String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+    position += length;
+    return value;
+  }
+}
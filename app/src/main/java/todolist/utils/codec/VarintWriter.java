@@ -0,0 +1,54 @@
+package todolist.utils.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// binary codec 共用的 writer：varint、1 byte 的 flags 和 varint length + UTF-8 string
+// null string 不寫任何 bytes，由呼叫端用 flags 記錄
+final class VarintWriter {
+  byte[] buffer;
+  int length;
+
+  VarintWriter(int initialCapacity) {
+    buffer = new byte[Math.max(initialCapacity, 16)];
+  }
+
+  void ensureCapacity(int extra) {
+    if (length + extra > buffer.length) {
+      buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+    }
+  }
+
+  void writeByte(int value) {
+    ensureCapacity(1);
+    buffer[length++] = (byte) value;
+  }
+
+  void writeVarint(int value) {
+    ensureCapacity(5);
+    while ((value & ~0x7F) != 0) {
+      buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    buffer[length++] = (byte) value;
+  }
+
+  void writeString(String value) {
+    if (value == null) {
+      return;
+    }
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    writeVarint(bytes.length);
+    ensureCapacity(bytes.length);
+    System.arraycopy(bytes, 0, buffer, length, bytes.length);
+    length += bytes.length;
+  }
+
+  // 前面加上 1 byte 的 format header
+  byte[] toBytes(byte format) {
+    byte[] bytes = new byte[length + 1];
+    bytes[0] = format;
+    System.arraycopy(buffer, 0, bytes, 1, length);
+    return bytes;
+  }
+}
@@ -0,0 +1,21 @@
+package todolist.utils.database.postgres;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Map;
+import todolist.utils.loader.ConfigLoader;
+
+// 建立實體連線的方式, 預設是 DriverManager.getConnection,
+// 也可以注入 stub connection 用於 benchmark / test, 不需要真的 Postgres
+@FunctionalInterface
+public interface ConnectionFactory {
+  Connection create() throws SQLException;
+
+  // 讀取 db.properties 中的 db.url, db.user, db.password
+  static ConnectionFactory fromConfig(Class<?> cls) {
+    Map<String, String> connectionConfig = ConfigLoader.load(cls, new String[] { "db.url", "db.user", "db.password" });
+    return () -> DriverManager.getConnection(connectionConfig.get("db.url"), connectionConfig.get("db.user"),
+        connectionConfig.get("db.password"));
+  }
+}
@@ -1,26 +1,40 @@
 package todolist.utils.database.postgres;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.sql.*;
 import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 // 主要為了 override with 自己的 close method 用來把 connection 釋放回 pool,
 // 這樣可以用在 try with resource 語法中
 // 所以不執行原生的 connection.close(), 避免把連線被直接關閉
+// close() 可以重複呼叫, 只有第一次會歸還連線
 //
 // 其他 override methods 都是 fork 原生的 Connection class
+//
+// 建立的 Statement 會包一層 proxy, 執行時發生 SQLException 就通知 DatabaseManager,
+// 讓 pool 在下次借出這條連線前先做一次 isValid() 檢查
+//
+// prepareStatement(String) 會使用跟著實體連線的 PreparedStatementCache, close() 之後 statement 仍然保留
 public class DatabaseConnection implements Connection {
   private final Connection connection;
   private final DatabaseManager databaseManager;
+  private final AtomicBoolean closed = new AtomicBoolean();
 
   public DatabaseConnection(Connection connection, DatabaseManager databaseManager) {
     this.connection = connection;
     this.databaseManager = databaseManager;
   }
 
+  // 同一個 wrapper 只歸還一次: 連線歸還之後可能已經借給別人, 再 close 一次不能把別人的連線還回 pool
   @Override
   public void close() {
+    if (!closed.compareAndSet(false, true)) {
+      return;
+    }
     databaseManager.releaseConnection(connection);
     // try {
     // connection.close();
@@ -30,6 +44,21 @@ public class DatabaseConnection implements Connection {
     // }
   }
 
+  @SuppressWarnings("unchecked")
+  private <T extends Statement> T reportSqlErrors(T statement, Class<T> type) {
+    return (T) Proxy.newProxyInstance(DatabaseConnection.class.getClassLoader(), new Class<?>[] { type },
+        (proxy, method, args) -> {
+          try {
+            return method.invoke(statement, args);
+          } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof SQLException) {
+              databaseManager.reportSqlError(connection);
+            }
+            throw e.getCause();
+          }
+        });
+  }
+
   @Override
   public <T> T unwrap(Class<T> iface) throws SQLException {
     return connection.unwrap(iface);
@@ -42,17 +71,20 @@ public class DatabaseConnection implements Connection {
 
   @Override
   public Statement createStatement() throws SQLException {
-    return connection.createStatement();
+    return reportSqlErrors(connection.createStatement(), Statement.class);
   }
 
+  // 走 PreparedStatementCache, 相同 SQL 在同一條實體連線上重用同一個 statement
   @Override
   public PreparedStatement prepareStatement(String sql) throws SQLException {
-    return connection.prepareStatement(sql);
+    PreparedStatement cached = PreparedStatementCache.of(connection, databaseManager.getStatementCacheStats())
+        .prepare(sql, () -> databaseManager.reportSqlError(connection));
+    return cached != null ? cached : reportSqlErrors(connection.prepareStatement(sql), PreparedStatement.class);
   }
 
   @Override
   public CallableStatement prepareCall(String sql) throws SQLException {
-    return connection.prepareCall(sql);
+    return reportSqlErrors(connection.prepareCall(sql), CallableStatement.class);
   }
 
   @Override
@@ -132,18 +164,19 @@ public class DatabaseConnection implements Connection {
 
   @Override
   public Statement createStatement(int resultSetType, int resultSetConcurrency) throws SQLException {
-    return connection.createStatement(resultSetType, resultSetConcurrency);
+    return reportSqlErrors(connection.createStatement(resultSetType, resultSetConcurrency), Statement.class);
   }
 
   @Override
   public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency)
       throws SQLException {
-    return connection.prepareStatement(sql, resultSetType, resultSetConcurrency);
+    return reportSqlErrors(connection.prepareStatement(sql, resultSetType, resultSetConcurrency),
+        PreparedStatement.class);
   }
 
   @Override
   public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
-    return connection.prepareCall(sql, resultSetType, resultSetConcurrency);
+    return reportSqlErrors(connection.prepareCall(sql, resultSetType, resultSetConcurrency), CallableStatement.class);
   }
 
   @Override
@@ -189,34 +222,37 @@ public class DatabaseConnection implements Connection {
   @Override
   public Statement createStatement(int resultSetType, int resultSetConcurrency, int resultSetHoldability)
       throws SQLException {
-    return connection.createStatement(resultSetType, resultSetConcurrency, resultSetHoldability);
+    return reportSqlErrors(connection.createStatement(resultSetType, resultSetConcurrency, resultSetHoldability),
+        Statement.class);
   }
 
   @Override
   public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency,
       int resultSetHoldability) throws SQLException {
-    return connection.prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
+    return reportSqlErrors(connection.prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability),
+        PreparedStatement.class);
   }
 
   @Override
   public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency,
       int resultSetHoldability) throws SQLException {
-    return connection.prepareCall(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
+    return reportSqlErrors(connection.prepareCall(sql, resultSetType, resultSetConcurrency, resultSetHoldability),
+        CallableStatement.class);
   }
 
   @Override
   public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
-    return connection.prepareStatement(sql, autoGeneratedKeys);
+    return reportSqlErrors(connection.prepareStatement(sql, autoGeneratedKeys), PreparedStatement.class);
   }
 
   @Override
   public PreparedStatement prepareStatement(String sql, int[] columnIndexes) throws SQLException {
-    return connection.prepareStatement(sql, columnIndexes);
+    return reportSqlErrors(connection.prepareStatement(sql, columnIndexes), PreparedStatement.class);
   }
 
   @Override
   public PreparedStatement prepareStatement(String sql, String[] columnNames) throws SQLException {
-    return connection.prepareStatement(sql, columnNames);
+    return reportSqlErrors(connection.prepareStatement(sql, columnNames), PreparedStatement.class);
   }
 
   @Override
@@ -2,6 +2,7 @@ package todolist.utils.database.postgres;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Map;
 
 public interface DatabaseManager {
   DatabaseConnection getConnection() throws SQLException;
@@ -11,4 +12,18 @@ public interface DatabaseManager {
   void shutdown();
 
   int getPoolSize();
+
+  // Statement 執行失敗時由 DatabaseConnection 呼叫, 讓 pool 下次借出前重新驗證這條連線
+  default void reportSqlError(Connection connection) {
+  }
+
+  // 這個 pool 的 PreparedStatementCache hit / miss / eviction; 預設不統計 (所有 pool 共用一份, 不會被讀取)
+  default PreparedStatementCache.Stats getStatementCacheStats() {
+    return PreparedStatementCache.Stats.UNTRACKED;
+  }
+
+  // Pool metrics, e.g. borrow wait-time histogram; 預設沒有任何 metrics
+  default Map<String, Long> getMetrics() {
+    return Map.of();
+  }
 }
@@ -1,42 +1,82 @@
 package todolist.utils.database.postgres;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import todolist.utils.loader.ConfigLoader;
+import todolist.utils.metrics.Histogram;
 
 public class DatabaseManagerImpl implements DatabaseManager {
-  private final Map<String, String> connectionConfig;
+  private final ConnectionFactory connectionFactory;
 
-  private final List<Connection> connectionPool; // 可用的連線
-  private final List<Connection> usedConnections; // 已借出的連線
-  private final int MAX_POOL_SIZE = 10;
+  private final Deque<Connection> connectionPool; // 可用的連線
+  private final Set<Connection> usedConnections; // 已借出的連線, identity set 讓歸還是 O(1)
+  private final int MAX_POOL_SIZE;
+
+  // 每個借出的連線佔一個 permit, 滿了之後 caller 依 FIFO 順序排隊等待 (fair)
+  // 最多等 borrowTimeoutMs, 超過就丟 SQLTransientConnectionException
+  private final Semaphore permits;
+  private final long borrowTimeoutMs;
+  private final Histogram borrowWaitMicros = new Histogram();
+  private final LongAdder borrowTimeoutCount = new LongAdder();
+
+  // 借出時只有在連線閒置超過 validationIntervalMs 或上次使用發生 SQL error 時, 才做 isValid() round trip
+  private final long validationIntervalMs;
+  private final Map<Connection, Long> lastValidatedTimestamps; // 最近一次確認連線可用的時間
+  private final Set<Connection> suspectConnections; // 發生過 SQL error, 下次借出前必須驗證
+  private final LongAdder validationCount = new LongAdder();
+  private final LongAdder validationSkippedCount = new LongAdder();
+  private final LongAdder validationFailedCount = new LongAdder();
+  private final LongAdder keepaliveCount = new LongAdder();
+  private final PreparedStatementCache.Stats statementCacheStats = new PreparedStatementCache.Stats();
 
   private Timer healthCheckTimer;
+  private boolean shutdown; // 需持有 this 的 monitor
 
   public DatabaseManagerImpl() {
-    connectionConfig = ConfigLoader.load(DatabaseManagerImpl.class,
-        new String[] { "db.url", "db.user", "db.password" });
+    this(ConnectionFactory.fromConfig(DatabaseManagerImpl.class),
+        10,
+        Long.parseLong(ConfigLoader.load(DatabaseManagerImpl.class, "db.pool.borrow.timeout.ms", "3000")),
+        Long.parseLong(ConfigLoader.load(DatabaseManagerImpl.class, "db.pool.validation.interval.ms", "30000")));
+
+    // 在 JVM 關閉時自動清理資源
+    Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown));
+  }
+
+  public DatabaseManagerImpl(ConnectionFactory connectionFactory, int maxPoolSize, long borrowTimeoutMs,
+      long validationIntervalMs) {
+    this.connectionFactory = connectionFactory;
+    this.MAX_POOL_SIZE = maxPoolSize;
+    this.permits = new Semaphore(maxPoolSize, true);
+    this.borrowTimeoutMs = borrowTimeoutMs;
+    this.validationIntervalMs = validationIntervalMs;
 
-    connectionPool = new ArrayList<>();
-    usedConnections = new ArrayList<>();
+    connectionPool = new ArrayDeque<>();
+    usedConnections = Collections.newSetFromMap(new IdentityHashMap<>());
+    lastValidatedTimestamps = new IdentityHashMap<>();
+    suspectConnections = Collections.newSetFromMap(new IdentityHashMap<>());
 
     // 啟動健康檢查
     startConnectionHealthCheck();
-
-    // 在 JVM 關閉時自動清理資源
-    Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown));
   }
 
   private Connection createConnection() {
     try {
-      return DriverManager.getConnection(connectionConfig.get("db.url"), connectionConfig.get("db.user"),
-          connectionConfig.get("db.password"));
+      return connectionFactory.create();
     } catch (SQLException e) {
       e.printStackTrace();
       throw new RuntimeException("Failed to create a database connection.");
@@ -44,6 +84,7 @@ public class DatabaseManagerImpl implements DatabaseManager {
   }
 
   private void closeConnection(Connection connection) {
+    PreparedStatementCache.evict(connection); // 實體連線回收時一起丟掉 cached statements
     try {
       if (connection != null && !connection.isClosed()) {
         connection.close();
@@ -55,83 +96,233 @@ public class DatabaseManagerImpl implements DatabaseManager {
 
   private void startConnectionHealthCheck() {
     healthCheckTimer = new Timer(true); // Daemon thread, JVM 結束時自動終止
+    // pool 一開始是空的, 第一次檢查等一個週期之後再做
     healthCheckTimer.schedule(new TimerTask() {
       @Override
       public void run() {
         System.out.println("Running health check");
-        // 這會把 DatabaseManagerImpl 鎖住，避免其他 Thread 執行此 class
-        // 但是鎖整個，優化方式是可以在鎖細粒度小一點得地方，而非整個 class
-        // 可以參考 implementation v1, v2, v3 and v4
-        synchronized (DatabaseManagerImpl.this) {
-          connectionPool.removeIf(conn -> {
-            try {
-              if (conn == null || conn.isClosed()) {
-                System.out.println("Found a broken connection, removing from pool.");
-                return true; // 移除失效連線
-              }
-              return false;
-            } catch (SQLException e) {
-              e.printStackTrace();
-              return true;
-            }
-          });
+        checkIdleConnections();
+      }
+    }, 30000, 30000); // 每 30 秒檢查一次
+  }
+
+  // 移除已經關閉的閒置連線, 並對閒置超過 validationIntervalMs 的連線做 keepalive,
+  // 這樣借出時通常不需要再做 round trip
+  //
+  // isValid() 最多要等 5 秒, 不能在 lock 裡做 (borrow / release 都需要同一個 monitor):
+  // 先在 lock 裡把要驗證的連線從 pool 拿出來, 在 lock 之外驗證, 再回到 lock 裡放回 pool
+  void checkIdleConnections() {
+    List<Connection> candidates = new ArrayList<>();
+    synchronized (this) {
+      long currentTime = System.currentTimeMillis();
+      connectionPool.removeIf(conn -> {
+        try {
+          if (conn == null || conn.isClosed()) {
+            System.out.println("Found a broken connection, removing from pool.");
+            forgetConnection(conn);
+            return true; // 移除失效連線
+          }
+        } catch (SQLException e) {
+          e.printStackTrace();
+          candidates.add(conn); // 交給下面的 isValid() 決定
+          return true;
+        }
+        if (needsValidation(conn, currentTime)) {
+          candidates.add(conn);
+          return true;
         }
+        return false;
+      });
+    }
+
+    for (Connection conn : candidates) {
+      keepaliveCount.increment();
+      boolean valid;
+      try {
+        valid = conn.isValid(5);
+      } catch (SQLException e) {
+        e.printStackTrace();
+        valid = false;
       }
-    }, 0, 30000); // 每 30 秒檢查一次
+
+      synchronized (this) {
+        // 驗證期間借用的人可能已經建立了新連線, pool 滿了就不放回去
+        if (valid && !shutdown && connectionPool.size() + usedConnections.size() < MAX_POOL_SIZE) {
+          markValidated(conn, System.currentTimeMillis());
+          connectionPool.addLast(conn);
+          continue;
+        }
+        forgetConnection(conn);
+      }
+      if (!valid) {
+        System.out.println("Keepalive failed, removing connection from pool.");
+      }
+      closeConnection(conn);
+    }
+  }
+
+  // 呼叫端需持有 this 的 monitor
+  private boolean needsValidation(Connection connection, long currentTime) {
+    if (suspectConnections.contains(connection)) {
+      return true;
+    }
+    Long lastValidated = lastValidatedTimestamps.get(connection);
+    return lastValidated == null || currentTime - lastValidated > validationIntervalMs;
+  }
+
+  // 呼叫端需持有 this 的 monitor
+  private void markValidated(Connection connection, long currentTime) {
+    suspectConnections.remove(connection);
+    lastValidatedTimestamps.put(connection, currentTime);
+  }
+
+  // 呼叫端需持有 this 的 monitor
+  private void forgetConnection(Connection connection) {
+    PreparedStatementCache.evict(connection);
+    suspectConnections.remove(connection);
+    lastValidatedTimestamps.remove(connection);
   }
 
   @Override
-  public synchronized DatabaseConnection getConnection() {
-    if (connectionPool.isEmpty()) {
-      if (usedConnections.size() < MAX_POOL_SIZE) {
-        connectionPool.add(createConnection());
-      } else {
-        throw new RuntimeException("Maximum pool size reached, no available connections!");
+  public DatabaseConnection getConnection() throws SQLException {
+    long startTime = System.nanoTime();
+    try {
+      if (!permits.tryAcquire(borrowTimeoutMs, TimeUnit.MILLISECONDS)) {
+        borrowTimeoutCount.increment();
+        borrowWaitMicros.record((System.nanoTime() - startTime) / 1000);
+        throw new SQLTransientConnectionException(
+            "Timed out after " + borrowTimeoutMs + "ms waiting for a connection, pool size: " + MAX_POOL_SIZE);
       }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SQLTransientConnectionException("Interrupted while waiting for a connection from the pool.", e);
     }
+    borrowWaitMicros.record((System.nanoTime() - startTime) / 1000);
 
-    Connection connection = connectionPool.remove(connectionPool.size() - 1);
+    try {
+      return borrowConnection();
+    } catch (RuntimeException e) {
+      permits.release(); // 建立連線失敗, 把名額還給下一個等待者
+      throw e;
+    }
+  }
+
+  // 已經拿到 permit, 一定有名額: 取出閒置連線或建立新連線
+  // 建立與驗證連線需要 round trip, 所以在 lock 之外執行
+  private DatabaseConnection borrowConnection() {
+    Connection connection;
+    boolean validate;
+    synchronized (this) {
+      connection = connectionPool.pollLast();
+      validate = connection != null && needsValidation(connection, System.currentTimeMillis());
+    }
 
     // 檢查連線是否有效，若無效則重新建立連線
+    // isClosed() 只檢查 driver 內部狀態, isValid() 才需要和 server 做 round trip
     try {
-      if (connection == null || connection.isClosed()) {
-        System.out.println("Invalid connection, creating a new one.");
+      if (connection == null) {
         connection = createConnection();
-      } else if (!connection.isValid(5)) {
-        System.out.println("The connection is not valid, creating a new one.");
-        closeConnection(connection);
+      } else if (connection.isClosed()) {
+        System.out.println("Invalid connection, creating a new one.");
+        forgetConnectionSafely(connection);
         connection = createConnection();
+      } else if (!validate) {
+        validationSkippedCount.increment();
+      } else {
+        validationCount.increment();
+        if (!connection.isValid(5)) {
+          System.out.println("The connection is not valid, creating a new one.");
+          validationFailedCount.increment();
+          closeConnection(connection);
+          forgetConnectionSafely(connection);
+          connection = createConnection();
+        }
       }
     } catch (SQLException e) {
       e.printStackTrace();
       System.out.println("Validate connection failed, creating a new one.");
+      validationFailedCount.increment();
+      closeConnection(connection);
+      forgetConnectionSafely(connection);
       connection = createConnection(); // 如果檢查失敗則創建新連線
     }
 
-    usedConnections.add(connection);
+    synchronized (this) {
+      // 剛建立或剛驗證過的連線都視為已確認可用
+      if (validate || !lastValidatedTimestamps.containsKey(connection)) {
+        markValidated(connection, System.currentTimeMillis());
+      }
+      usedConnections.add(connection);
+    }
     return new DatabaseConnection(connection, this);
   }
 
+  private synchronized void forgetConnectionSafely(Connection connection) {
+    forgetConnection(connection);
+  }
+
   @Override
-  public synchronized void releaseConnection(Connection connection) {
+  public synchronized void reportSqlError(Connection connection) {
+    if (connection != null) {
+      suspectConnections.add(connection);
+    }
+  }
+
+  @Override
+  public void releaseConnection(Connection connection) {
     System.out.println("Releasing connection: " + connection);
-    if (connection != null && usedConnections.remove(connection)) {
-      connectionPool.add(connection);
+    boolean released = false;
+    synchronized (this) {
+      if (connection != null && usedConnections.remove(connection)) {
+        // 沒有發生 SQL error 的連線剛用過, 閒置時間從歸還時開始算
+        if (!suspectConnections.contains(connection)) {
+          lastValidatedTimestamps.put(connection, System.currentTimeMillis());
+        }
+        connectionPool.addLast(connection);
+        released = true;
+      }
+    }
+    // 重複歸還同一條連線不會多放出 permit
+    if (released) {
+      permits.release();
     }
   }
 
   @Override
-  public int getPoolSize() {
+  public synchronized int getPoolSize() {
     return connectionPool.size();
   }
 
   @Override
-  public void shutdown() {
+  public PreparedStatementCache.Stats getStatementCacheStats() {
+    return statementCacheStats;
+  }
+
+  @Override
+  public Map<String, Long> getMetrics() {
+    Map<String, Long> metrics = new LinkedHashMap<>(borrowWaitMicros.snapshot("borrow.wait.us"));
+    metrics.put("borrow.timeout", borrowTimeoutCount.sum());
+    metrics.put("borrow.waiting", (long) permits.getQueueLength());
+    metrics.put("connections.used", (long) (MAX_POOL_SIZE - permits.availablePermits()));
+    metrics.put("connections.idle", (long) getPoolSize());
+    metrics.put("validation.performed", validationCount.sum());
+    metrics.put("validation.skipped", validationSkippedCount.sum());
+    metrics.put("validation.failed", validationFailedCount.sum());
+    metrics.put("validation.keepalive", keepaliveCount.sum());
+    metrics.putAll(statementCacheStats.getMetrics());
+    return metrics;
+  }
+
+  @Override
+  public synchronized void shutdown() {
+    shutdown = true;
     healthCheckTimer.cancel();
     usedConnections.forEach(this::closeConnection);
     connectionPool.forEach(this::closeConnection);
     connectionPool.clear();
     usedConnections.clear();
+    lastValidatedTimestamps.clear();
+    suspectConnections.clear();
     System.out.println("Connection pool has been shut down.");
   }
 }
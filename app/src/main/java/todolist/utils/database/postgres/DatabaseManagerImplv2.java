@@ -1,25 +1,26 @@
 package todolist.utils.database.postgres;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-import todolist.utils.loader.ConfigLoader;
 
 // 連線池版本2, 使用 synchronized List 來實作
 public class DatabaseManagerImplv2 implements DatabaseManager {
-  private Map<String, String> connectionConfig;
+  private final ConnectionFactory connectionFactory;
 
   private List<Connection> connectionPool; // 可用的連線
   private List<Connection> usedConnections; // 已借出的連線
-  private static final int MAX_POOL_SIZE = 10;
+  private final int MAX_POOL_SIZE;
 
   public DatabaseManagerImplv2() {
-    connectionConfig = ConfigLoader.load(DatabaseManagerImplv2.class,
-        new String[] { "db.url", "db.user", "db.password" });
+    this(ConnectionFactory.fromConfig(DatabaseManagerImplv2.class), 10);
+  }
+
+  public DatabaseManagerImplv2(ConnectionFactory connectionFactory, int maxPoolSize) {
+    this.connectionFactory = connectionFactory;
+    this.MAX_POOL_SIZE = maxPoolSize;
 
     // Diff with v1, 使用 synchronized list 來實作 connectionPool 和 usedConnections
     connectionPool = Collections.synchronizedList(new ArrayList<>());
@@ -28,8 +29,7 @@ public class DatabaseManagerImplv2 implements DatabaseManager {
 
   private Connection createConnection() {
     try {
-      return DriverManager.getConnection(connectionConfig.get("db.url"), connectionConfig.get("db.user"),
-          connectionConfig.get("db.password"));
+      return connectionFactory.create();
     } catch (SQLException e) {
       e.printStackTrace();
       throw new RuntimeException("Failed to create a database connection.");
@@ -37,6 +37,7 @@ public class DatabaseManagerImplv2 implements DatabaseManager {
   }
 
   private void closeConnection(Connection connection) {
+    PreparedStatementCache.evict(connection); // 實體連線回收時一起丟掉 cached statements
     try {
       if (connection != null && !connection.isClosed()) {
         connection.close();
@@ -1,27 +1,44 @@
 package todolist.utils.database.postgres;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 import todolist.utils.loader.ConfigLoader;
+import todolist.utils.metrics.Histogram;
 
 // 連線池版本3, 使用 concurrent BlockingQueue 來實作
 // 這邊目前採用預先建立全部連線，可能對一開始啟動負擔比較大，
 // 但可以避免在使用時才建立連線的開銷，
 // 可以看要怎麼取捨，或者則中，先建立一半連線，之後再依需求建立連線
+//
+// 取連線時最多等待 borrowTimeoutMs 而不是 take() 永遠卡住,
+// 使用 fair ArrayBlockingQueue 讓等待中的 caller 依 FIFO 順序拿到連線
 public class DatabaseManagerImplv3 implements DatabaseManager {
-  private final Map<String, String> connectionConfig;
+  private final ConnectionFactory connectionFactory;
   private final BlockingQueue<Connection> connectionPool;
-  private final int MAX_POOL_SIZE = 10;
+  private final int MAX_POOL_SIZE;
+  private final long borrowTimeoutMs;
+  private final Histogram borrowWaitMicros = new Histogram();
+  private final LongAdder borrowTimeoutCount = new LongAdder();
 
   public DatabaseManagerImplv3() {
-    connectionConfig = ConfigLoader.load(DatabaseManagerImplv3.class,
-        new String[] { "db.url", "db.user", "db.password" });
-    connectionPool = new LinkedBlockingQueue<>(MAX_POOL_SIZE);
+    this(ConnectionFactory.fromConfig(DatabaseManagerImplv3.class),
+        10,
+        Long.parseLong(ConfigLoader.load(DatabaseManagerImplv3.class, "db.pool.borrow.timeout.ms", "3000")));
+  }
+
+  public DatabaseManagerImplv3(ConnectionFactory connectionFactory, int maxPoolSize, long borrowTimeoutMs) {
+    this.connectionFactory = connectionFactory;
+    this.MAX_POOL_SIZE = maxPoolSize;
+    this.borrowTimeoutMs = borrowTimeoutMs;
+    connectionPool = new ArrayBlockingQueue<>(MAX_POOL_SIZE, true);
 
     // Initialize the pool with pre-created connections
     for (int i = 0; i < MAX_POOL_SIZE; i++) {
@@ -31,16 +48,14 @@ public class DatabaseManagerImplv3 implements DatabaseManager {
 
   private Connection createConnection() {
     try {
-      return DriverManager.getConnection(
-          connectionConfig.get("db.url"),
-          connectionConfig.get("db.user"),
-          connectionConfig.get("db.password"));
+      return connectionFactory.create();
     } catch (SQLException e) {
       throw new RuntimeException("Failed to create a database connection.", e);
     }
   }
 
   private void closeConnection(Connection connection) {
+    PreparedStatementCache.evict(connection); // 實體連線回收時一起丟掉 cached statements
     try {
       if (connection != null && !connection.isClosed()) {
         connection.close();
@@ -51,13 +66,21 @@ public class DatabaseManagerImplv3 implements DatabaseManager {
   }
 
   @Override
-  public DatabaseConnection getConnection() {
+  public DatabaseConnection getConnection() throws SQLException {
+    long startTime = System.nanoTime();
     try {
-      // Block if no available connections
-      return new DatabaseConnection(connectionPool.take(), this);
+      // Block until a connection is available or the borrow timeout elapses
+      Connection connection = connectionPool.poll(borrowTimeoutMs, TimeUnit.MILLISECONDS);
+      borrowWaitMicros.record((System.nanoTime() - startTime) / 1000);
+      if (connection == null) {
+        borrowTimeoutCount.increment();
+        throw new SQLTransientConnectionException(
+            "Timed out after " + borrowTimeoutMs + "ms waiting for a connection, pool size: " + MAX_POOL_SIZE);
+      }
+      return new DatabaseConnection(connection, this);
     } catch (InterruptedException e) {
       Thread.currentThread().interrupt();
-      throw new RuntimeException("Interrupted while waiting for a connection from the pool.", e);
+      throw new SQLTransientConnectionException("Interrupted while waiting for a connection from the pool.", e);
     }
   }
 
@@ -80,6 +103,14 @@ public class DatabaseManagerImplv3 implements DatabaseManager {
     return connectionPool.size();
   }
 
+  @Override
+  public Map<String, Long> getMetrics() {
+    Map<String, Long> metrics = new LinkedHashMap<>(borrowWaitMicros.snapshot("borrow.wait.us"));
+    metrics.put("borrow.timeout", borrowTimeoutCount.sum());
+    metrics.put("connections.idle", (long) connectionPool.size());
+    return metrics;
+  }
+
   @Override
   public void shutdown() {
     // Close all connections in the pool
@@ -1,15 +1,21 @@
 package todolist.utils.database.postgres;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.HashMap;
+import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.LongAdder;
 
 import todolist.utils.loader.ConfigLoader;
+import todolist.utils.metrics.Histogram;
 
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -18,37 +24,64 @@ import java.util.concurrent.TimeUnit;
 // 連線池版本4,
 // 改用 ScheduledExecutorService 和 ReentrantLock 實作健康檢查和 lock 機制
 // 加上 MAX_IDLE_TIME_MS
+// 連線用完時, 在 fair lock 的 Condition 上等待最多 borrowTimeoutMs, 而不是直接丟例外
 public class DatabaseManagerImplv4 implements DatabaseManager {
-  private final Map<String, String> connectionConfig;
+  private final ConnectionFactory connectionFactory;
 
   private final List<Connection> connectionPool; // 可用的連線
-  private final List<Connection> usedConnections; // 已借出的連線
+  private final Set<Connection> usedConnections; // 已借出的連線, HashSet 讓歸還是 O(1)
   private final Map<Connection, Long> lastUsedTimestamps; // 跟蹤每個連線的最近使用時間
-  private final int MAX_POOL_SIZE = 10;
+  private final int MAX_POOL_SIZE;
   private final long MAX_IDLE_TIME_MS = 300000; // 閒置超過 5 分鐘自動釋放
+  private final long borrowTimeoutMs;
 
-  private final ReentrantLock lock = new ReentrantLock();
+  // fair lock: 等待中的 caller 依 FIFO 順序被喚醒拿連線
+  private final ReentrantLock lock = new ReentrantLock(true);
+  private final Condition connectionAvailable = lock.newCondition();
+  private final Histogram borrowWaitMicros = new Histogram();
+  private final LongAdder borrowTimeoutCount = new LongAdder();
+
+  // 只有閒置超過 validationIntervalMs 或發生過 SQL error 的連線才做 isValid() round trip
+  private final long validationIntervalMs;
+  private final Map<Connection, Long> lastValidatedTimestamps; // 最近一次確認連線可用的時間
+  private final Set<Connection> suspectConnections; // 發生過 SQL error, 下次借出前必須驗證
+  private final LongAdder validationCount = new LongAdder();
+  private final LongAdder validationSkippedCount = new LongAdder();
+  private final LongAdder validationFailedCount = new LongAdder();
+  private final LongAdder keepaliveCount = new LongAdder();
+  private final PreparedStatementCache.Stats statementCacheStats = new PreparedStatementCache.Stats();
   private ScheduledExecutorService healthCheckExecutor;
 
   public DatabaseManagerImplv4() {
-    connectionConfig = ConfigLoader.load(DatabaseManagerImplv4.class,
-        new String[] { "db.url", "db.user", "db.password" });
+    this(ConnectionFactory.fromConfig(DatabaseManagerImplv4.class),
+        10,
+        Long.parseLong(ConfigLoader.load(DatabaseManagerImplv4.class, "db.pool.borrow.timeout.ms", "3000")),
+        Long.parseLong(ConfigLoader.load(DatabaseManagerImplv4.class, "db.pool.validation.interval.ms", "30000")));
+
+    // 在 JVM 關閉時自動清理資源
+    Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown));
+  }
+
+  public DatabaseManagerImplv4(ConnectionFactory connectionFactory, int maxPoolSize, long borrowTimeoutMs,
+      long validationIntervalMs) {
+    this.connectionFactory = connectionFactory;
+    this.MAX_POOL_SIZE = maxPoolSize;
+    this.borrowTimeoutMs = borrowTimeoutMs;
+    this.validationIntervalMs = validationIntervalMs;
 
     connectionPool = new ArrayList<>();
-    usedConnections = new ArrayList<>();
+    usedConnections = new HashSet<>();
     lastUsedTimestamps = new HashMap<>();
+    lastValidatedTimestamps = new HashMap<>();
+    suspectConnections = new HashSet<>();
 
     // 啟動健康檢查
     startConnectionHealthCheck();
-
-    // 在 JVM 關閉時自動清理資源
-    Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown));
   }
 
   private Connection createConnection() {
     try {
-      return DriverManager.getConnection(connectionConfig.get("db.url"), connectionConfig.get("db.user"),
-          connectionConfig.get("db.password"));
+      return connectionFactory.create();
     } catch (SQLException e) {
       e.printStackTrace();
       throw new RuntimeException("Failed to create a database connection.");
@@ -56,6 +89,7 @@ public class DatabaseManagerImplv4 implements DatabaseManager {
   }
 
   private void closeConnection(Connection connection) {
+    PreparedStatementCache.evict(connection); // 實體連線回收時一起丟掉 cached statements
     try {
       if (connection != null && !connection.isClosed()) {
         connection.close();
@@ -77,24 +111,29 @@ public class DatabaseManagerImplv4 implements DatabaseManager {
           try {
             if (conn == null || conn.isClosed()) {
               System.out.println("Found a broken connection, removing from pool.");
-              lastUsedTimestamps.remove(conn);
+              forgetConnection(conn);
               return true; // 移除失效連線
             } else if (currentTime - lastUsedTimestamps.get(conn) > MAX_IDLE_TIME_MS) {
               System.out.println("Connection idle for too long, closing.");
               closeConnection(conn);
-              lastUsedTimestamps.remove(conn);
+              forgetConnection(conn);
               return true; // 移除超時的閒置連線
-            } else if (!conn.isValid(3)) {
-              System.out.println("Connection is not valid, closing.");
-              closeConnection(conn);
-              lastUsedTimestamps.remove(conn);
-              return true; // 移除無效連線
+            } else if (needsValidation(conn, currentTime)) {
+              // Keepalive: 只驗證超過 validationIntervalMs 沒確認過的連線
+              keepaliveCount.increment();
+              if (!conn.isValid(3)) {
+                System.out.println("Connection is not valid, closing.");
+                closeConnection(conn);
+                forgetConnection(conn);
+                return true; // 移除無效連線
+              }
+              markValidated(conn, currentTime);
             }
             return false;
           } catch (SQLException e) {
             e.printStackTrace();
             closeConnection(conn);
-            lastUsedTimestamps.remove(conn);
+            forgetConnection(conn);
             return true;
           }
         });
@@ -105,47 +144,115 @@ public class DatabaseManagerImplv4 implements DatabaseManager {
     }, 0, 60, TimeUnit.SECONDS);
   }
 
+  // 呼叫端需持有 lock
+  private boolean needsValidation(Connection connection, long currentTime) {
+    if (suspectConnections.contains(connection)) {
+      return true;
+    }
+    Long lastValidated = lastValidatedTimestamps.get(connection);
+    return lastValidated == null || currentTime - lastValidated > validationIntervalMs;
+  }
+
+  // 呼叫端需持有 lock
+  private void markValidated(Connection connection, long currentTime) {
+    suspectConnections.remove(connection);
+    lastValidatedTimestamps.put(connection, currentTime);
+  }
+
+  // 呼叫端需持有 lock
+  private void forgetConnection(Connection connection) {
+    PreparedStatementCache.evict(connection);
+    lastUsedTimestamps.remove(connection);
+    lastValidatedTimestamps.remove(connection);
+    suspectConnections.remove(connection);
+  }
+
   @Override
-  public DatabaseConnection getConnection() {
+  public DatabaseConnection getConnection() throws SQLException {
+    long startTime = System.nanoTime();
     lock.lock();
     try {
-      if (connectionPool.isEmpty()) {
-        if (usedConnections.size() < MAX_POOL_SIZE) {
-          Connection newConnection = createConnection();
-          usedConnections.add(newConnection);
-          lastUsedTimestamps.put(newConnection, System.currentTimeMillis());
-          return new DatabaseConnection(newConnection, this);
-        } else {
-          throw new RuntimeException("Maximum pool size reached, no available connections!");
+      // 沒有閒置連線且已達上限時, 等到有連線歸還或超過 borrowTimeoutMs
+      long remainingNanos = TimeUnit.MILLISECONDS.toNanos(borrowTimeoutMs);
+      while (connectionPool.isEmpty() && usedConnections.size() >= MAX_POOL_SIZE) {
+        if (remainingNanos <= 0) {
+          borrowTimeoutCount.increment();
+          borrowWaitMicros.record((System.nanoTime() - startTime) / 1000);
+          throw new SQLTransientConnectionException(
+              "Timed out after " + borrowTimeoutMs + "ms waiting for a connection, pool size: " + MAX_POOL_SIZE);
+        }
+        try {
+          remainingNanos = connectionAvailable.awaitNanos(remainingNanos);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new SQLTransientConnectionException("Interrupted while waiting for a connection from the pool.", e);
         }
       }
+      borrowWaitMicros.record((System.nanoTime() - startTime) / 1000);
+
+      long currentTime = System.currentTimeMillis();
+      if (connectionPool.isEmpty()) {
+        Connection newConnection = createConnection();
+        usedConnections.add(newConnection);
+        lastUsedTimestamps.put(newConnection, currentTime);
+        markValidated(newConnection, currentTime);
+        return new DatabaseConnection(newConnection, this);
+      }
 
       Connection connection = connectionPool.remove(connectionPool.size() - 1);
 
       // 檢查連線是否有效，若無效則重新建立連線
+      // isClosed() 只檢查 driver 內部狀態, isValid() 才需要和 server 做 round trip
       try {
         if (connection == null || connection.isClosed()) {
           System.out.println("Invalid connection, creating a new one.");
+          forgetConnection(connection);
           connection = createConnection();
-        } else if (!connection.isValid(3)) {
-          System.out.println("The connection is not valid, creating a new one.");
-          closeConnection(connection);
-          connection = createConnection();
+          markValidated(connection, currentTime);
+        } else if (!needsValidation(connection, currentTime)) {
+          validationSkippedCount.increment();
+        } else {
+          validationCount.increment();
+          if (connection.isValid(3)) {
+            markValidated(connection, currentTime);
+          } else {
+            System.out.println("The connection is not valid, creating a new one.");
+            validationFailedCount.increment();
+            closeConnection(connection);
+            forgetConnection(connection);
+            connection = createConnection();
+            markValidated(connection, currentTime);
+          }
         }
       } catch (SQLException e) {
         e.printStackTrace();
         System.out.println("Validate connection failed, creating a new one.");
+        validationFailedCount.increment();
+        forgetConnection(connection);
         connection = createConnection(); // 如果檢查失敗則創建新連線
+        markValidated(connection, currentTime);
       }
 
       usedConnections.add(connection);
-      lastUsedTimestamps.put(connection, System.currentTimeMillis()); // 更新使用時間
+      lastUsedTimestamps.put(connection, currentTime); // 更新使用時間
       return new DatabaseConnection(connection, this);
     } finally {
       lock.unlock();
     }
   }
 
+  @Override
+  public void reportSqlError(Connection connection) {
+    lock.lock();
+    try {
+      if (connection != null) {
+        suspectConnections.add(connection);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
   @Override
   public void releaseConnection(Connection connection) {
     lock.lock();
@@ -153,6 +260,11 @@ public class DatabaseManagerImplv4 implements DatabaseManager {
       if (connection != null && usedConnections.remove(connection)) {
         connectionPool.add(connection);
         lastUsedTimestamps.put(connection, System.currentTimeMillis()); // 更新釋放時間
+        // 沒有發生 SQL error 的連線剛用過, 閒置時間從歸還時開始算
+        if (!suspectConnections.contains(connection)) {
+          lastValidatedTimestamps.put(connection, System.currentTimeMillis());
+        }
+        connectionAvailable.signal(); // 喚醒等最久的 caller
       }
     } finally {
       lock.unlock();
@@ -164,6 +276,31 @@ public class DatabaseManagerImplv4 implements DatabaseManager {
     return connectionPool.size();
   }
 
+  @Override
+  public PreparedStatementCache.Stats getStatementCacheStats() {
+    return statementCacheStats;
+  }
+
+  @Override
+  public Map<String, Long> getMetrics() {
+    Map<String, Long> metrics = new LinkedHashMap<>(borrowWaitMicros.snapshot("borrow.wait.us"));
+    metrics.put("borrow.timeout", borrowTimeoutCount.sum());
+    lock.lock();
+    try {
+      metrics.put("borrow.waiting", (long) lock.getWaitQueueLength(connectionAvailable));
+      metrics.put("connections.used", (long) usedConnections.size());
+      metrics.put("connections.idle", (long) connectionPool.size());
+    } finally {
+      lock.unlock();
+    }
+    metrics.put("validation.performed", validationCount.sum());
+    metrics.put("validation.skipped", validationSkippedCount.sum());
+    metrics.put("validation.failed", validationFailedCount.sum());
+    metrics.put("validation.keepalive", keepaliveCount.sum());
+    metrics.putAll(statementCacheStats.getMetrics());
+    return metrics;
+  }
+
   @Override
   public void shutdown() {
     healthCheckExecutor.shutdown();
@@ -172,6 +309,8 @@ public class DatabaseManagerImplv4 implements DatabaseManager {
     connectionPool.clear();
     usedConnections.clear();
     lastUsedTimestamps.clear();
+    lastValidatedTimestamps.clear();
+    suspectConnections.clear();
     System.out.println("Connection pool has been shut down.");
   }
 }
@@ -0,0 +1,317 @@
+package todolist.utils.database.postgres;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import todolist.utils.loader.ConfigLoader;
+import todolist.utils.metrics.Histogram;
+
+// 連線池版本5, lock-free 實作 (類似 HikariCP 的 ConcurrentBag)
+//
+// v1 ~ v4 的借出與歸還都要經過同一個 monitor / lock, 32 個以上的 thread 同時借連線時會互相排隊
+// 這個版本每條連線自己帶一個 AtomicInteger 狀態, 借出就是 CAS NOT_IN_USE -> IN_USE:
+// 1. 先試 thread-local 上次用過的連線 (affinity, 沒有競爭時幾乎都命中)
+// 2. 再掃 sharedList (CopyOnWriteArrayList, 只有新增 / 移除連線時才寫入)
+// 3. 還沒到上限就 CAS 增加 totalConnections 並建立新連線
+// 4. 都沒有就在 fair SynchronousQueue 上等待, 歸還的 thread 直接把連線交給等待者
+//
+// 注意: virtual thread 每個 request 都是新的 thread, thread-local affinity 幾乎不會命中,
+// 但也不影響正確性, 只是退回掃 sharedList
+public class DatabaseManagerImplv5 implements DatabaseManager {
+  private static final int NOT_IN_USE = 0;
+  private static final int IN_USE = 1;
+  private static final int REMOVED = -1;
+
+  private static final class PooledEntry {
+    final Connection connection;
+    final AtomicInteger state = new AtomicInteger(IN_USE);
+    volatile long lastValidated = System.currentTimeMillis();
+    volatile boolean suspect;
+
+    PooledEntry(Connection connection) {
+      this.connection = connection;
+    }
+  }
+
+  private final ConnectionFactory connectionFactory;
+  private final int maxPoolSize;
+  private final long borrowTimeoutMs;
+  private final long validationIntervalMs;
+
+  private final CopyOnWriteArrayList<PooledEntry> sharedList = new CopyOnWriteArrayList<>();
+  private final Map<Connection, PooledEntry> entries = new ConcurrentHashMap<>();
+  private final ThreadLocal<PooledEntry> lastUsedEntry = new ThreadLocal<>();
+  private final SynchronousQueue<PooledEntry> handoffQueue = new SynchronousQueue<>(true);
+  private final AtomicInteger totalConnections = new AtomicInteger();
+  private final AtomicInteger waiters = new AtomicInteger();
+
+  // Metrics
+  private final Histogram borrowWaitMicros = new Histogram();
+  private final LongAdder borrowTimeoutCount = new LongAdder();
+  private final LongAdder threadLocalHitCount = new LongAdder();
+  private final LongAdder sharedHitCount = new LongAdder();
+  private final LongAdder handoffCount = new LongAdder();
+  private final LongAdder validationCount = new LongAdder();
+  private final LongAdder validationSkippedCount = new LongAdder();
+  private final LongAdder validationFailedCount = new LongAdder();
+  private final PreparedStatementCache.Stats statementCacheStats = new PreparedStatementCache.Stats();
+
+  private final ScheduledExecutorService healthCheckExecutor;
+
+  public DatabaseManagerImplv5() {
+    this(ConnectionFactory.fromConfig(DatabaseManagerImplv5.class),
+        10,
+        Long.parseLong(ConfigLoader.load(DatabaseManagerImplv5.class, "db.pool.borrow.timeout.ms", "3000")),
+        Long.parseLong(ConfigLoader.load(DatabaseManagerImplv5.class, "db.pool.validation.interval.ms", "30000")));
+
+    // 在 JVM 關閉時自動清理資源
+    Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown));
+  }
+
+  public DatabaseManagerImplv5(ConnectionFactory connectionFactory, int maxPoolSize, long borrowTimeoutMs,
+      long validationIntervalMs) {
+    this.connectionFactory = connectionFactory;
+    this.maxPoolSize = maxPoolSize;
+    this.borrowTimeoutMs = borrowTimeoutMs;
+    this.validationIntervalMs = validationIntervalMs;
+
+    healthCheckExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "db-pool-v5-health-check");
+      thread.setDaemon(true);
+      return thread;
+    });
+    healthCheckExecutor.scheduleAtFixedRate(this::keepalive, 60, 60, TimeUnit.SECONDS);
+  }
+
+  private void closeConnection(Connection connection) {
+    PreparedStatementCache.evict(connection); // 實體連線回收時一起丟掉 cached statements
+    try {
+      if (connection != null && !connection.isClosed()) {
+        connection.close();
+      }
+    } catch (SQLException e) {
+      e.printStackTrace();
+    }
+  }
+
+  // 把已經 IN_USE 的 entry 從 pool 移除, 騰出一個名額
+  private void removeEntry(PooledEntry entry) {
+    if (entry.state.getAndSet(REMOVED) != REMOVED) {
+      sharedList.remove(entry);
+      entries.remove(entry.connection);
+      totalConnections.decrementAndGet();
+      closeConnection(entry.connection);
+    }
+  }
+
+  // 已經 CAS 成 IN_USE 的 entry, 必要時驗證; 無效則移除並回傳 false
+  private boolean validateIfNeeded(PooledEntry entry) {
+    try {
+      if (entry.connection.isClosed()) {
+        removeEntry(entry);
+        return false;
+      }
+      if (!entry.suspect && System.currentTimeMillis() - entry.lastValidated <= validationIntervalMs) {
+        validationSkippedCount.increment();
+        return true;
+      }
+      validationCount.increment();
+      if (entry.connection.isValid(3)) {
+        entry.suspect = false;
+        entry.lastValidated = System.currentTimeMillis();
+        return true;
+      }
+    } catch (SQLException e) {
+      e.printStackTrace();
+    }
+    System.out.println("The connection is not valid, removing from pool.");
+    validationFailedCount.increment();
+    removeEntry(entry);
+    return false;
+  }
+
+  // 不等待地嘗試取得連線, 沒有可用連線時回傳 null
+  private PooledEntry tryBorrow() throws SQLException {
+    PooledEntry entry = lastUsedEntry.get();
+    if (entry != null && entry.state.compareAndSet(NOT_IN_USE, IN_USE)) {
+      if (validateIfNeeded(entry)) {
+        threadLocalHitCount.increment();
+        return entry;
+      }
+    }
+
+    for (PooledEntry candidate : sharedList) {
+      if (candidate.state.compareAndSet(NOT_IN_USE, IN_USE)) {
+        if (validateIfNeeded(candidate)) {
+          sharedHitCount.increment();
+          return candidate;
+        }
+      }
+    }
+
+    // CAS 佔一個名額再建立連線, 確保總數不超過 maxPoolSize
+    int total;
+    while ((total = totalConnections.get()) < maxPoolSize) {
+      if (totalConnections.compareAndSet(total, total + 1)) {
+        try {
+          PooledEntry created = new PooledEntry(connectionFactory.create());
+          entries.put(created.connection, created);
+          sharedList.add(created);
+          return created;
+        } catch (SQLException | RuntimeException e) {
+          totalConnections.decrementAndGet();
+          throw e;
+        }
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public DatabaseConnection getConnection() throws SQLException {
+    long startTime = System.nanoTime();
+    long deadline = startTime + TimeUnit.MILLISECONDS.toNanos(borrowTimeoutMs);
+
+    PooledEntry entry = tryBorrow();
+    if (entry == null) {
+      waiters.incrementAndGet();
+      try {
+        while (entry == null) {
+          // 增加 waiters 後再掃一次, 避免和剛歸還的連線擦身而過
+          entry = tryBorrow();
+          if (entry != null) {
+            break;
+          }
+          long remainingNanos = deadline - System.nanoTime();
+          if (remainingNanos <= 0) {
+            borrowTimeoutCount.increment();
+            borrowWaitMicros.record((System.nanoTime() - startTime) / 1000);
+            throw new SQLTransientConnectionException(
+                "Timed out after " + borrowTimeoutMs + "ms waiting for a connection, pool size: " + maxPoolSize);
+          }
+          PooledEntry handedOff = handoffQueue.poll(remainingNanos, TimeUnit.NANOSECONDS);
+          if (handedOff != null && handedOff.state.compareAndSet(NOT_IN_USE, IN_USE)) {
+            if (validateIfNeeded(handedOff)) {
+              handoffCount.increment();
+              entry = handedOff;
+            }
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new SQLTransientConnectionException("Interrupted while waiting for a connection from the pool.", e);
+      } finally {
+        waiters.decrementAndGet();
+      }
+    }
+
+    borrowWaitMicros.record((System.nanoTime() - startTime) / 1000);
+    lastUsedEntry.set(entry);
+    return new DatabaseConnection(entry.connection, this);
+  }
+
+  @Override
+  public void releaseConnection(Connection connection) {
+    PooledEntry entry = connection == null ? null : entries.get(connection);
+    if (entry == null) {
+      return;
+    }
+    if (!entry.suspect) {
+      entry.lastValidated = System.currentTimeMillis();
+    }
+    // 已經歸還 (還沒被借走) 的連線再歸還一次時 CAS 會失敗; 重新借出之後舊的 wrapper 再 close
+    // 則是由 DatabaseConnection 自己的 closed flag 擋掉, 這裡分辨不出是誰的 lease
+    if (!entry.state.compareAndSet(IN_USE, NOT_IN_USE)) {
+      return;
+    }
+    lastUsedEntry.set(entry);
+
+    // 有人在等就直接交給等待者; 連線被別人搶走或等待者都離開就結束
+    for (int i = 0; waiters.get() > 0; i++) {
+      if (entry.state.get() != NOT_IN_USE || handoffQueue.offer(entry)) {
+        return;
+      } else if ((i & 0xff) == 0xff) {
+        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(10));
+      } else {
+        Thread.yield();
+      }
+    }
+  }
+
+  @Override
+  public void reportSqlError(Connection connection) {
+    PooledEntry entry = connection == null ? null : entries.get(connection);
+    if (entry != null) {
+      entry.suspect = true;
+    }
+  }
+
+  // 背景驗證閒置太久的連線, 先 CAS 成 IN_USE 避免同時被借出
+  private void keepalive() {
+    for (PooledEntry entry : sharedList) {
+      if (entry.state.compareAndSet(NOT_IN_USE, IN_USE)) {
+        if (validateIfNeeded(entry)) {
+          releaseConnection(entry.connection);
+        }
+      }
+    }
+  }
+
+  @Override
+  public int getPoolSize() {
+    int idle = 0;
+    for (PooledEntry entry : sharedList) {
+      if (entry.state.get() == NOT_IN_USE) {
+        idle++;
+      }
+    }
+    return idle;
+  }
+
+  @Override
+  public PreparedStatementCache.Stats getStatementCacheStats() {
+    return statementCacheStats;
+  }
+
+  @Override
+  public Map<String, Long> getMetrics() {
+    Map<String, Long> metrics = new LinkedHashMap<>(borrowWaitMicros.snapshot("borrow.wait.us"));
+    metrics.put("borrow.timeout", borrowTimeoutCount.sum());
+    metrics.put("borrow.waiting", (long) waiters.get());
+    metrics.put("borrow.threadlocal", threadLocalHitCount.sum());
+    metrics.put("borrow.shared", sharedHitCount.sum());
+    metrics.put("borrow.handoff", handoffCount.sum());
+    metrics.put("connections.total", (long) totalConnections.get());
+    metrics.put("connections.idle", (long) getPoolSize());
+    metrics.put("validation.performed", validationCount.sum());
+    metrics.put("validation.skipped", validationSkippedCount.sum());
+    metrics.put("validation.failed", validationFailedCount.sum());
+    metrics.putAll(statementCacheStats.getMetrics());
+    return metrics;
+  }
+
+  @Override
+  public void shutdown() {
+    healthCheckExecutor.shutdown();
+    for (PooledEntry entry : sharedList) {
+      entry.state.set(REMOVED);
+      closeConnection(entry.connection);
+    }
+    sharedList.clear();
+    entries.clear();
+    totalConnections.set(0);
+    System.out.println("Connection pool has been shut down.");
+  }
+}
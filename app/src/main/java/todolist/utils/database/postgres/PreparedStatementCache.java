@@ -0,0 +1,241 @@
+package todolist.utils.database.postgres;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// 每條實體連線一個 LRU PreparedStatement cache, key 是 SQL 字串
+//
+// DatabaseConnection 每次借出都是新的 wrapper, 所以 cache 跟著實體連線存在這裡,
+// 歸還連線 (DatabaseConnection.close()) 後 statement 仍然保留, 下次借到同一條連線可以直接重用,
+// 同一個 PreparedStatement 執行超過 driver 的 prepareThreshold 後, Postgres 也會改用 server-side prepared statement
+//
+// 呼叫端拿到的是 proxy, close() 只會 clearParameters()、恢復改過的設定 (fetch size 等) 並放回 cache,
+// 不會真的關閉 statement
+// pool 關閉 / 回收實體連線時必須呼叫 evict(connection)
+//
+// hit / miss / eviction 記在每個 pool 自己的 Stats (DatabaseManager.getStatementCacheStats())
+public class PreparedStatementCache {
+  public static final int DEFAULT_MAX_SIZE = 32;
+
+  private static final Map<Connection, PreparedStatementCache> caches = new ConcurrentHashMap<>();
+
+  // 借用者可以改的 statement 設定: setter -> 讀取原本值的 getter, 歸還時恢復成第一次修改前的值
+  private static final Map<String, String> RESETTABLE_SETTINGS = Map.of(
+      "setFetchSize", "getFetchSize",
+      "setFetchDirection", "getFetchDirection",
+      "setMaxRows", "getMaxRows",
+      "setLargeMaxRows", "getLargeMaxRows",
+      "setMaxFieldSize", "getMaxFieldSize",
+      "setQueryTimeout", "getQueryTimeout",
+      "setPoolable", "isPoolable");
+  // 沒有 getter 可以讀回原本值 (或無法取消) 的設定, 改過的 statement 歸還時直接關閉
+  private static final Set<String> UNRESETTABLE_SETTINGS = Set.of("setEscapeProcessing", "setCursorName",
+      "closeOnCompletion");
+
+  // 一個 pool 的 cache metrics; 沒有 override getStatementCacheStats() 的 pool 共用 UNTRACKED
+  public static final class Stats {
+    static final Stats UNTRACKED = new Stats();
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    public Map<String, Long> getMetrics() {
+      long size = 0;
+      for (PreparedStatementCache cache : caches.values()) {
+        if (cache.stats == this) {
+          size += cache.size();
+        }
+      }
+      Map<String, Long> metrics = new LinkedHashMap<>();
+      metrics.put("statement.cache.hit", hitCount.sum());
+      metrics.put("statement.cache.miss", missCount.sum());
+      metrics.put("statement.cache.eviction", evictionCount.sum());
+      metrics.put("statement.cache.size", size);
+      return metrics;
+    }
+  }
+
+  private static final class CachedStatement {
+    final String sql;
+    final PreparedStatement statement;
+    // 這次借出改過的設定: setter -> 修改前的值
+    final Map<Method, Object> changedSettings = new LinkedHashMap<>();
+    boolean inUse;
+    boolean discard; // 執行時發生 SQLException 或改了無法恢復的設定, 歸還時直接關閉不再重用
+
+    CachedStatement(String sql, PreparedStatement statement) {
+      this.sql = sql;
+      this.statement = statement;
+    }
+  }
+
+  private final Connection connection;
+  private final Stats stats;
+  private final LinkedHashMap<String, CachedStatement> statements;
+
+  private PreparedStatementCache(Connection connection, Stats stats, int maxSize) {
+    this.connection = connection;
+    this.stats = stats;
+    // accessOrder = true, 超過 maxSize 時移除最久沒用的 statement
+    this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+        if (size() <= maxSize) {
+          return false;
+        }
+        stats.evictionCount.increment();
+        // 使用中的 statement 等歸還時再關閉
+        if (!eldest.getValue().inUse) {
+          closeQuietly(eldest.getValue().statement);
+        }
+        return true;
+      }
+    };
+  }
+
+  // 實體連線只屬於一個 pool, 第一次建立 cache 時的 stats 就是那個 pool 的
+  static PreparedStatementCache of(Connection connection, Stats stats) {
+    return caches.computeIfAbsent(connection, c -> new PreparedStatementCache(c, stats, DEFAULT_MAX_SIZE));
+  }
+
+  // 實體連線被關閉或移出 pool 時呼叫, 關閉並丟掉這條連線所有 cached statement
+  public static void evict(Connection connection) {
+    if (connection == null) {
+      return;
+    }
+    PreparedStatementCache cache = caches.remove(connection);
+    if (cache != null) {
+      cache.clear();
+    }
+  }
+
+  private static void closeQuietly(PreparedStatement statement) {
+    try {
+      statement.close();
+    } catch (SQLException e) {
+      e.printStackTrace();
+    }
+  }
+
+  private synchronized int size() {
+    return statements.size();
+  }
+
+  private synchronized void clear() {
+    for (CachedStatement cached : statements.values()) {
+      closeQuietly(cached.statement);
+    }
+    statements.clear();
+  }
+
+  // onSqlError: statement 執行失敗時的 callback, 讓 pool 知道這條連線需要重新驗證
+  synchronized PreparedStatement prepare(String sql, Runnable onSqlError) throws SQLException {
+    CachedStatement cached = statements.get(sql);
+    if (cached == null) {
+      stats.missCount.increment();
+      cached = new CachedStatement(sql, connection.prepareStatement(sql));
+      statements.put(sql, cached);
+    } else if (cached.inUse) {
+      // 同一條連線同時開兩個相同 SQL 的 statement, 第二個不走 cache
+      stats.missCount.increment();
+      return null;
+    } else {
+      stats.hitCount.increment();
+    }
+    cached.inUse = true;
+    return (PreparedStatement) Proxy.newProxyInstance(PreparedStatementCache.class.getClassLoader(),
+        new Class<?>[] { PreparedStatement.class }, new Lease(cached, onSqlError));
+  }
+
+  private synchronized void release(CachedStatement cached) {
+    cached.inUse = false;
+    // 已經被 LRU 擠出或不能再重用的 statement 直接關閉
+    if (cached.discard || statements.get(cached.sql) != cached) {
+      if (statements.get(cached.sql) == cached) {
+        statements.remove(cached.sql);
+      }
+      closeQuietly(cached.statement);
+      return;
+    }
+    try {
+      cached.statement.clearParameters();
+      cached.statement.clearWarnings();
+      for (Map.Entry<Method, Object> setting : cached.changedSettings.entrySet()) {
+        setting.getKey().invoke(cached.statement, setting.getValue());
+      }
+      cached.changedSettings.clear();
+    } catch (SQLException | ReflectiveOperationException e) {
+      statements.remove(cached.sql);
+      closeQuietly(cached.statement);
+    }
+  }
+
+  // 每次借出 cached statement 的 proxy, close() 只是歸還給 cache
+  private final class Lease implements InvocationHandler {
+    private final CachedStatement cached;
+    private final Runnable onSqlError;
+    private boolean closed;
+
+    Lease(CachedStatement cached, Runnable onSqlError) {
+      this.cached = cached;
+      this.onSqlError = onSqlError;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+      switch (method.getName()) {
+        case "close":
+          if (!closed) {
+            closed = true;
+            release(cached);
+          }
+          return null;
+        case "isClosed":
+          return closed || cached.statement.isClosed();
+        default:
+          break;
+      }
+      if (closed) {
+        throw new SQLException("Statement has been returned to the cache: " + cached.sql);
+      }
+      rememberSetting(method);
+      try {
+        return method.invoke(cached.statement, args);
+      } catch (InvocationTargetException e) {
+        if (e.getCause() instanceof SQLException) {
+          cached.discard = true;
+          onSqlError.run();
+        }
+        throw e.getCause();
+      }
+    }
+
+    // 第一次修改某個設定前先記下原本的值, 歸還時由 release() 恢復
+    private void rememberSetting(Method method) throws Throwable {
+      String name = method.getName();
+      if (UNRESETTABLE_SETTINGS.contains(name)) {
+        cached.discard = true;
+        return;
+      }
+      String getter = RESETTABLE_SETTINGS.get(name);
+      if (getter != null && !cached.changedSettings.containsKey(method)) {
+        try {
+          cached.changedSettings.put(method, PreparedStatement.class.getMethod(getter).invoke(cached.statement));
+        } catch (InvocationTargetException e) {
+          throw e.getCause();
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,124 @@
+package todolist.utils.database.redis;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+// Circuit breaker：Redis 連續失敗 (或回應超過 latency budget) failureThreshold 次之後 open，
+// open 期間所有指令直接失敗，不會卡在 timeout 上，呼叫端改走 PostgreSQL
+//
+// CLOSED -> OPEN：連續 failureThreshold 次失敗 / 慢回應
+// OPEN -> HALF_OPEN：open 超過 openDurationMs 之後，下一個指令當作 probe 放行 (同時只有一個)
+// HALF_OPEN -> CLOSED：probe 成功；HALF_OPEN -> OPEN：probe 失敗，重新計時
+public class CircuitBreaker {
+  public enum State {
+    CLOSED, OPEN, HALF_OPEN
+  }
+
+  private final String name;
+  private final int failureThreshold;
+  private final long openDurationMs;
+  private final long slowCallNanos;
+  private final LongSupplier clock;
+
+  private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+  private final AtomicInteger consecutiveFailures = new AtomicInteger();
+  private volatile long openedAt;
+
+  // Metrics
+  private final LongAdder failureCount = new LongAdder();
+  private final LongAdder slowCallCount = new LongAdder();
+  private final LongAdder rejectedCount = new LongAdder();
+  private final LongAdder openedCount = new LongAdder();
+  private final LongAdder probeCount = new LongAdder();
+
+  public CircuitBreaker(String name, int failureThreshold, long openDurationMs, long slowCallMs) {
+    this(name, failureThreshold, openDurationMs, slowCallMs, System::currentTimeMillis);
+  }
+
+  // clock 可以替換，測試不需要真的等待 openDurationMs
+  CircuitBreaker(String name, int failureThreshold, long openDurationMs, long slowCallMs, LongSupplier clock) {
+    this.name = name;
+    this.failureThreshold = failureThreshold;
+    this.openDurationMs = openDurationMs;
+    this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(slowCallMs);
+    this.clock = clock;
+  }
+
+  // 返回 true 才可以送出指令，送出之後一定要呼叫 onSuccess 或 onFailure
+  public boolean tryAcquire() {
+    State current = state.get();
+    if (current == State.CLOSED) {
+      return true;
+    }
+    if (current == State.OPEN && clock.getAsLong() - openedAt >= openDurationMs
+        && state.compareAndSet(State.OPEN, State.HALF_OPEN)) {
+      probeCount.increment();
+      return true;
+    }
+    rejectedCount.increment();
+    return false;
+  }
+
+  // 成功但超過 latency budget 也算一次失敗
+  public void onSuccess(long elapsedNanos) {
+    if (elapsedNanos > slowCallNanos) {
+      slowCallCount.increment();
+      recordFailure();
+      return;
+    }
+    if (consecutiveFailures.get() != 0) {
+      consecutiveFailures.set(0);
+    }
+    if (state.get() == State.HALF_OPEN && state.compareAndSet(State.HALF_OPEN, State.CLOSED)) {
+      System.out.println("Circuit breaker " + name + " closed");
+    }
+  }
+
+  public void onFailure() {
+    failureCount.increment();
+    recordFailure();
+  }
+
+  public State getState() {
+    return state.get();
+  }
+
+  public Map<String, Long> getMetrics() {
+    Map<String, Long> metrics = new HashMap<>();
+    metrics.put(name + ".breaker.state", (long) state.get().ordinal()); // 0 closed, 1 open, 2 half-open
+    metrics.put(name + ".breaker.failure", failureCount.sum());
+    metrics.put(name + ".breaker.slow", slowCallCount.sum());
+    metrics.put(name + ".breaker.rejected", rejectedCount.sum());
+    metrics.put(name + ".breaker.opened", openedCount.sum());
+    metrics.put(name + ".breaker.probe", probeCount.sum());
+    return metrics;
+  }
+
+  // open 之前送出的指令晚一點才失敗時不重新計時
+  private void recordFailure() {
+    State current = state.get();
+    if (current == State.HALF_OPEN) {
+      trip(State.HALF_OPEN);
+    } else if (current == State.CLOSED && consecutiveFailures.incrementAndGet() >= failureThreshold) {
+      trip(State.CLOSED);
+    }
+  }
+
+  // openedAt 先寫入再切換 state，其他 thread 看到 OPEN 時一定拿到新的 openedAt
+  private void trip(State from) {
+    if (state.get() != from) {
+      return;
+    }
+    openedAt = clock.getAsLong();
+    if (state.compareAndSet(from, State.OPEN)) {
+      consecutiveFailures.set(0);
+      openedCount.increment();
+      System.err.println("Circuit breaker " + name + " opened, bypassing for " + openDurationMs + " ms");
+    }
+  }
+}
@@ -0,0 +1,238 @@
+package todolist.utils.database.redis;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// In-JVM near cache (L1)，放在 Redis 前面，存已經 deserialize 好的物件，cache hit 不需要 Redis round trip 和 JSON parse
+//
+// - 以 weight (大約的 bytes) 限制總大小，超過時從最久沒用的 entry 開始淘汰 (LRU)
+// - TinyLFU admission：用 count-min sketch 記錄每個 key 最近的存取頻率，
+// 需要淘汰時如果新 entry 的頻率比被淘汰的 entry 低就不收，避免一次性的掃描把熱門資料擠掉
+// - 每個 entry 都有 TTL，不能比 Redis 上的資料活得更久
+// - invalidate(key) 除了移除自己的 entry，還會透過 Redis pub/sub 通知其他 instance 一起移除，
+// pub/sub 是 at-most-once，漏掉的訊息由 TTL 兜底
+//
+// 還沒訂閱成功 (例如 Redis 連不上) 之前不使用 L1，避免收不到 invalidation 而一直讀到舊資料
+public class NearCache<V> {
+  private static final long SUBSCRIBE_RETRY_INTERVAL_MS = 5000;
+
+  private final String name;
+  private final String channel;
+  private final Supplier<RedisManager> redisManager;
+  private final long maxWeight;
+
+  private final LinkedHashMap<String, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final FrequencySketch sketch = new FrequencySketch(4096);
+  private long totalWeight;
+
+  private final Object subscribeLock = new Object();
+  private volatile boolean subscribed;
+  private long lastSubscribeAttempt;
+
+  // Metrics
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+  private final LongAdder evictionCount = new LongAdder();
+  private final LongAdder rejectedCount = new LongAdder();
+  private final LongAdder invalidationCount = new LongAdder();
+
+  private static final class Entry<V> {
+    final V value;
+    final long weight;
+    final long expiresAt;
+
+    Entry(V value, long weight, long expiresAt) {
+      this.value = value;
+      this.weight = weight;
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  // redisManager 用 Supplier 延遲取得，建立 NearCache 時不需要連上 Redis
+  public NearCache(String name, Supplier<RedisManager> redisManager, long maxWeight) {
+    this.name = name;
+    this.channel = name + ":invalidate";
+    this.redisManager = redisManager;
+    this.maxWeight = maxWeight;
+  }
+
+  public V get(String key) {
+    if (!ensureSubscribed()) {
+      missCount.increment();
+      return null;
+    }
+
+    synchronized (this) {
+      sketch.increment(key);
+      Entry<V> entry = entries.get(key);
+      if (entry == null) {
+        missCount.increment();
+        return null;
+      }
+      if (entry.expiresAt <= System.currentTimeMillis()) {
+        remove(key);
+        missCount.increment();
+        return null;
+      }
+      hitCount.increment();
+      return entry.value;
+    }
+  }
+
+  public void put(String key, V value, long weight, long ttlMillis) {
+    if (weight > maxWeight || ttlMillis <= 0 || !ensureSubscribed()) {
+      return;
+    }
+
+    long now = System.currentTimeMillis();
+    synchronized (this) {
+      remove(key);
+
+      Iterator<Map.Entry<String, Entry<V>>> iterator = entries.entrySet().iterator();
+      while (totalWeight + weight > maxWeight && iterator.hasNext()) {
+        Map.Entry<String, Entry<V>> victim = iterator.next();
+        boolean expired = victim.getValue().expiresAt <= now;
+        // TinyLFU admission: 新 entry 比最久沒用的 entry 更少被存取時，保留舊的
+        if (!expired && sketch.frequency(key) < sketch.frequency(victim.getKey())) {
+          rejectedCount.increment();
+          return;
+        }
+        iterator.remove();
+        totalWeight -= victim.getValue().weight;
+        if (!expired) {
+          evictionCount.increment();
+        }
+      }
+
+      entries.put(key, new Entry<>(value, weight, now + ttlMillis));
+      totalWeight += weight;
+    }
+  }
+
+  // 移除自己的 entry 並通知其他 instance
+  public void invalidate(String key) {
+    invalidateLocal(key);
+    try {
+      redisManager.get().publish(channel, key);
+    } catch (RuntimeException e) {
+      System.err.println("Near cache " + name + " failed to publish invalidation: " + e.getMessage());
+    }
+  }
+
+  // 收到 pub/sub 訊息時呼叫
+  void invalidateLocal(String key) {
+    synchronized (this) {
+      if (remove(key)) {
+        invalidationCount.increment();
+      }
+    }
+  }
+
+  public synchronized void clear() {
+    entries.clear();
+    totalWeight = 0;
+  }
+
+  public Map<String, Long> getMetrics() {
+    Map<String, Long> metrics = new HashMap<>();
+    metrics.put(name + ".near.hit", hitCount.sum());
+    metrics.put(name + ".near.miss", missCount.sum());
+    metrics.put(name + ".near.eviction", evictionCount.sum());
+    metrics.put(name + ".near.rejected", rejectedCount.sum());
+    metrics.put(name + ".near.invalidation", invalidationCount.sum());
+    synchronized (this) {
+      metrics.put(name + ".near.size", (long) entries.size());
+      metrics.put(name + ".near.weight", totalWeight);
+    }
+    return metrics;
+  }
+
+  private boolean remove(String key) {
+    Entry<V> entry = entries.remove(key);
+    if (entry == null) {
+      return false;
+    }
+    totalWeight -= entry.weight;
+    return true;
+  }
+
+  private boolean ensureSubscribed() {
+    if (subscribed) {
+      return true;
+    }
+    synchronized (subscribeLock) {
+      long now = System.currentTimeMillis();
+      if (subscribed || now - lastSubscribeAttempt < SUBSCRIBE_RETRY_INTERVAL_MS) {
+        return subscribed;
+      }
+      lastSubscribeAttempt = now;
+      try {
+        redisManager.get().subscribe(channel, this::invalidateLocal);
+        subscribed = true;
+      } catch (RuntimeException e) {
+        System.err.println("Near cache " + name + " disabled, subscribe failed: " + e.getMessage());
+      }
+      return subscribed;
+    }
+  }
+
+  // Count-min sketch (4 rows)，counter 上限 15，
+  // 累計 sampleSize 次之後所有 counter 減半，讓舊的熱度慢慢衰退
+  private static final class FrequencySketch {
+    private static final int[] SEEDS = { 0x97cb3127, 0xb15a5e5d, 0x85ebca6b, 0xc2b2ae35 };
+    private static final int MAX_COUNT = 15;
+
+    private final byte[][] table;
+    private final int shift;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(int width) {
+      int size = Integer.highestOneBit(width);
+      this.table = new byte[SEEDS.length][size];
+      this.shift = 32 - Integer.numberOfTrailingZeros(size);
+      this.sampleSize = size * 10;
+    }
+
+    private int index(String key, int row) {
+      int hash = key.hashCode();
+      hash = (hash ^ (hash >>> 16)) * SEEDS[row];
+      return hash >>> shift;
+    }
+
+    int frequency(String key) {
+      int frequency = MAX_COUNT;
+      for (int row = 0; row < table.length; row++) {
+        frequency = Math.min(frequency, table[row][index(key, row)]);
+      }
+      return frequency;
+    }
+
+    void increment(String key) {
+      boolean added = false;
+      for (int row = 0; row < table.length; row++) {
+        int i = index(key, row);
+        if (table[row][i] < MAX_COUNT) {
+          table[row][i]++;
+          added = true;
+        }
+      }
+      if (added && ++additions >= sampleSize) {
+        reset();
+      }
+    }
+
+    private void reset() {
+      for (byte[] row : table) {
+        for (int i = 0; i < row.length; i++) {
+          row[i] >>= 1;
+        }
+      }
+      additions /= 2;
+    }
+  }
+}
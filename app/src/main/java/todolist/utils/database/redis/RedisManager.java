@@ -5,22 +5,46 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import todolist.utils.codec.ValueCodec;
 
 /**
- * String operations: get, set, setWithExpiry, increment, delete for basic
- * string manipulation.
+ * String operations: get, set, setWithExpiry, setIfAbsentWithExpiry,
+ * increment, delete, rename for basic string manipulation.
  *
  * List operations: lpush, lrange, and lpop for handling Redis lists.
  *
  * Set operations: sadd, smembers, and sismember for Redis sets.
  *
- * Hash operations: hset, hget, and hgetAll for Redis hash maps.
+ * Hash operations: hset, hsetAll, hget, and hgetAll for Redis hash maps.
  *
- * Sorted set operations: zadd and zrange for ordered data using sorted sets.
+ * Sorted set operations: zadd, zaddAll, zrem, zrange (by rank) and
+ * zrangeByScore (by score, with LIMIT) for ordered data using sorted sets.
  *
- * Asynchronous operations: getAsync, setAsync, and getAsyncWithTimeout for
+ * Codec operations: getValue, setValueWithExpiry and offerSetValueWithExpiry
+ * store values as byte[] through a pluggable ValueCodec (e.g. the compact
+ * binary TodoEntityCodec) instead of JSON strings.
+ *
+ * Batch operations: mget, msetWithExpiry, hgetAllPipelined, hmgetPipelined
+ * and hsetAllPipelined read or write many keys in a single round trip (MGET,
+ * or a pipeline of commands flushed together).
+ *
+ * Asynchronous operations: an *Async variant of every string, list, set,
+ * hash, sorted set and pub/sub operation, plus getAsyncWithTimeout, for
  * non-blocking operations.
  *
+ * Fire-and-forget operations: offerSetWithExpiry for cache population that
+ * must not add to request latency. The number of pending writes is bounded;
+ * when the bound is reached the write is dropped instead of queued.
+ *
+ * Pub/Sub operations: publish and subscribe for broadcasting messages (e.g.
+ * near cache invalidation) to every app instance.
+ *
+ * Every command runs through a circuit breaker with a per-command timeout.
+ * While the breaker is open, commands fail fast with RedisUnavailableException
+ * (fire-and-forget writes are dropped) so callers can fall back to the
+ * database. getMetrics reports the breaker state.
+ *
  * Resource management: shutdown to release connections and resources on JVM
  * shutdown.
  */
@@ -33,10 +57,14 @@ public interface RedisManager {
 
   void setWithExpiry(String key, String value, long seconds);
 
+  boolean setIfAbsentWithExpiry(String key, String value, long milliseconds);
+
   Long increment(String key);
 
   void delete(String key);
 
+  void rename(String key, String newKey);
+
   // List operations
   void lpush(String key, String... values);
 
@@ -54,6 +82,8 @@ public interface RedisManager {
   // Hashtable operations
   void hset(String key, String field, String value);
 
+  void hsetAll(String key, Map<String, String> fields);
+
   String hget(String key, String field);
 
   Map<String, String> hgetAll(String key);
@@ -61,8 +91,32 @@ public interface RedisManager {
   // Sorted Set operations
   void zadd(String key, double score, String member);
 
+  void zaddAll(String key, Map<String, Double> scoredMembers);
+
+  void zrem(String key, String... members);
+
   List<String> zrange(String key, long start, long stop);
 
+  List<String> zrangeByScore(String key, double min, double max, long offset, long count);
+
+  // Codec operations
+  <T> T getValue(String key, ValueCodec<T> codec);
+
+  <T> void setValueWithExpiry(String key, T value, ValueCodec<T> codec, long seconds);
+
+  <T> boolean offerSetValueWithExpiry(String key, T value, ValueCodec<T> codec, long seconds);
+
+  // Batch operations
+  List<String> mget(List<String> keys);
+
+  void msetWithExpiry(Map<String, String> values, long seconds);
+
+  List<Map<String, String>> hgetAllPipelined(List<String> keys);
+
+  List<List<String>> hmgetPipelined(List<String> keys, String... fields);
+
+  void hsetAllPipelined(Map<String, Map<String, String>> values);
+
   // Asynchronous operations
   CompletableFuture<String> getAsync(String key);
 
@@ -70,6 +124,59 @@ public interface RedisManager {
 
   CompletableFuture<String> getAsyncWithTimeout(String key, long timeout, TimeUnit unit);
 
+  CompletableFuture<Void> setWithExpiryAsync(String key, String value, long seconds);
+
+  CompletableFuture<Boolean> setIfAbsentWithExpiryAsync(String key, String value, long milliseconds);
+
+  CompletableFuture<Long> incrementAsync(String key);
+
+  CompletableFuture<Void> deleteAsync(String key);
+
+  CompletableFuture<Void> renameAsync(String key, String newKey);
+
+  CompletableFuture<Void> lpushAsync(String key, String... values);
+
+  CompletableFuture<List<String>> lrangeAsync(String key, long start, long stop);
+
+  CompletableFuture<String> lpopAsync(String key);
+
+  CompletableFuture<Void> saddAsync(String key, String... members);
+
+  CompletableFuture<Set<String>> smembersAsync(String key);
+
+  CompletableFuture<Boolean> sismemberAsync(String key, String member);
+
+  CompletableFuture<Void> hsetAsync(String key, String field, String value);
+
+  CompletableFuture<Void> hsetAllAsync(String key, Map<String, String> fields);
+
+  CompletableFuture<String> hgetAsync(String key, String field);
+
+  CompletableFuture<Map<String, String>> hgetAllAsync(String key);
+
+  CompletableFuture<Void> zaddAsync(String key, double score, String member);
+
+  CompletableFuture<Void> zaddAllAsync(String key, Map<String, Double> scoredMembers);
+
+  CompletableFuture<Void> zremAsync(String key, String... members);
+
+  CompletableFuture<List<String>> zrangeAsync(String key, long start, long stop);
+
+  CompletableFuture<List<String>> zrangeByScoreAsync(String key, double min, double max, long offset, long count);
+
+  CompletableFuture<Void> publishAsync(String channel, String message);
+
+  // Fire-and-forget operations
+  boolean offerSetWithExpiry(String key, String value, long seconds);
+
+  // Pub/Sub operations
+  void publish(String channel, String message);
+
+  void subscribe(String channel, Consumer<String> listener);
+
+  // Metrics
+  Map<String, Long> getMetrics();
+
   // Resource management
   void shutdown();
 }
@@ -2,15 +2,40 @@ package todolist.utils.database.redis;
 
 import io.lettuce.core.RedisClient;
 import io.lettuce.core.ClientOptions;
+import io.lettuce.core.TimeoutOptions;
+import io.lettuce.core.KeyValue;
+import io.lettuce.core.Limit;
+import io.lettuce.core.LettuceFutures;
+import io.lettuce.core.RedisCommandExecutionException;
+import io.lettuce.core.RedisCommandTimeoutException;
+import io.lettuce.core.Range;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.SetArgs;
 import io.lettuce.core.api.StatefulRedisConnection;
 import io.lettuce.core.api.async.RedisAsyncCommands;
 import io.lettuce.core.api.sync.RedisCommands;
+import io.lettuce.core.codec.ByteArrayCodec;
+import io.lettuce.core.codec.RedisCodec;
+import io.lettuce.core.codec.StringCodec;
+import io.lettuce.core.pubsub.RedisPubSubAdapter;
+import io.lettuce.core.pubsub.StatefulRedisPubSubConnection;
 import io.lettuce.core.resource.DefaultClientResources;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import todolist.utils.codec.ValueCodec;
 import todolist.utils.loader.ConfigLoader;
 
 // https://redis.io/docs/latest/develop/connect/clients/java/lettuce
@@ -22,20 +47,73 @@ public class RedisManagerImpl implements RedisManager {
   private final RedisCommands<String, String> syncCommands;
   private final RedisAsyncCommands<String, String> asyncCommands;
 
+  // Codec operations 使用 value 為 byte[] 的 connection
+  private final StatefulRedisConnection<String, byte[]> binaryConnection;
+  private final RedisCommands<String, byte[]> binarySyncCommands;
+  private final RedisAsyncCommands<String, byte[]> binaryAsyncCommands;
+
+  // Batch operations 專用的 connection，關閉 auto-flush：
+  // 指令先累積在 client 端，flushCommands() 時一次送出，N 個指令只需要一次 round trip
+  // auto-flush 是整條 connection 的設定，所以不能跟一般指令共用 connection
+  private static final long PIPELINE_TIMEOUT_MS = 5000;
+  private final StatefulRedisConnection<String, String> pipelineConnection;
+  private final RedisAsyncCommands<String, String> pipelineCommands;
+  private final Object pipelineLock = new Object();
+
+  // Fire-and-forget 寫入的上限，還沒完成的寫入超過 maxPendingWrites 時直接丟掉新的寫入，
+  // 避免 Redis 變慢時 pending command 無限制堆積在 Lettuce 的 queue 裡
+  private final Semaphore pendingWrites;
+  private final int maxPendingWrites;
+  private final LongAdder offeredWrites = new LongAdder();
+  private final LongAdder droppedWrites = new LongAdder();
+  private final LongAdder failedWrites = new LongAdder();
+
+  // 每個指令的 timeout (Lettuce 預設 60 秒)，Redis 變慢時 request thread 最多等這麼久；
+  // circuit breaker 在連續失敗或超過 latency budget 之後暫時停用 Redis，呼叫端改查 PostgreSQL
+  private final CircuitBreaker circuitBreaker;
+
+  // 訂閱需要獨立的 connection，第一次 subscribe 時才建立
+  private StatefulRedisPubSubConnection<String, String> pubSubConnection;
+  private final Map<String, List<Consumer<String>>> subscribers = new ConcurrentHashMap<>();
+
   // Resource management using DefaultClientResources
   private static final DefaultClientResources clientResources = DefaultClientResources.builder().build();
 
   private RedisManagerImpl() {
     redisClient = RedisClient.create(clientResources, ConfigLoader.load(RedisManagerImpl.class, "redis.url"));
 
+    Duration commandTimeout = Duration.ofMillis(
+        Long.parseLong(ConfigLoader.load(RedisManagerImpl.class, "redis.command.timeout.ms", "500")));
+    circuitBreaker = new CircuitBreaker("redis",
+        Integer.parseInt(ConfigLoader.load(RedisManagerImpl.class, "redis.breaker.failure.threshold", "5")),
+        Long.parseLong(ConfigLoader.load(RedisManagerImpl.class, "redis.breaker.open.ms", "5000")),
+        Long.parseLong(ConfigLoader.load(RedisManagerImpl.class, "redis.breaker.slow.call.ms", "100")));
+
     // Setting up Redis connection options
-    redisClient.setOptions(ClientOptions.builder().autoReconnect(true).build());
+    // 斷線期間 (等待 auto reconnect) 的指令直接失敗，不在 client 端排隊等重新連線
+    redisClient.setDefaultTimeout(commandTimeout);
+    redisClient.setOptions(ClientOptions.builder()
+        .autoReconnect(true)
+        .disconnectedBehavior(ClientOptions.DisconnectedBehavior.REJECT_COMMANDS)
+        .timeoutOptions(TimeoutOptions.enabled(commandTimeout))
+        .build());
 
     // Create connection and commands
     connection = redisClient.connect();
     syncCommands = connection.sync();
     asyncCommands = connection.async();
 
+    binaryConnection = redisClient.connect(RedisCodec.of(StringCodec.UTF8, ByteArrayCodec.INSTANCE));
+    binarySyncCommands = binaryConnection.sync();
+    binaryAsyncCommands = binaryConnection.async();
+
+    pipelineConnection = redisClient.connect();
+    pipelineConnection.setAutoFlushCommands(false);
+    pipelineCommands = pipelineConnection.async();
+
+    maxPendingWrites = Integer.parseInt(ConfigLoader.load(RedisManagerImpl.class, "redis.async.max.pending", "1024"));
+    pendingWrites = new Semaphore(maxPendingWrites);
+
     // Clean up resources on JVM shutdown
     Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown));
   }
@@ -54,97 +132,276 @@ public class RedisManagerImpl implements RedisManager {
   // String operations
   @Override
   public String get(String key) {
-    return syncCommands.get(key);
+    return call(() -> syncCommands.get(key));
   }
 
   @Override
   public void set(String key, String value) {
-    syncCommands.set(key, value);
+    run(() -> syncCommands.set(key, value));
   }
 
   @Override
   public void setWithExpiry(String key, String value, long seconds) {
-    syncCommands.setex(key, seconds, value);
+    run(() -> syncCommands.setex(key, seconds, value));
+  }
+
+  // SET NX PX, 成功寫入返回 true (可以當作短時間的 lock 使用)
+  @Override
+  public boolean setIfAbsentWithExpiry(String key, String value, long milliseconds) {
+    return "OK".equals(call(() -> syncCommands.set(key, value, SetArgs.Builder.nx().px(milliseconds))));
   }
 
   @Override
   public Long increment(String key) {
-    return syncCommands.incr(key);
+    return call(() -> syncCommands.incr(key));
   }
 
   @Override
   public void delete(String key) {
-    syncCommands.del(key);
+    run(() -> syncCommands.del(key));
+  }
+
+  @Override
+  public void rename(String key, String newKey) {
+    run(() -> syncCommands.rename(key, newKey));
   }
 
   // List operations
   @Override
   public void lpush(String key, String... values) {
-    syncCommands.lpush(key, values);
+    run(() -> syncCommands.lpush(key, values));
   }
 
   @Override
   public List<String> lrange(String key, long start, long stop) {
-    return syncCommands.lrange(key, start, stop);
+    return call(() -> syncCommands.lrange(key, start, stop));
   }
 
   @Override
   public String lpop(String key) {
-    return syncCommands.lpop(key);
+    return call(() -> syncCommands.lpop(key));
   }
 
   // Set operations
   @Override
   public void sadd(String key, String... members) {
-    syncCommands.sadd(key, members);
+    run(() -> syncCommands.sadd(key, members));
   }
 
   @Override
   public Set<String> smembers(String key) {
-    return syncCommands.smembers(key);
+    return call(() -> syncCommands.smembers(key));
   }
 
   @Override
   public boolean sismember(String key, String member) {
-    return syncCommands.sismember(key, member);
+    return call(() -> syncCommands.sismember(key, member));
   }
 
   // Hash operations
   @Override
   public void hset(String key, String field, String value) {
-    syncCommands.hset(key, field, value);
+    run(() -> syncCommands.hset(key, field, value));
+  }
+
+  @Override
+  public void hsetAll(String key, Map<String, String> fields) {
+    run(() -> syncCommands.hset(key, fields));
   }
 
   @Override
   public String hget(String key, String field) {
-    return syncCommands.hget(key, field);
+    return call(() -> syncCommands.hget(key, field));
   }
 
   @Override
   public Map<String, String> hgetAll(String key) {
-    return syncCommands.hgetall(key);
+    return call(() -> syncCommands.hgetall(key));
   }
 
   // Sorted set operations
   @Override
   public void zadd(String key, double score, String member) {
-    syncCommands.zadd(key, score, member);
+    run(() -> syncCommands.zadd(key, score, member));
+  }
+
+  @Override
+  public void zaddAll(String key, Map<String, Double> scoredMembers) {
+    if (scoredMembers.isEmpty()) {
+      return;
+    }
+    run(() -> syncCommands.zadd(key, scoresAndValues(scoredMembers)));
+  }
+
+  @Override
+  public void zrem(String key, String... members) {
+    run(() -> syncCommands.zrem(key, members));
   }
 
   @Override
   public List<String> zrange(String key, long start, long stop) {
-    return syncCommands.zrange(key, start, stop);
+    return call(() -> syncCommands.zrange(key, start, stop));
+  }
+
+  // ZRANGEBYSCORE key min max LIMIT offset count，max 為 Double.POSITIVE_INFINITY 時代表 +inf
+  @Override
+  public List<String> zrangeByScore(String key, double min, double max, long offset, long count) {
+    return call(() -> syncCommands.zrangebyscore(key, scoreRange(min, max), Limit.create(offset, count)));
+  }
+
+  // ZADD key score member [score member ...]
+  private static Object[] scoresAndValues(Map<String, Double> scoredMembers) {
+    Object[] scoresAndValues = new Object[scoredMembers.size() * 2];
+    int i = 0;
+    for (Map.Entry<String, Double> entry : scoredMembers.entrySet()) {
+      scoresAndValues[i++] = entry.getValue();
+      scoresAndValues[i++] = entry.getKey();
+    }
+    return scoresAndValues;
+  }
+
+  private static Range<Double> scoreRange(double min, double max) {
+    return Range.from(
+        min == Double.NEGATIVE_INFINITY ? Range.Boundary.<Double>unbounded() : Range.Boundary.including(min),
+        max == Double.POSITIVE_INFINITY ? Range.Boundary.<Double>unbounded() : Range.Boundary.including(max));
+  }
+
+  // Codec operations
+  // decode 失敗 (格式錯誤或是舊版資料) 視為 cache miss
+  @Override
+  public <T> T getValue(String key, ValueCodec<T> codec) {
+    byte[] bytes = call(() -> binarySyncCommands.get(key));
+    if (bytes == null) {
+      return null;
+    }
+    try {
+      return codec.decode(bytes);
+    } catch (IllegalArgumentException e) {
+      System.err.println("Decoding failed for key " + key + ": " + e.getMessage());
+      return null;
+    }
+  }
+
+  @Override
+  public <T> void setValueWithExpiry(String key, T value, ValueCodec<T> codec, long seconds) {
+    byte[] bytes = codec.encode(value);
+    run(() -> binarySyncCommands.setex(key, seconds, bytes));
+  }
+
+  // Batch operations
+  // 返回的 list 跟 keys 的順序一致，不存在的 key 為 null
+  @Override
+  public List<String> mget(List<String> keys) {
+    if (keys.isEmpty()) {
+      return List.of();
+    }
+    List<String> values = new ArrayList<>(keys.size());
+    List<KeyValue<String, String>> keyValues = call(() -> syncCommands.mget(keys.toArray(new String[0])));
+    for (KeyValue<String, String> keyValue : keyValues) {
+      values.add(keyValue.getValueOrElse(null));
+    }
+    return values;
+  }
+
+  // MSET 不支援 expiry，改用 pipeline 送出多個 SETEX
+  @Override
+  public void msetWithExpiry(Map<String, String> values, long seconds) {
+    if (values.isEmpty()) {
+      return;
+    }
+    List<RedisFuture<String>> futures = new ArrayList<>(values.size());
+    pipeline(() -> {
+      for (Map.Entry<String, String> entry : values.entrySet()) {
+        futures.add(pipelineCommands.setex(entry.getKey(), seconds, entry.getValue()));
+      }
+    }, futures);
+  }
+
+  @Override
+  public List<Map<String, String>> hgetAllPipelined(List<String> keys) {
+    if (keys.isEmpty()) {
+      return List.of();
+    }
+    List<RedisFuture<Map<String, String>>> futures = new ArrayList<>(keys.size());
+    pipeline(() -> {
+      for (String key : keys) {
+        futures.add(pipelineCommands.hgetall(key));
+      }
+    }, futures);
+
+    List<Map<String, String>> values = new ArrayList<>(keys.size());
+    for (RedisFuture<Map<String, String>> future : futures) {
+      values.add(future.toCompletableFuture().join());
+    }
+    return values;
+  }
+
+  // 每個 key 返回跟 fields 相同順序的 values，不存在的 key 或 field 為 null
+  @Override
+  public List<List<String>> hmgetPipelined(List<String> keys, String... fields) {
+    if (keys.isEmpty()) {
+      return List.of();
+    }
+    List<RedisFuture<List<KeyValue<String, String>>>> futures = new ArrayList<>(keys.size());
+    pipeline(() -> {
+      for (String key : keys) {
+        futures.add(pipelineCommands.hmget(key, fields));
+      }
+    }, futures);
+
+    List<List<String>> values = new ArrayList<>(keys.size());
+    for (RedisFuture<List<KeyValue<String, String>>> future : futures) {
+      List<String> fieldValues = new ArrayList<>(fields.length);
+      for (KeyValue<String, String> keyValue : future.toCompletableFuture().join()) {
+        fieldValues.add(keyValue.getValueOrElse(null));
+      }
+      values.add(fieldValues);
+    }
+    return values;
+  }
+
+  @Override
+  public void hsetAllPipelined(Map<String, Map<String, String>> values) {
+    if (values.isEmpty()) {
+      return;
+    }
+    List<RedisFuture<Long>> futures = new ArrayList<>(values.size());
+    pipeline(() -> {
+      for (Map.Entry<String, Map<String, String>> entry : values.entrySet()) {
+        futures.add(pipelineCommands.hset(entry.getKey(), entry.getValue()));
+      }
+    }, futures);
+  }
+
+  // 只有送出指令 + flush 需要 lock，等待結果不用，其他 thread 的 pipeline 可以同時進行
+  // 整個 pipeline 在 circuit breaker 算一次指令，pipeline 本來就比單一指令慢，不檢查 latency budget
+  private void pipeline(Runnable issue, List<? extends RedisFuture<?>> futures) {
+    acquire();
+    try {
+      synchronized (pipelineLock) {
+        issue.run();
+        pipelineConnection.flushCommands();
+      }
+      if (!LettuceFutures.awaitAll(PIPELINE_TIMEOUT_MS, TimeUnit.MILLISECONDS, futures.toArray(new RedisFuture[0]))) {
+        throw new RedisCommandTimeoutException("Pipeline of " + futures.size() + " commands timed out after "
+            + PIPELINE_TIMEOUT_MS + " ms");
+      }
+      record(0, null);
+    } catch (RuntimeException | Error e) {
+      record(0, e);
+      throw e;
+    }
   }
 
   // Asynchronous operations
   @Override
   public CompletableFuture<String> getAsync(String key) {
-    return asyncCommands.get(key).toCompletableFuture();
+    return callAsync(() -> asyncCommands.get(key));
   }
 
   @Override
   public CompletableFuture<Void> setAsync(String key, String value) {
-    return asyncCommands.set(key, value).toCompletableFuture().thenApply(v -> null);
+    return callAsync(() -> asyncCommands.set(key, value)).thenApply(v -> null);
   }
 
   @Override
@@ -152,10 +409,261 @@ public class RedisManagerImpl implements RedisManager {
     return getAsync(key).orTimeout(timeout, unit);
   }
 
+  @Override
+  public CompletableFuture<Void> setWithExpiryAsync(String key, String value, long seconds) {
+    return callAsync(() -> asyncCommands.setex(key, seconds, value)).thenApply(v -> null);
+  }
+
+  @Override
+  public CompletableFuture<Boolean> setIfAbsentWithExpiryAsync(String key, String value, long milliseconds) {
+    return callAsync(() -> asyncCommands.set(key, value, SetArgs.Builder.nx().px(milliseconds)))
+        .thenApply("OK"::equals);
+  }
+
+  @Override
+  public CompletableFuture<Long> incrementAsync(String key) {
+    return callAsync(() -> asyncCommands.incr(key));
+  }
+
+  @Override
+  public CompletableFuture<Void> deleteAsync(String key) {
+    return callAsync(() -> asyncCommands.del(key)).thenApply(v -> null);
+  }
+
+  @Override
+  public CompletableFuture<Void> renameAsync(String key, String newKey) {
+    return callAsync(() -> asyncCommands.rename(key, newKey)).thenApply(v -> null);
+  }
+
+  @Override
+  public CompletableFuture<Void> lpushAsync(String key, String... values) {
+    return callAsync(() -> asyncCommands.lpush(key, values)).thenApply(v -> null);
+  }
+
+  @Override
+  public CompletableFuture<List<String>> lrangeAsync(String key, long start, long stop) {
+    return callAsync(() -> asyncCommands.lrange(key, start, stop));
+  }
+
+  @Override
+  public CompletableFuture<String> lpopAsync(String key) {
+    return callAsync(() -> asyncCommands.lpop(key));
+  }
+
+  @Override
+  public CompletableFuture<Void> saddAsync(String key, String... members) {
+    return callAsync(() -> asyncCommands.sadd(key, members)).thenApply(v -> null);
+  }
+
+  @Override
+  public CompletableFuture<Set<String>> smembersAsync(String key) {
+    return callAsync(() -> asyncCommands.smembers(key));
+  }
+
+  @Override
+  public CompletableFuture<Boolean> sismemberAsync(String key, String member) {
+    return callAsync(() -> asyncCommands.sismember(key, member));
+  }
+
+  @Override
+  public CompletableFuture<Void> hsetAsync(String key, String field, String value) {
+    return callAsync(() -> asyncCommands.hset(key, field, value)).thenApply(v -> null);
+  }
+
+  @Override
+  public CompletableFuture<Void> hsetAllAsync(String key, Map<String, String> fields) {
+    return callAsync(() -> asyncCommands.hset(key, fields)).thenApply(v -> null);
+  }
+
+  @Override
+  public CompletableFuture<String> hgetAsync(String key, String field) {
+    return callAsync(() -> asyncCommands.hget(key, field));
+  }
+
+  @Override
+  public CompletableFuture<Map<String, String>> hgetAllAsync(String key) {
+    return callAsync(() -> asyncCommands.hgetall(key));
+  }
+
+  @Override
+  public CompletableFuture<Void> zaddAsync(String key, double score, String member) {
+    return callAsync(() -> asyncCommands.zadd(key, score, member)).thenApply(v -> null);
+  }
+
+  @Override
+  public CompletableFuture<Void> zaddAllAsync(String key, Map<String, Double> scoredMembers) {
+    if (scoredMembers.isEmpty()) {
+      return CompletableFuture.completedFuture(null);
+    }
+    return callAsync(() -> asyncCommands.zadd(key, scoresAndValues(scoredMembers))).thenApply(v -> null);
+  }
+
+  @Override
+  public CompletableFuture<Void> zremAsync(String key, String... members) {
+    return callAsync(() -> asyncCommands.zrem(key, members)).thenApply(v -> null);
+  }
+
+  @Override
+  public CompletableFuture<List<String>> zrangeAsync(String key, long start, long stop) {
+    return callAsync(() -> asyncCommands.zrange(key, start, stop));
+  }
+
+  @Override
+  public CompletableFuture<List<String>> zrangeByScoreAsync(String key, double min, double max, long offset,
+      long count) {
+    return callAsync(() -> asyncCommands.zrangebyscore(key, scoreRange(min, max), Limit.create(offset, count)));
+  }
+
+  @Override
+  public CompletableFuture<Void> publishAsync(String channel, String message) {
+    return callAsync(() -> asyncCommands.publish(channel, message)).thenApply(v -> null);
+  }
+
+  // Fire-and-forget operations
+  // 呼叫端不等待結果，失敗只記錄在 metrics；pending 寫入已滿時返回 false 表示這次寫入被丟掉
+  @Override
+  public boolean offerSetWithExpiry(String key, String value, long seconds) {
+    return offer(key, () -> asyncCommands.setex(key, seconds, value));
+  }
+
+  @Override
+  public <T> boolean offerSetValueWithExpiry(String key, T value, ValueCodec<T> codec, long seconds) {
+    byte[] bytes = codec.encode(value);
+    return offer(key, () -> binaryAsyncCommands.setex(key, seconds, bytes));
+  }
+
+  // circuit breaker open 時跟 pending 寫入已滿一樣直接丟掉
+  private boolean offer(String key, Supplier<RedisFuture<String>> command) {
+    if (!pendingWrites.tryAcquire()) {
+      droppedWrites.increment();
+      return false;
+    }
+    if (!circuitBreaker.tryAcquire()) {
+      pendingWrites.release();
+      droppedWrites.increment();
+      return false;
+    }
+    offeredWrites.increment();
+    long start = System.nanoTime();
+    try {
+      command.get().whenComplete((result, e) -> {
+        pendingWrites.release();
+        record(System.nanoTime() - start, e);
+        if (e != null) {
+          failedWrites.increment();
+          System.err.println("Redis background write failed for key " + key + ": " + e.getMessage());
+        }
+      });
+    } catch (RuntimeException e) {
+      pendingWrites.release();
+      failedWrites.increment();
+      record(System.nanoTime() - start, e);
+      throw e;
+    }
+    return true;
+  }
+
+  // Circuit breaker
+  // 每個指令都先經過 circuit breaker，open 時直接丟出 RedisUnavailableException，不送出指令
+  private <T> T call(Supplier<T> command) {
+    acquire();
+    long start = System.nanoTime();
+    try {
+      T result = command.get();
+      record(System.nanoTime() - start, null);
+      return result;
+    } catch (RuntimeException | Error e) {
+      record(System.nanoTime() - start, e);
+      throw e;
+    }
+  }
+
+  private void run(Runnable command) {
+    call(() -> {
+      command.run();
+      return null;
+    });
+  }
+
+  private <T> CompletableFuture<T> callAsync(Supplier<RedisFuture<T>> command) {
+    try {
+      acquire();
+    } catch (RedisUnavailableException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+    long start = System.nanoTime();
+    try {
+      return command.get().toCompletableFuture().whenComplete((result, e) -> record(System.nanoTime() - start, e));
+    } catch (RuntimeException e) {
+      record(System.nanoTime() - start, e);
+      throw e;
+    }
+  }
+
+  private void acquire() {
+    if (!circuitBreaker.tryAcquire()) {
+      throw new RedisUnavailableException("Redis circuit breaker is open");
+    }
+  }
+
+  // Redis 返回的 error reply (例如 WRONGTYPE) 代表 server 正常，不算 circuit breaker 的失敗
+  private void record(long elapsedNanos, Throwable e) {
+    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    if (cause == null || cause instanceof RedisCommandExecutionException) {
+      circuitBreaker.onSuccess(elapsedNanos);
+    } else {
+      circuitBreaker.onFailure();
+    }
+  }
+
+  // Metrics
+  @Override
+  public Map<String, Long> getMetrics() {
+    Map<String, Long> metrics = new HashMap<>();
+    metrics.put("redis.async.offered", offeredWrites.sum());
+    metrics.put("redis.async.dropped", droppedWrites.sum());
+    metrics.put("redis.async.failed", failedWrites.sum());
+    metrics.put("redis.async.pending", (long) (maxPendingWrites - pendingWrites.availablePermits()));
+    metrics.putAll(circuitBreaker.getMetrics());
+    return metrics;
+  }
+
+  // Pub/Sub operations
+  @Override
+  public void publish(String channel, String message) {
+    run(() -> syncCommands.publish(channel, message));
+  }
+
+  // autoReconnect 重新連線後 Lettuce 會自動重新訂閱原本的 channel
+  @Override
+  public synchronized void subscribe(String channel, Consumer<String> listener) {
+    if (pubSubConnection == null) {
+      pubSubConnection = redisClient.connectPubSub();
+      pubSubConnection.addListener(new RedisPubSubAdapter<String, String>() {
+        @Override
+        public void message(String channel, String message) {
+          List<Consumer<String>> listeners = subscribers.get(channel);
+          if (listeners != null) {
+            listeners.forEach(l -> l.accept(message));
+          }
+        }
+      });
+    }
+    run(() -> pubSubConnection.sync().subscribe(channel));
+    subscribers.computeIfAbsent(channel, c -> new CopyOnWriteArrayList<>()).add(listener);
+  }
+
   // Shut down resources
   @Override
   public void shutdown() {
+    synchronized (this) {
+      if (pubSubConnection != null) {
+        pubSubConnection.close();
+      }
+    }
     connection.close();
+    pipelineConnection.close();
+    binaryConnection.close();
     redisClient.shutdown();
     clientResources.shutdown();
   }
@@ -0,0 +1,9 @@
+package todolist.utils.database.redis;
+
+// Circuit breaker open 時直接丟出，不送出指令
+// 這是預期中的 fast-fail，不需要 stack trace
+public class RedisUnavailableException extends RuntimeException {
+  public RedisUnavailableException(String message) {
+    super(message, null, false, false);
+  }
+}
@@ -0,0 +1,63 @@
+package todolist.utils.database.redis;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// Request coalescing (single-flight)：同一個 key 同時只有一個 loader 在執行，
+// 其他同時 cache miss 的 caller 等待同一個 future，避免 cache 過期時一起打到 DB (cache stampede)
+//
+// loader 結束後 key 就會移除，之後的 caller 會重新載入，所以只合併「同時」發生的請求
+public class SingleFlight<V> {
+  private final String name;
+  private final Map<String, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+  // Metrics
+  private final LongAdder loadCount = new LongAdder();
+  private final LongAdder coalescedCount = new LongAdder();
+
+  public SingleFlight(String name) {
+    this.name = name;
+  }
+
+  public V load(String key, Supplier<V> loader) {
+    CompletableFuture<V> future = new CompletableFuture<>();
+    CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+    if (existing != null) {
+      coalescedCount.increment();
+      try {
+        return existing.join();
+      } catch (CompletionException e) {
+        // loader 丟出的 exception 原封不動交給每個 caller
+        if (e.getCause() instanceof RuntimeException) {
+          throw (RuntimeException) e.getCause();
+        }
+        throw e;
+      }
+    }
+
+    loadCount.increment();
+    try {
+      V value = loader.get();
+      future.complete(value);
+      return value;
+    } catch (RuntimeException | Error e) {
+      future.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(key, future);
+    }
+  }
+
+  public Map<String, Long> getMetrics() {
+    Map<String, Long> metrics = new HashMap<>();
+    metrics.put(name + ".singleflight.load", loadCount.sum());
+    metrics.put(name + ".singleflight.coalesced", coalescedCount.sum());
+    metrics.put(name + ".singleflight.inflight", (long) inFlight.size());
+    return metrics;
+  }
+}
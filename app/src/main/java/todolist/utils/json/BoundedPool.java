@@ -0,0 +1,39 @@
+package todolist.utils.json;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// Json 的 reader / writer / buffer 共用的 bounded pool，跟 server 的 DeflaterPool 一樣的做法
+//
+// 不用 ThreadLocal：VIRTUAL 模式下每個 request 都是新的 thread，ThreadLocal 等於每個 request 配置一次
+// pool 空了就建立新的，放回時 pool 滿了就直接丟掉給 GC
+final class BoundedPool<T> {
+  private final Supplier<T> factory;
+  private final BlockingQueue<T> idle;
+  private final AtomicLong created = new AtomicLong();
+
+  BoundedPool(Supplier<T> factory, int maxIdle) {
+    this.factory = factory;
+    this.idle = new ArrayBlockingQueue<>(maxIdle);
+  }
+
+  T borrow() {
+    T value = idle.poll();
+    if (value == null) {
+      created.incrementAndGet();
+      value = factory.get();
+    }
+    return value;
+  }
+
+  // 呼叫端要先把物件 reset 好 (解除跟 stream 的關聯、清掉內容) 才放回來
+  void release(T value) {
+    idle.offer(value);
+  }
+
+  long getCreated() {
+    return created.get();
+  }
+}
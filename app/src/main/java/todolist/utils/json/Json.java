@@ -1,24 +1,81 @@
 package todolist.utils.json;
 
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonNull;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import todolist.entities.TodoEntity;
+import todolist.entities.TodoKafkaEntity;
+import todolist.entities.TodoMongoEntity;
 
 public class Json {
   // volatile keyword ensures visibility of changes to instance
   private static volatile Gson instance;
 
+  // 重複使用的 UTF-8 reader / writer 和 toBytes 的 buffer，encode / decode 時不用每次配置新的 buffer
+  // 放在 bounded pool 而不是 ThreadLocal，VIRTUAL 模式下每個 request 是新的 thread 也能重複使用
+  // pool 最多保留 POOL_SIZE 個，同時 encode 的數量超過時多出來的用完就丟掉
+  // toBytes 的 buffer 超過 MAX_RETAINED_BUFFER_SIZE 就不保留，避免偶爾一次很大的 response 一直佔著 heap
+  private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors() * 2;
+  private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+  static final BoundedPool<Utf8StreamReader> readers = new BoundedPool<>(Utf8StreamReader::new, POOL_SIZE);
+  static final BoundedPool<Utf8StreamWriter> writers = new BoundedPool<>(Utf8StreamWriter::new, POOL_SIZE);
+  static final BoundedPool<ByteArrayOutputStream> buffers = new BoundedPool<>(
+      () -> new ByteArrayOutputStream(Utf8StreamWriter.BUFFER_SIZE), POOL_SIZE);
+
+  // TypeToken.getParameterized 每次都會建立新的 Type，常用的 List / Map type 建立一次之後重複使用
+  private static final Map<Class<?>, Type> listTypes = new ConcurrentHashMap<>();
+  private static final Map<List<Class<?>>, Type> mapTypes = new ConcurrentHashMap<>();
+
   public static <T> String toJSON(T values) {
     return getInstance().toJson(values);
   }
 
+  // 直接 encode 成 UTF-8，不經過中間的 String，只配置最後返回的 byte[]
   public static <T> byte[] toBytes(T values) {
-    return toJSON(values).getBytes(StandardCharsets.UTF_8);
+    ByteArrayOutputStream buffer = buffers.borrow(); // 巢狀呼叫 (例如 TypeAdapter 裡又呼叫 toBytes) 時拿到另一個
+    try {
+      toStream(values, buffer);
+      return buffer.toByteArray();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e); // ByteArrayOutputStream 不會丟出 IOException
+    } finally {
+      if (buffer.size() <= MAX_RETAINED_BUFFER_SIZE) {
+        buffer.reset();
+        buffers.release(buffer);
+      }
+    }
+  }
+
+  // 透過 JsonWriter 一邊 serialize 一邊寫 UTF-8 bytes 到 OutputStream，不會在記憶體裡組出完整的 JSON
+  // 不會 flush 或關閉 OutputStream
+  public static <T> void toStream(T values, OutputStream out) throws IOException {
+    Utf8StreamWriter writer = writers.borrow();
+    try {
+      JsonWriter jsonWriter = getInstance().newJsonWriter(writer.reset(out));
+      if (values == null) {
+        getInstance().toJson(JsonNull.INSTANCE, jsonWriter);
+      } else {
+        getInstance().toJson(values, values.getClass(), jsonWriter);
+      }
+      writer.finish();
+    } finally {
+      writer.release();
+      writers.release(writer);
+    }
   }
 
   public static <T> T fromJSON(byte[] bytes, Class<T> classOfT) {
@@ -29,6 +86,25 @@ public class Json {
     return fromJSONWithType(new String(bytes, StandardCharsets.UTF_8), classOfT, defaultValue);
   }
 
+  // 直接從 InputStream (例如 request body) decode，不需要先讀成 byte[] / String
+  // 不會關閉 InputStream
+  public static <T> T fromJSON(InputStream input, Class<T> classOfT) {
+    return fromJSON(input, classOfT, null);
+  }
+
+  public static <T> T fromJSON(InputStream input, Class<T> classOfT, T defaultValue) {
+    Utf8StreamReader reader = readers.borrow();
+    try {
+      return getInstance().fromJson(reader.reset(input), classOfT);
+    } catch (Exception e) {
+      System.err.println("Deserialization failed: " + e.getMessage());
+      return defaultValue;
+    } finally {
+      reader.release();
+      readers.release(reader);
+    }
+  }
+
   public static <T> T fromJSON(String json, Class<T> classOfT) {
     return fromJSONWithType(json, classOfT, null);
   }
@@ -38,28 +114,41 @@ public class Json {
   }
 
   public static <T> List<T> fromJSONToList(String json, Class<T> classOfT) {
-    return fromJSONWithType(json, TypeToken.getParameterized(List.class, classOfT).getType(), new ArrayList<>());
+    return fromJSONWithType(json, listType(classOfT), new ArrayList<>());
   }
 
   public static <T> List<T> fromJSONToList(String json, Class<T> classOfT, List<T> defaultValue) {
-    return fromJSONWithType(json, TypeToken.getParameterized(List.class, classOfT).getType(), defaultValue);
+    return fromJSONWithType(json, listType(classOfT), defaultValue);
   }
 
   public static <K, V> Map<K, V> fromJSONToMap(String json, Class<K> keyClass, Class<V> valueClass) {
-    return fromJSONWithType(json, TypeToken.getParameterized(Map.class, keyClass, valueClass).getType(),
-        new HashMap<>());
+    return fromJSONWithType(json, mapType(keyClass, valueClass), new HashMap<>());
   }
 
   public static <K, V> Map<K, V> fromJSONToMap(String json, Class<K> keyClass, Class<V> valueClass,
       Map<K, V> defaultValue) {
-    return fromJSONWithType(json, TypeToken.getParameterized(Map.class, keyClass, valueClass).getType(), defaultValue);
+    return fromJSONWithType(json, mapType(keyClass, valueClass), defaultValue);
+  }
+
+  private static Type listType(Class<?> classOfT) {
+    return listTypes.computeIfAbsent(classOfT, c -> TypeToken.getParameterized(List.class, c).getType());
+  }
+
+  private static Type mapType(Class<?> keyClass, Class<?> valueClass) {
+    return mapTypes.computeIfAbsent(List.of(keyClass, valueClass),
+        k -> TypeToken.getParameterized(Map.class, keyClass, valueClass).getType());
   }
 
   private static Gson getInstance() {
     if (instance == null) {
       synchronized (Json.class) {
         if (instance == null) {
-          instance = new Gson();
+          // 三個 entity 用手寫的 TypeAdapter，其他 type 還是用 Gson 預設的 adapter
+          instance = new GsonBuilder()
+              .registerTypeAdapter(TodoEntity.class, new TodoEntityTypeAdapter())
+              .registerTypeAdapter(TodoMongoEntity.class, new TodoMongoEntityTypeAdapter())
+              .registerTypeAdapter(TodoKafkaEntity.class, new TodoKafkaEntityTypeAdapter())
+              .create();
         }
       }
     }
@@ -0,0 +1,52 @@
+package todolist.utils.json;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import java.io.IOException;
+
+// entity TypeAdapter 共用的 field reader，行為跟 Gson reflective adapter 用的內建 adapter 一樣：
+// - String field 也接受 number / boolean
+// - int / boolean field 也接受字串形式 ("1" / "true")
+// - primitive field 遇到 null 時保留原本的值
+final class JsonValues {
+
+  static String readString(JsonReader in) throws IOException {
+    JsonToken token = in.peek();
+    if (token == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    if (token == JsonToken.BOOLEAN) {
+      return Boolean.toString(in.nextBoolean());
+    }
+    return in.nextString();
+  }
+
+  static int readInt(JsonReader in, int defaultValue) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return defaultValue;
+    }
+    try {
+      return in.nextInt();
+    } catch (NumberFormatException e) {
+      throw new JsonSyntaxException(e);
+    }
+  }
+
+  static boolean readBoolean(JsonReader in, boolean defaultValue) throws IOException {
+    JsonToken token = in.peek();
+    if (token == JsonToken.NULL) {
+      in.nextNull();
+      return defaultValue;
+    }
+    if (token == JsonToken.STRING) {
+      return Boolean.parseBoolean(in.nextString());
+    }
+    return in.nextBoolean();
+  }
+
+  private JsonValues() {
+  }
+}
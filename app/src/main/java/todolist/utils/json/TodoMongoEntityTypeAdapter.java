@@ -0,0 +1,56 @@
+package todolist.utils.json;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import todolist.entities.TodoMongoEntity;
+
+// TodoMongoEntity 的手寫 adapter，寫法跟 TodoEntityTypeAdapter 一樣
+final class TodoMongoEntityTypeAdapter extends TypeAdapter<TodoMongoEntity> {
+
+  @Override
+  public void write(JsonWriter out, TodoMongoEntity todo) throws IOException {
+    if (todo == null) {
+      out.nullValue();
+      return;
+    }
+    out.beginObject();
+    out.name("id").value(todo.id);
+    out.name("title").value(todo.title);
+    out.name("description").value(todo.description);
+    out.name("completed").value(todo.completed);
+    out.endObject();
+  }
+
+  @Override
+  public TodoMongoEntity read(JsonReader in) throws IOException {
+    if (in.peek() == JsonToken.NULL) {
+      in.nextNull();
+      return null;
+    }
+    TodoMongoEntity todo = new TodoMongoEntity(null, null, null, false);
+    in.beginObject();
+    while (in.hasNext()) {
+      switch (in.nextName()) {
+        case "id":
+          todo.id = JsonValues.readString(in);
+          break;
+        case "title":
+          todo.title = JsonValues.readString(in);
+          break;
+        case "description":
+          todo.description = JsonValues.readString(in);
+          break;
+        case "completed":
+          todo.completed = JsonValues.readBoolean(in, todo.completed);
+          break;
+        default:
+          in.skipValue();
+      }
+    }
+    in.endObject();
+    return todo;
+  }
+}
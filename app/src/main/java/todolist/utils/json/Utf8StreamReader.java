@@ -0,0 +1,84 @@
+package todolist.utils.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+// Utf8StreamWriter 的反方向：從 InputStream 讀 bytes，用 reset 之後重複使用的 CharsetDecoder decode 成 char
+// 跟 InputStreamReader 不同的是 byte buffer 和 decoder 可以重複使用，Json 放在 BoundedPool 裡共用
+// 不合法的 UTF-8 跟 new String(bytes, UTF_8) 一樣換成 U+FFFD
+//
+// 不是 thread-safe；close() 不會關閉底層的 InputStream
+final class Utf8StreamReader extends Reader {
+  static final int BUFFER_SIZE = 4 * 1024;
+
+  private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+  private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+  private InputStream in;
+  private boolean endOfInput;
+  private boolean flushed;
+
+  Utf8StreamReader reset(InputStream in) {
+    this.in = in;
+    this.endOfInput = false;
+    this.flushed = false;
+    buffer.clear().flip(); // 空的，等第一次 read 時填入
+    decoder.reset();
+    return this;
+  }
+
+  // 讀完之後解除跟 InputStream 的關聯，避免 pool 裡的 reader 一直 reference 著 request stream
+  void release() {
+    in = null;
+  }
+
+  @Override
+  public int read(char[] chars, int offset, int length) throws IOException {
+    if (length == 0) {
+      return 0;
+    }
+    CharBuffer out = CharBuffer.wrap(chars, offset, length);
+    while (true) {
+      if (flushed) {
+        return out.position() > offset ? out.position() - offset : -1;
+      }
+      decoder.decode(buffer, out, endOfInput);
+      if (endOfInput && !buffer.hasRemaining()) {
+        decoder.flush(out);
+        flushed = true;
+        continue;
+      }
+      // 已經有 char 就先返回，不要為了塞滿 chars 而 block 在 InputStream.read 上
+      if (out.position() > offset || !out.hasRemaining()) {
+        return out.position() - offset;
+      }
+      fill();
+    }
+  }
+
+  // buffer 裡剩下的 bytes (不完整的 UTF-8 sequence) 移到最前面，再從 InputStream 補滿
+  private void fill() throws IOException {
+    buffer.compact();
+    try {
+      int n = in.read(buffer.array(), buffer.position(), buffer.remaining());
+      if (n < 0) {
+        endOfInput = true;
+      } else {
+        buffer.position(buffer.position() + n);
+      }
+    } finally {
+      buffer.flip();
+    }
+  }
+
+  @Override
+  public void close() {
+  }
+}
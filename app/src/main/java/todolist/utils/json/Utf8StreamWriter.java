@@ -0,0 +1,133 @@
+package todolist.utils.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+// 把 char 直接 encode 成 UTF-8 寫進固定大小的 byte buffer，滿了才寫到 OutputStream
+// 跟 OutputStreamWriter 不同的是 buffer 可以透過 reset 重複使用，Json 放在 BoundedPool 裡共用
+//
+// 不是 thread-safe；flush() / close() 只把 buffer 寫出去，不會 flush 或關閉底層的 OutputStream
+final class Utf8StreamWriter extends Writer {
+  static final int BUFFER_SIZE = 8 * 1024;
+
+  private final byte[] buffer = new byte[BUFFER_SIZE];
+  private int position;
+  private OutputStream out;
+  private char highSurrogate; // 上一次 write 結尾的 high surrogate，等下一個 char 組成 code point
+
+  Utf8StreamWriter reset(OutputStream out) {
+    this.out = out;
+    this.position = 0;
+    this.highSurrogate = 0;
+    return this;
+  }
+
+  // 寫完之後解除跟 OutputStream 的關聯，避免 pool 裡的 writer 一直 reference 著 response stream
+  void release() {
+    out = null;
+  }
+
+  @Override
+  public void write(int c) throws IOException {
+    writeChar((char) c);
+  }
+
+  @Override
+  public void write(char[] chars, int offset, int length) throws IOException {
+    for (int i = offset, end = offset + length; i < end; i++) {
+      char c = chars[i];
+      if (c < 0x80 && highSurrogate == 0) {
+        if (position == BUFFER_SIZE) {
+          drain();
+        }
+        buffer[position++] = (byte) c;
+      } else {
+        writeChar(c);
+      }
+    }
+  }
+
+  @Override
+  public void write(String value, int offset, int length) throws IOException {
+    for (int i = offset, end = offset + length; i < end; i++) {
+      char c = value.charAt(i);
+      if (c < 0x80 && highSurrogate == 0) {
+        if (position == BUFFER_SIZE) {
+          drain();
+        }
+        buffer[position++] = (byte) c;
+      } else {
+        writeChar(c);
+      }
+    }
+  }
+
+  private void writeChar(char c) throws IOException {
+    // 保留 4 bytes 給最長的 UTF-8 sequence
+    if (position > BUFFER_SIZE - 4) {
+      drain();
+    }
+    if (highSurrogate != 0) {
+      char high = highSurrogate;
+      highSurrogate = 0;
+      if (Character.isLowSurrogate(c)) {
+        int codePoint = Character.toCodePoint(high, c);
+        buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+        buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+        buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+        buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+        return;
+      }
+      buffer[position++] = '?'; // 跟 String.getBytes(UTF_8) 一樣，落單的 surrogate 寫成 '?'
+      writeChar(c);
+      return;
+    }
+
+    if (c < 0x80) {
+      buffer[position++] = (byte) c;
+    } else if (c < 0x800) {
+      buffer[position++] = (byte) (0xC0 | (c >> 6));
+      buffer[position++] = (byte) (0x80 | (c & 0x3F));
+    } else if (Character.isHighSurrogate(c)) {
+      highSurrogate = c;
+    } else if (Character.isLowSurrogate(c)) {
+      buffer[position++] = '?';
+    } else {
+      buffer[position++] = (byte) (0xE0 | (c >> 12));
+      buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+      buffer[position++] = (byte) (0x80 | (c & 0x3F));
+    }
+  }
+
+  // 把 buffer 裡的 bytes 寫到 OutputStream，不呼叫 OutputStream.flush()
+  void drain() throws IOException {
+    if (position > 0) {
+      out.write(buffer, 0, position);
+      position = 0;
+    }
+  }
+
+  // 結束時如果還有落單的 high surrogate 也寫成 '?'
+  void finish() throws IOException {
+    if (highSurrogate != 0) {
+      highSurrogate = 0;
+      if (position == BUFFER_SIZE) {
+        drain();
+      }
+      buffer[position++] = '?';
+    }
+    drain();
+  }
+
+  // 只把 buffer 寫出去，什麼時候 flush OutputStream 由呼叫端決定 (例如 chunked response 的 chunk 大小)
+  @Override
+  public void flush() throws IOException {
+    drain();
+  }
+
+  @Override
+  public void close() throws IOException {
+    finish();
+  }
+}
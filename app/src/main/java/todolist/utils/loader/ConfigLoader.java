@@ -73,4 +73,10 @@ public class ConfigLoader {
       throw new RuntimeException("Error loading configuration.", ex);
     }
   }
+
+  // 找不到 key 時回傳 defaultValue, 用於有預設值的可選設定
+  public static String load(Class<?> cls, String key, String defaultValue) {
+    String value = load(cls, key);
+    return value == null || value.isBlank() ? defaultValue : value.trim();
+  }
 }
@@ -0,0 +1,72 @@
+package todolist.utils.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Lock-free log2 bucket histogram, 用來記錄等待時間 / latency 等非負數值
+//
+// bucket i 記錄 [2^(i-1), 2^i) 的值 (bucket 0 只放 0),
+// percentile 回傳該 bucket 的上界, 誤差最多 2 倍, 但 record 只需要一次 CAS
+public class Histogram {
+  private static final int BUCKETS = 64;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+  public void record(long value) {
+    if (value < 0) {
+      value = 0;
+    }
+    buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(value));
+    count.increment();
+    sum.add(value);
+    max.accumulate(value);
+  }
+
+  public long getCount() {
+    return count.sum();
+  }
+
+  public long getMax() {
+    return max.get();
+  }
+
+  public long getMean() {
+    long total = count.sum();
+    return total == 0 ? 0 : sum.sum() / total;
+  }
+
+  // 回傳 percentile 所在 bucket 的上界, 並以實際最大值為上限
+  public long getPercentile(double percentile) {
+    long total = count.sum();
+    if (total == 0) {
+      return 0;
+    }
+    long threshold = (long) Math.ceil(total * percentile / 100.0);
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += buckets.get(i);
+      if (seen >= threshold) {
+        long upperBound = i == 0 ? 0 : (i >= 63 ? Long.MAX_VALUE : (1L << i) - 1);
+        return Math.min(upperBound, getMax());
+      }
+    }
+    return getMax();
+  }
+
+  public Map<String, Long> snapshot(String prefix) {
+    Map<String, Long> snapshot = new LinkedHashMap<>();
+    snapshot.put(prefix + ".count", getCount());
+    snapshot.put(prefix + ".mean", getMean());
+    snapshot.put(prefix + ".p50", getPercentile(50));
+    snapshot.put(prefix + ".p90", getPercentile(90));
+    snapshot.put(prefix + ".p99", getPercentile(99));
+    snapshot.put(prefix + ".max", getMax());
+    return snapshot;
+  }
+}
@@ -0,0 +1,26 @@
+package todolist.utils.server;
+
+// Accept / Accept-Encoding header 共用的 parsing
+final class AcceptHeaders {
+
+  // parts 是一個 media range (或 coding) 用 ';' 分開後的結果, parts[0] 是 type 本身
+  // 沒有 q 或 q 不合法時當作 1
+  static double quality(String[] parts) {
+    for (int i = 1; i < parts.length; i++) {
+      String parameter = parts[i].trim();
+      if (parameter.length() > 2 && (parameter.charAt(0) == 'q' || parameter.charAt(0) == 'Q')
+          && parameter.charAt(1) == '=') {
+        try {
+          double quality = Double.parseDouble(parameter.substring(2).trim());
+          return quality >= 0 && quality <= 1 ? quality : 1;
+        } catch (NumberFormatException e) {
+          return 1;
+        }
+      }
+    }
+    return 1;
+  }
+
+  private AcceptHeaders() {
+  }
+}
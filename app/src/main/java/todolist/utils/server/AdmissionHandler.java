@@ -0,0 +1,137 @@
+package todolist.utils.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import todolist.utils.json.Json;
+
+// 包在每個 context 的 HttpHandler 外面做 admission control / load shedding
+//
+// 每個 route 各自一個 instance, 各自的 in-flight 上限,
+// 所以 /v2 (Mongo) 變慢時只會塞滿 /v2 自己的名額, 不會拖垮 /v1
+//
+// 超過 maxInFlight 的 request 會排隊等待 (fair semaphore, 先到先拿),
+// 排隊人數超過 maxQueueDepth 或等待超過 maxQueueTimeMs 就直接回 503 + Retry-After
+public class AdmissionHandler implements HttpHandler {
+  private final String route;
+  private final HttpHandler delegate;
+  private final int maxInFlight;
+  private final int maxQueueDepth;
+  private final long maxQueueTimeMs;
+
+  private final Semaphore permits;
+  private final AtomicInteger queued = new AtomicInteger();
+
+  // Metrics
+  private final AtomicLong admittedCount = new AtomicLong();
+  private final AtomicLong rejectedQueueFullCount = new AtomicLong();
+  private final AtomicLong rejectedQueueTimeoutCount = new AtomicLong();
+
+  public AdmissionHandler(String route, HttpHandler delegate, int maxInFlight, int maxQueueDepth,
+      long maxQueueTimeMs) {
+    if (maxInFlight <= 0 || maxQueueDepth < 0 || maxQueueTimeMs < 0) {
+      throw new IllegalArgumentException("Invalid admission limits for route: " + route);
+    }
+    this.route = route;
+    this.delegate = delegate;
+    this.maxInFlight = maxInFlight;
+    this.maxQueueDepth = maxQueueDepth;
+    this.maxQueueTimeMs = maxQueueTimeMs;
+    this.permits = new Semaphore(maxInFlight, true);
+  }
+
+  @Override
+  public void handle(HttpExchange exchange) throws IOException {
+    // 有空位而且沒有人在排隊時直接進入, 不經過 queue
+    // 不用 tryAcquire(): 沒有 timeout 的版本會無視 fairness, 插隊到排隊中的 request 前面
+    if (!tryAcquireNow()) {
+      if (queued.incrementAndGet() > maxQueueDepth) {
+        queued.decrementAndGet();
+        rejectedQueueFullCount.incrementAndGet();
+        reject(exchange, "Too many queued requests");
+        return;
+      }
+
+      boolean acquired;
+      try {
+        acquired = permits.tryAcquire(maxQueueTimeMs, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        acquired = false;
+      } finally {
+        queued.decrementAndGet();
+      }
+
+      if (!acquired) {
+        rejectedQueueTimeoutCount.incrementAndGet();
+        reject(exchange, "Request queue timeout");
+        return;
+      }
+    }
+
+    admittedCount.incrementAndGet();
+    try {
+      delegate.handle(exchange);
+    } finally {
+      permits.release();
+    }
+  }
+
+  private boolean tryAcquireNow() {
+    try {
+      return permits.tryAcquire(0, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  private void reject(HttpExchange exchange, String message) throws IOException {
+    try {
+      // 至少 1 秒, 約等於一個完整的排隊時間
+      long retryAfterSeconds = Math.max(1, (maxQueueTimeMs + 999) / 1000);
+      exchange.getResponseHeaders().set("Retry-After", String.valueOf(retryAfterSeconds));
+      exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+      byte[] responseBytes = Json.toBytes(new HashMap<>(Map.of("message", message + " on " + route)));
+      exchange.sendResponseHeaders(503, responseBytes.length);
+      try (OutputStream os = exchange.getResponseBody()) {
+        os.write(responseBytes);
+      }
+    } finally {
+      exchange.close();
+    }
+  }
+
+  public String getRoute() {
+    return route;
+  }
+
+  public int getMaxInFlight() {
+    return maxInFlight;
+  }
+
+  public int getInFlight() {
+    return maxInFlight - permits.availablePermits();
+  }
+
+  public int getQueued() {
+    return queued.get();
+  }
+
+  public Map<String, Long> getMetrics() {
+    Map<String, Long> metrics = new HashMap<>();
+    metrics.put("inFlight", (long) getInFlight());
+    metrics.put("queued", (long) getQueued());
+    metrics.put("admitted", admittedCount.get());
+    metrics.put("rejectedQueueFull", rejectedQueueFullCount.get());
+    metrics.put("rejectedQueueTimeout", rejectedQueueTimeoutCount.get());
+    return metrics;
+  }
+}
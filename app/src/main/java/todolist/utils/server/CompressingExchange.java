@@ -0,0 +1,247 @@
+package todolist.utils.server;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+
+// CompressionHandler 交給 controller 的 HttpExchange, 攔截 sendResponseHeaders / getResponseBody:
+// - 長度已知 (>= minBytes): 先把 body 收到 buffer, close 時壓縮, 用壓縮後的確切長度送出 Content-Length;
+//   壓縮後沒有比較小就送原本的 bytes
+// - chunked (長度 0): 直接一邊壓縮一邊輸出; controller close 時只先記下來, 等 handler 正常返回才由 finish()
+//   寫 gzip trailer 並結束 chunked response; handler 丟出 exception 時 abort(), 不寫 trailer 也不結束 response,
+//   讓 HttpServer 直接斷線, client 不會把截斷的資料當成完整的 response
+// - 沒有 body (-1)、長度小於 minBytes、client 不接受壓縮或 controller 自己設了 Content-Encoding: 不處理
+//
+// controller 要先呼叫 sendResponseHeaders 再拿 getResponseBody (現在的 controller 都是這樣)
+final class CompressingExchange extends HttpExchange {
+  private final HttpExchange exchange;
+  private final CompressionHandler handler;
+  private final CompressionHandler.Encoding encoding; // null 代表 client 不接受壓縮
+
+  private OutputStream body; // null 時直接用原本的 response body
+  private CompressingOutputStream compressing; // chunked 時的壓縮 stream, 只有 finish() 會寫結尾
+  private int bufferedCode = -1;
+  private boolean recorded;
+
+  CompressingExchange(HttpExchange exchange, CompressionHandler handler, CompressionHandler.Encoding encoding) {
+    this.exchange = exchange;
+    this.handler = handler;
+    this.encoding = encoding;
+  }
+
+  @Override
+  public void sendResponseHeaders(int code, long length) throws IOException {
+    Headers headers = exchange.getResponseHeaders();
+    if (length < 0 || headers.containsKey("Content-Encoding")) {
+      exchange.sendResponseHeaders(code, length);
+      return;
+    }
+    headers.add("Vary", "Accept-Encoding");
+    if (encoding == null) {
+      exchange.sendResponseHeaders(code, length);
+      return;
+    }
+
+    if (length == 0) {
+      headers.set("Content-Encoding", encoding.token);
+      exchange.sendResponseHeaders(code, 0);
+      compressing = handler.compress(exchange.getResponseBody(), encoding);
+      body = new StreamingBody();
+      return;
+    }
+
+    if (length < handler.getMinBytes() || length > Integer.MAX_VALUE - 8) {
+      handler.recordSkippedSmall();
+      exchange.sendResponseHeaders(code, length);
+      return;
+    }
+    bufferedCode = code;
+    body = new BufferedBody((int) length);
+  }
+
+  // 交給 controller 的 chunked body, close() 不寫結尾 (見 finish / abort)
+  private final class StreamingBody extends OutputStream {
+    @Override
+    public void write(int b) throws IOException {
+      compressing.write(b);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+      compressing.write(bytes, offset, length);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      compressing.flush();
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
+  // 收集固定長度的 body, close 時才壓縮並送出 header
+  private final class BufferedBody extends ByteArrayOutputStream {
+    private final int length;
+    private boolean closed;
+
+    BufferedBody(int length) {
+      super(length);
+      this.length = length;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (closed) {
+        return;
+      }
+      closed = true;
+
+      // 跟沒有壓縮時的 fixed-length response 一樣, 寫的長度跟 sendResponseHeaders 的不同時不送出 response,
+      // close exchange 時 HttpServer 會直接斷線
+      if (count != length) {
+        throw new IOException("Response body length mismatch: declared " + length + ", written " + count);
+      }
+
+      // 壓縮結果通常遠小於原始長度
+      ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, count / 4));
+      CompressingOutputStream stream = handler.compress(compressed, encoding);
+      stream.write(buf, 0, count);
+      stream.close();
+
+      try (OutputStream os = exchange.getResponseBody()) {
+        if (compressed.size() < count) {
+          handler.recordCompressed(stream.getBytesIn(), stream.getBytesOut(), stream.getCpuNanos());
+          exchange.getResponseHeaders().set("Content-Encoding", encoding.token);
+          exchange.sendResponseHeaders(bufferedCode, compressed.size());
+          compressed.writeTo(os);
+        } else {
+          handler.recordIncompressible(stream.getCpuNanos());
+          exchange.sendResponseHeaders(bufferedCode, count);
+          os.write(buf, 0, count);
+        }
+      }
+    }
+  }
+
+  @Override
+  public OutputStream getResponseBody() {
+    return body != null ? body : exchange.getResponseBody();
+  }
+
+  @Override
+  public int getResponseCode() {
+    return bufferedCode != -1 ? bufferedCode : exchange.getResponseCode();
+  }
+
+  // controller 呼叫的 close: chunked 時等 CompressionHandler 呼叫 finish / abort, 其他情況直接完成 response
+  @Override
+  public void close() {
+    if (compressing == null) {
+      finish();
+    }
+  }
+
+  // handler 正常返回之後呼叫: 完成壓縮 (controller 沒有關閉 response body 時也在這裡完成) 並關閉 exchange,
+  // 可以重複呼叫
+  void finish() {
+    try {
+      if (compressing != null) {
+        compressing.close(); // 寫完剩下的資料和 gzip trailer, 結束 chunked response
+      } else if (body != null) {
+        body.close();
+      }
+    } catch (IOException e) {
+      // client 中斷連線、body 長度不符等情況, 跟原本的 exchange.close() 一樣不往外丟
+    } finally {
+      if (compressing != null && compressing.isFinished() && !recorded) {
+        recorded = true;
+        handler.recordCompressed(compressing.getBytesIn(), compressing.getBytesOut(), compressing.getCpuNanos());
+      }
+      exchange.close();
+    }
+  }
+
+  // handler 丟出 exception 時呼叫: chunked response 不寫結尾也不關閉 exchange, exception 往外丟之後
+  // HttpServer 會直接關閉連線; 其他情況跟 finish 一樣 (buffer 還沒送出時長度不符, 不會送出 response)
+  void abort() {
+    if (compressing == null) {
+      finish();
+    } else {
+      compressing.abort();
+    }
+  }
+
+  @Override
+  public Headers getRequestHeaders() {
+    return exchange.getRequestHeaders();
+  }
+
+  @Override
+  public Headers getResponseHeaders() {
+    return exchange.getResponseHeaders();
+  }
+
+  @Override
+  public URI getRequestURI() {
+    return exchange.getRequestURI();
+  }
+
+  @Override
+  public String getRequestMethod() {
+    return exchange.getRequestMethod();
+  }
+
+  @Override
+  public HttpContext getHttpContext() {
+    return exchange.getHttpContext();
+  }
+
+  @Override
+  public InputStream getRequestBody() {
+    return exchange.getRequestBody();
+  }
+
+  @Override
+  public InetSocketAddress getRemoteAddress() {
+    return exchange.getRemoteAddress();
+  }
+
+  @Override
+  public InetSocketAddress getLocalAddress() {
+    return exchange.getLocalAddress();
+  }
+
+  @Override
+  public String getProtocol() {
+    return exchange.getProtocol();
+  }
+
+  @Override
+  public Object getAttribute(String name) {
+    return exchange.getAttribute(name);
+  }
+
+  @Override
+  public void setAttribute(String name, Object value) {
+    exchange.setAttribute(name, value);
+  }
+
+  @Override
+  public void setStreams(InputStream input, OutputStream output) {
+    exchange.setStreams(input, output);
+  }
+
+  @Override
+  public HttpPrincipal getPrincipal() {
+    return exchange.getPrincipal();
+  }
+}
@@ -0,0 +1,148 @@
+package todolist.utils.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+// 把寫入的 bytes 用 pool 裡的 Deflater 壓縮後寫到 out; gzip 時自己寫 header 和 trailer (CRC32 + 原始長度)
+// flush() 用 SYNC_FLUSH, 讓 chunked response (例如 export) 已經寫的資料可以先送到 client
+// close() 寫完剩下的資料, 把 Deflater 還回 pool, 然後關閉 out; 可以重複呼叫
+// abort() 只把 Deflater 還回 pool, 不寫結尾也不關閉 out, 讓 client 解壓縮時知道資料不完整
+//
+// cpuNanos 只計算 Deflater 本身的時間 (不含寫到 out 的 I/O); virtual thread 沒有 thread CPU time 可以用,
+// 而 deflate 是純計算, wall time 就是它的 CPU 成本
+final class CompressingOutputStream extends OutputStream {
+  private static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+  private static final int BUFFER_SIZE = 8 * 1024;
+
+  private final OutputStream out;
+  private final DeflaterPool pool;
+  private final CRC32 crc; // deflate (zlib) 時為 null
+  private final byte[] buffer = new byte[BUFFER_SIZE];
+  private Deflater deflater;
+  private boolean pending; // 上次 flush 之後有沒有新的資料
+  private long bytesIn;
+  private long bytesOut;
+  private long cpuNanos;
+  private boolean finished; // 完整寫完 (包含 gzip trailer)
+
+  CompressingOutputStream(OutputStream out, DeflaterPool pool, boolean gzip) throws IOException {
+    this.out = out;
+    this.pool = pool;
+    this.crc = gzip ? new CRC32() : null;
+    this.deflater = pool.borrow();
+    if (gzip) {
+      out.write(GZIP_HEADER);
+      bytesOut += GZIP_HEADER.length;
+    }
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    write(new byte[] { (byte) b }, 0, 1);
+  }
+
+  @Override
+  public void write(byte[] bytes, int offset, int length) throws IOException {
+    ensureOpen();
+    if (length == 0) {
+      return;
+    }
+    long start = System.nanoTime();
+    if (crc != null) {
+      crc.update(bytes, offset, length);
+    }
+    deflater.setInput(bytes, offset, length);
+    cpuNanos += System.nanoTime() - start;
+    while (!deflater.needsInput()) {
+      drain(Deflater.NO_FLUSH);
+    }
+    bytesIn += length;
+    pending = true;
+  }
+
+  @Override
+  public void flush() throws IOException {
+    ensureOpen();
+    if (pending) {
+      // 輸出塞滿 buffer 代表可能還有資料
+      while (drain(Deflater.SYNC_FLUSH) == BUFFER_SIZE) {
+      }
+      pending = false;
+    }
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (deflater == null) {
+      return;
+    }
+    try {
+      long start = System.nanoTime();
+      deflater.finish();
+      cpuNanos += System.nanoTime() - start;
+      while (!deflater.finished()) {
+        drain(Deflater.NO_FLUSH);
+      }
+      if (crc != null) {
+        writeIntLE((int) crc.getValue());
+        writeIntLE((int) bytesIn); // ISIZE: 原始長度 mod 2^32
+      }
+      finished = true;
+    } finally {
+      pool.release(deflater);
+      deflater = null;
+      out.close();
+    }
+  }
+
+  void abort() {
+    if (deflater != null) {
+      pool.release(deflater);
+      deflater = null;
+    }
+  }
+
+  long getBytesIn() {
+    return bytesIn;
+  }
+
+  long getBytesOut() {
+    return bytesOut;
+  }
+
+  long getCpuNanos() {
+    return cpuNanos;
+  }
+
+  boolean isFinished() {
+    return finished;
+  }
+
+  private int drain(int flush) throws IOException {
+    long start = System.nanoTime();
+    int n = deflater.deflate(buffer, 0, buffer.length, flush);
+    cpuNanos += System.nanoTime() - start;
+    if (n > 0) {
+      out.write(buffer, 0, n);
+      bytesOut += n;
+    }
+    return n;
+  }
+
+  private void writeIntLE(int value) throws IOException {
+    out.write(value & 0xFF);
+    out.write((value >> 8) & 0xFF);
+    out.write((value >> 16) & 0xFF);
+    out.write((value >> 24) & 0xFF);
+    bytesOut += 4;
+  }
+
+  private void ensureOpen() throws IOException {
+    if (deflater == null) {
+      throw new IOException("Stream closed");
+    }
+  }
+}
@@ -0,0 +1,160 @@
+package todolist.utils.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+
+// 包在 controller 外面, 依照 Accept-Encoding 用 gzip / deflate 壓縮 response body
+//
+// 長度已知的 response 小於 minBytes 時不壓縮 (header 和 CPU 成本比省下的頻寬還多),
+// 其他的先 buffer 再壓縮, 保留確切的 Content-Length; chunked response 一邊壓縮一邊輸出
+// Deflater 從 pool 借用, 不會每個 response 配置一個 (見 DeflaterPool)
+//
+// Metrics: 壓縮前後的 bytes (ratioPercent = 壓縮後 / 壓縮前), 以及 Deflater 花的 CPU 時間
+public class CompressionHandler implements HttpHandler {
+  public static final int DEFAULT_MIN_BYTES = 1024;
+  public static final int DEFAULT_LEVEL = Deflater.BEST_SPEED;
+
+  enum Encoding {
+    GZIP("gzip"),
+    DEFLATE("deflate");
+
+    final String token;
+
+    Encoding(String token) {
+      this.token = token;
+    }
+  }
+
+  private final HttpHandler delegate;
+  private final int minBytes;
+  private final DeflaterPool gzipDeflaters;
+  private final DeflaterPool deflateDeflaters;
+
+  // Metrics
+  private final AtomicLong compressedCount = new AtomicLong();
+  private final AtomicLong skippedSmallCount = new AtomicLong();
+  private final AtomicLong skippedIncompressibleCount = new AtomicLong();
+  private final AtomicLong bytesIn = new AtomicLong();
+  private final AtomicLong bytesOut = new AtomicLong();
+  private final AtomicLong cpuNanos = new AtomicLong();
+
+  public CompressionHandler(HttpHandler delegate) {
+    this(delegate, DEFAULT_MIN_BYTES, DEFAULT_LEVEL);
+  }
+
+  // level 是 Deflater 的壓縮等級 (1 最快 ~ 9 最小)
+  public CompressionHandler(HttpHandler delegate, int minBytes, int level) {
+    if (minBytes < 0 || level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION) {
+      throw new IllegalArgumentException("Invalid compression settings: minBytes=" + minBytes + ", level=" + level);
+    }
+    this.delegate = delegate;
+    this.minBytes = minBytes;
+    int maxIdle = Runtime.getRuntime().availableProcessors() * 2;
+    this.gzipDeflaters = new DeflaterPool(level, true, maxIdle);
+    this.deflateDeflaters = new DeflaterPool(level, false, maxIdle);
+  }
+
+  @Override
+  public void handle(HttpExchange exchange) throws IOException {
+    Encoding encoding = negotiate(exchange.getRequestHeaders().get("Accept-Encoding"));
+    CompressingExchange compressingExchange = new CompressingExchange(exchange, this, encoding);
+    try {
+      delegate.handle(compressingExchange);
+    } catch (IOException | RuntimeException | Error e) {
+      compressingExchange.abort();
+      throw e;
+    }
+    compressingExchange.finish();
+  }
+
+  // 選 q 值最高的 gzip / deflate, 相同時選 gzip; 都不接受 (或沒有 Accept-Encoding) 時返回 null
+  static Encoding negotiate(List<String> acceptEncodings) {
+    if (acceptEncodings == null || acceptEncodings.isEmpty()) {
+      return null;
+    }
+    double gzip = -1;
+    double deflate = -1;
+    double wildcard = -1;
+    for (String header : acceptEncodings) {
+      for (String coding : header.split(",")) {
+        String[] parts = coding.split(";");
+        String token = parts[0].trim().toLowerCase();
+        double quality = AcceptHeaders.quality(parts);
+        switch (token) {
+          case "gzip":
+          case "x-gzip":
+            gzip = Math.max(gzip, quality);
+            break;
+          case "deflate":
+            deflate = Math.max(deflate, quality);
+            break;
+          case "*":
+            wildcard = Math.max(wildcard, quality);
+            break;
+          default:
+        }
+      }
+    }
+    // 沒有明確列出的 coding 用 * 的 q 值
+    gzip = gzip >= 0 ? gzip : wildcard;
+    deflate = deflate >= 0 ? deflate : wildcard;
+    if (gzip > 0 && gzip >= deflate) {
+      return Encoding.GZIP;
+    }
+    return deflate > 0 ? Encoding.DEFLATE : null;
+  }
+
+  CompressingOutputStream compress(OutputStream out, Encoding encoding) throws IOException {
+    return encoding == Encoding.GZIP
+        ? new CompressingOutputStream(out, gzipDeflaters, true)
+        : new CompressingOutputStream(out, deflateDeflaters, false);
+  }
+
+  int getMinBytes() {
+    return minBytes;
+  }
+
+  void recordCompressed(long in, long out, long nanos) {
+    compressedCount.incrementAndGet();
+    bytesIn.addAndGet(in);
+    bytesOut.addAndGet(out);
+    cpuNanos.addAndGet(nanos);
+  }
+
+  void recordSkippedSmall() {
+    skippedSmallCount.incrementAndGet();
+  }
+
+  // 壓縮過但沒有變小, CPU 還是花掉了
+  void recordIncompressible(long nanos) {
+    skippedIncompressibleCount.incrementAndGet();
+    cpuNanos.addAndGet(nanos);
+  }
+
+  public Map<String, Long> getMetrics() {
+    long compressed = compressedCount.get();
+    long in = bytesIn.get();
+    long out = bytesOut.get();
+    long nanos = cpuNanos.get();
+    long attempted = compressed + skippedIncompressibleCount.get();
+
+    Map<String, Long> metrics = new HashMap<>();
+    metrics.put("compressed", compressed);
+    metrics.put("skippedSmall", skippedSmallCount.get());
+    metrics.put("skippedIncompressible", skippedIncompressibleCount.get());
+    metrics.put("bytesIn", in);
+    metrics.put("bytesOut", out);
+    metrics.put("ratioPercent", in > 0 ? out * 100 / in : 0);
+    metrics.put("cpuNanos", nanos);
+    metrics.put("cpuNanosPerResponse", attempted > 0 ? nanos / attempted : 0);
+    metrics.put("deflatersCreated", gzipDeflaters.getCreated() + deflateDeflaters.getCreated());
+    return metrics;
+  }
+}
@@ -0,0 +1,44 @@
+package todolist.utils.server;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+
+// 同一個 level / format 的 Deflater pool, 用完 reset 之後放回去, 不用每個 response 都重新配置 zlib 的 native state
+//
+// 用 bounded 的共用 pool 而不是 ThreadLocal: VIRTUAL 模式下每個 request 都是新的 thread,
+// ThreadLocal 等於每個 request 配置一個; pool 滿了就直接 end() 釋放 native memory
+final class DeflaterPool {
+  private final int level;
+  private final boolean nowrap;
+  private final BlockingQueue<Deflater> idle;
+  private final AtomicLong created = new AtomicLong();
+
+  // nowrap = true 時輸出 raw deflate (gzip 自己加 header / trailer), false 時是 zlib format (HTTP 的 deflate)
+  DeflaterPool(int level, boolean nowrap, int maxIdle) {
+    this.level = level;
+    this.nowrap = nowrap;
+    this.idle = new ArrayBlockingQueue<>(maxIdle);
+  }
+
+  Deflater borrow() {
+    Deflater deflater = idle.poll();
+    if (deflater == null) {
+      created.incrementAndGet();
+      deflater = new Deflater(level, nowrap);
+    }
+    return deflater;
+  }
+
+  void release(Deflater deflater) {
+    deflater.reset();
+    if (!idle.offer(deflater)) {
+      deflater.end();
+    }
+  }
+
+  long getCreated() {
+    return created.get();
+  }
+}
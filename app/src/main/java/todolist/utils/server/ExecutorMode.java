@@ -0,0 +1,54 @@
+package todolist.utils.server;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// HttpServer 的執行緒模式, 啟動時透過環境變數 SERVER_EXECUTOR 選擇
+//
+// INLINE: setExecutor(null), 所有 request 都在 HttpServer 唯一的 dispatcher thread 上執行,
+// 一個慢的 JDBC 查詢就會卡住其他所有 client
+// POOL: 固定大小的 platform thread pool, 超過的 request 在 queue 中等待
+// VIRTUAL: 每個 request 一個 virtual thread, JDBC 阻塞時只會 park 該 virtual thread
+public enum ExecutorMode {
+  INLINE,
+  POOL,
+  VIRTUAL;
+
+  public static final int DEFAULT_POOL_SIZE = Runtime.getRuntime().availableProcessors() * 2;
+
+  // 解析失敗時回傳 defaultMode, 與 App 中 PORT 的處理方式一致
+  public static ExecutorMode parseOrDefault(String value, ExecutorMode defaultMode) {
+    if (value == null || value.isBlank()) {
+      return defaultMode;
+    }
+    try {
+      return ExecutorMode.valueOf(value.trim().toUpperCase());
+    } catch (IllegalArgumentException e) {
+      System.out.println("Invalid executor mode: " + value + ". Using default mode: " + defaultMode);
+      return defaultMode;
+    }
+  }
+
+  // INLINE 回傳 null, 交給 HttpServer 使用預設的 dispatcher thread
+  public ExecutorService create(int poolSize) {
+    switch (this) {
+      case POOL:
+        AtomicInteger counter = new AtomicInteger();
+        return new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+            runnable -> {
+              Thread thread = new Thread(runnable, "http-pool-" + counter.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+      case VIRTUAL:
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("http-virtual-", 0).factory());
+      case INLINE:
+      default:
+        return null;
+    }
+  }
+}
@@ -0,0 +1,46 @@
+package todolist.utils.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import todolist.utils.json.Json;
+
+// GET /metrics: 把 App 裡各個 handler 的 getMetrics() 用 JSON 輸出, 例如
+// {"v1.admission":{"admitted":12,...},"v1.compression":{"compressed":3,...}}
+//
+// 不經過 AdmissionHandler, route 塞滿的時候還是可以查看 metrics
+public class MetricsHandler implements HttpHandler {
+  private final Map<String, Supplier<Map<String, Long>>> sources = new ConcurrentHashMap<>();
+
+  public MetricsHandler register(String name, Supplier<Map<String, Long>> metrics) {
+    sources.put(name, metrics);
+    return this;
+  }
+
+  @Override
+  public void handle(HttpExchange exchange) throws IOException {
+    try {
+      if (!"GET".equals(exchange.getRequestMethod())) {
+        exchange.sendResponseHeaders(405, -1); // 405 Method Not Allowed
+        return;
+      }
+
+      // 依照名稱排序, 每次輸出的順序都一樣
+      Map<String, Map<String, Long>> snapshot = new TreeMap<>();
+      sources.forEach((name, metrics) -> snapshot.put(name, new TreeMap<>(metrics.get())));
+      byte[] responseBytes = Json.toBytes(snapshot);
+      exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+      exchange.sendResponseHeaders(200, responseBytes.length);
+      try (OutputStream os = exchange.getResponseBody()) {
+        os.write(responseBytes);
+      }
+    } finally {
+      exchange.close();
+    }
+  }
+}
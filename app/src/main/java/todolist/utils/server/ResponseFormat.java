@@ -0,0 +1,61 @@
+package todolist.utils.server;
+
+import java.util.List;
+
+// list response 的格式, 依照 request 的 Accept header 選擇
+//
+// JSON: 預設, 沒有 Accept / Accept 是 */* 或不支援的格式時都用 JSON
+// BINARY: TodoEntityCodec / TodoMongoEntityCodec 的 length-prefixed binary format,
+// 只有 client 明確要求 application/x-todo-binary, 而且 q 值比 JSON 高時才使用
+public enum ResponseFormat {
+  JSON("application/json; charset=UTF-8"),
+  BINARY(ResponseFormat.BINARY_MEDIA_TYPE);
+
+  public static final String BINARY_MEDIA_TYPE = "application/x-todo-binary";
+
+  private final String contentType;
+
+  ResponseFormat(String contentType) {
+    this.contentType = contentType;
+  }
+
+  public String contentType() {
+    return contentType;
+  }
+
+  // q 值相同時選 JSON; 每個格式用最具體的 media range 的 q 值 (例如同時有 application/* 和 */* 時用前者)
+  public static ResponseFormat negotiate(List<String> acceptHeaders) {
+    if (acceptHeaders == null || acceptHeaders.isEmpty()) {
+      return JSON;
+    }
+    double json = quality(acceptHeaders, "application/json");
+    double binary = quality(acceptHeaders, BINARY_MEDIA_TYPE);
+    return binary > json ? BINARY : JSON;
+  }
+
+  private static double quality(List<String> acceptHeaders, String mediaType) {
+    int bestSpecificity = -1;
+    double quality = 0;
+    for (String header : acceptHeaders) {
+      for (String range : header.split(",")) {
+        String[] parts = range.split(";");
+        String type = parts[0].trim().toLowerCase();
+        int specificity;
+        if (type.equals(mediaType)) {
+          specificity = 2;
+        } else if (type.equals("application/*")) {
+          specificity = 1;
+        } else if (type.equals("*/*")) {
+          specificity = 0;
+        } else {
+          continue;
+        }
+        if (specificity > bestSpecificity) {
+          bestSpecificity = specificity;
+          quality = AcceptHeaders.quality(parts);
+        }
+      }
+    }
+    return quality;
+  }
+}
@@ -0,0 +1,119 @@
+package todolist.controllers;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import todolist.entities.TodoEntity;
+import todolist.repositories.postgresql.TodoRepository;
+import todolist.utils.json.Json;
+
+public class TodoControllerTest {
+  private static final List<TodoEntity> TODOS = List.of(
+      new TodoEntity(1, "Learn SQL", "Understand the basics of SQL", false),
+      new TodoEntity(2, "買牛奶", null, true),
+      new TodoEntity(3, "Read a book", "Finish reading", false));
+
+  // 不需要 Postgres 的 repository，export 輸出 failAfter 筆之後丟 IOException (-1 代表不會失敗)
+  private static class StubTodoRepository implements TodoRepository {
+    private final int failAfter;
+
+    StubTodoRepository(int failAfter) {
+      this.failAfter = failAfter;
+    }
+
+    @Override
+    public Optional<TodoEntity> createTodo(TodoEntity todo) {
+      return Optional.of(todo);
+    }
+
+    @Override
+    public List<TodoEntity> getTodos() {
+      return TODOS;
+    }
+
+    @Override
+    public List<TodoEntity> getTodos(Map<String, String> params) {
+      return TODOS;
+    }
+
+    @Override
+    public Optional<TodoEntity> getTodoById(int todoId) {
+      return TODOS.stream().filter(todo -> todo.id == todoId).findFirst();
+    }
+
+    @Override
+    public Optional<TodoEntity> updateTodo(int todoId, TodoEntity todo) {
+      return Optional.of(todo);
+    }
+
+    @Override
+    public Optional<TodoEntity> deleteTodo(int todoId) {
+      return getTodoById(todoId);
+    }
+
+    @Override
+    public int exportTodos(TodoWriter writer) throws IOException {
+      int count = 0;
+      for (TodoEntity todo : TODOS) {
+        if (count == failAfter) {
+          throw new IOException("Export todos failed after " + count + " rows");
+        }
+        writer.write(todo);
+        count++;
+      }
+      return count;
+    }
+  }
+
+  private static String[] export(TodoRepository repository) throws Exception {
+    HttpServer server = HttpServer.create(new InetSocketAddress(0), 0);
+    server.createContext("/v1/todos", new TodoController(repository));
+    server.start();
+    try {
+      String url = "http://localhost:" + server.getAddress().getPort() + "/v1/todos/export";
+      HttpURLConnection connection = (HttpURLConnection) URI.create(url).toURL().openConnection();
+      connection.setRequestProperty("Content-Type", "application/json");
+      assertEquals(200, connection.getResponseCode());
+      assertEquals("application/x-ndjson; charset=UTF-8", connection.getHeaderField("Content-Type"));
+      try (InputStream input = connection.getInputStream()) {
+        return new String(input.readAllBytes(), StandardCharsets.UTF_8).split("\n");
+      }
+    } finally {
+      server.stop(0);
+    }
+  }
+
+  @Test
+  public void testExportEndsWithExportedRecord() throws Exception {
+    String[] lines = export(new StubTodoRepository(-1));
+
+    assertEquals(TODOS.size() + 1, lines.length);
+    for (int i = 0; i < TODOS.size(); i++) {
+      TodoEntity todo = Json.fromJSON(lines[i], TodoEntity.class);
+      assertEquals(TODOS.get(i).id, todo.id);
+      assertEquals(TODOS.get(i).title, todo.title);
+    }
+    assertEquals("{\"exported\":3}", lines[lines.length - 1]);
+  }
+
+  // 中途失敗時 HTTP 層看起來一樣是完整的 200 response，要靠最後一行的 error record 分辨
+  @Test
+  public void testFailedExportEndsWithErrorRecord() throws Exception {
+    String[] lines = export(new StubTodoRepository(2));
+
+    assertEquals(3, lines.length);
+    assertEquals(2, Json.fromJSON(lines[1], TodoEntity.class).id);
+    assertEquals("{\"error\":\"Export failed after 2 todos\",\"exported\":2}", lines[2]);
+  }
+}
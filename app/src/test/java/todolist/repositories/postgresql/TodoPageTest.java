@@ -0,0 +1,52 @@
+package todolist.repositories.postgresql;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import todolist.entities.TodoEntity;
+import todolist.utils.codec.TodoEntityCodec;
+import todolist.utils.json.Json;
+import todolist.utils.server.ResponseFormat;
+
+public class TodoPageTest {
+  private static byte[] write(TodoPage page, ResponseFormat format) throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    page.writeTo(format, output);
+    return output.toByteArray();
+  }
+
+  @Test
+  public void testEncodesEachFormatOnceAndReusesTheBytes() throws IOException {
+    TodoEntity todo = new TodoEntity(1, "before", "description", false);
+    TodoPage page = TodoPage.of(List.of(todo), Map.of());
+    byte[] json = Json.toBytes(List.of(todo));
+    byte[] binary = TodoEntityCodec.UNCOMPRESSED.encode(List.of(todo));
+
+    assertEquals(json.length, page.contentLength(ResponseFormat.JSON));
+    assertArrayEquals(json, write(page, ResponseFormat.JSON));
+    assertEquals(binary.length, page.contentLength(ResponseFormat.BINARY));
+    assertArrayEquals(binary, write(page, ResponseFormat.BINARY));
+
+    // 已經 encode 過的格式不會重新 encode，之後的 request 寫出同一份 bytes
+    todo.title = "after";
+    assertArrayEquals(json, write(page, ResponseFormat.JSON));
+    assertArrayEquals(binary, write(page, ResponseFormat.BINARY));
+  }
+
+  @Test
+  public void testStreamedPageHasUnknownJsonLength() throws IOException {
+    List<TodoEntity> todos = List.of(new TodoEntity(1, "title", null, true));
+    TodoPage page = TodoPage.streamed(todos, Map.of());
+
+    assertEquals(-1, page.contentLength(ResponseFormat.JSON));
+    assertArrayEquals(Json.toBytes(todos), write(page, ResponseFormat.JSON));
+    // binary 沒有 streaming encode，長度一定已知
+    byte[] binary = TodoEntityCodec.UNCOMPRESSED.encode(todos);
+    assertEquals(binary.length, page.contentLength(ResponseFormat.BINARY));
+    assertArrayEquals(binary, write(page, ResponseFormat.BINARY));
+  }
+}
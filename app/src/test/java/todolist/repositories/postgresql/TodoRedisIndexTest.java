@@ -0,0 +1,286 @@
+package todolist.repositories.postgresql;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import todolist.entities.TodoEntity;
+import todolist.utils.database.redis.RedisManager;
+
+public class TodoRedisIndexTest {
+  private static final String VERSION_KEY = "todos:generation";
+
+  // in-memory 的 RedisManager，只實作 index 用到的 string / hash / sorted set 指令
+  // 背景的 rebuild thread 也會用到，所以用 ConcurrentHashMap
+  private final Map<String, String> strings = new ConcurrentHashMap<>();
+  private final Map<String, Map<String, String>> hashes = new ConcurrentHashMap<>();
+  private final Map<String, Map<String, Double>> sortedSets = new ConcurrentHashMap<>();
+  private final Map<String, Long> expirySeconds = new ConcurrentHashMap<>();
+
+  // PostgreSQL 裡的資料
+  private final List<TodoEntity> table = new CopyOnWriteArrayList<>();
+
+  @SuppressWarnings("unchecked")
+  private RedisManager createStubRedisManager() {
+    return (RedisManager) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { RedisManager.class },
+        (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "get":
+              return strings.get((String) args[0]);
+            case "set":
+              strings.put((String) args[0], (String) args[1]);
+              return null;
+            case "setWithExpiry":
+              strings.put((String) args[0], (String) args[1]);
+              expirySeconds.put((String) args[0], (long) args[2]);
+              return null;
+            case "setIfAbsentWithExpiry":
+              return strings.putIfAbsent((String) args[0], (String) args[1]) == null;
+            case "increment":
+              long value = Long.parseLong(strings.getOrDefault((String) args[0], "0")) + 1;
+              strings.put((String) args[0], String.valueOf(value));
+              return value;
+            case "delete":
+              strings.remove(args[0]);
+              hashes.remove(args[0]);
+              sortedSets.remove(args[0]);
+              return null;
+            case "rename":
+              sortedSets.put((String) args[1], sortedSets.remove(args[0]));
+              return null;
+            case "hsetAll":
+              hashes.computeIfAbsent((String) args[0], k -> new ConcurrentHashMap<>())
+                  .putAll((Map<String, String>) args[1]);
+              return null;
+            case "hsetAllPipelined":
+              ((Map<String, Map<String, String>>) args[0]).forEach(
+                  (key, fields) -> hashes.computeIfAbsent(key, k -> new ConcurrentHashMap<>()).putAll(fields));
+              return null;
+            case "hmgetPipelined":
+              List<List<String>> values = new ArrayList<>();
+              for (String key : (List<String>) args[0]) {
+                Map<String, String> hash = hashes.getOrDefault(key, Map.of());
+                List<String> fieldValues = new ArrayList<>();
+                for (String field : (String[]) args[1]) {
+                  fieldValues.add(hash.get(field));
+                }
+                values.add(fieldValues);
+              }
+              return values;
+            case "zaddAll":
+              sortedSets.computeIfAbsent((String) args[0], k -> new ConcurrentHashMap<>())
+                  .putAll((Map<String, Double>) args[1]);
+              return null;
+            case "zrem":
+              Map<String, Double> sortedSet = sortedSets.get((String) args[0]);
+              for (String member : (String[]) args[1]) {
+                if (sortedSet != null) {
+                  sortedSet.remove(member);
+                }
+              }
+              return null;
+            case "zrange":
+              List<String> members = sorted((String) args[0], Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+              int start = (int) (long) args[1];
+              int stop = (int) Math.min((long) args[2], members.size() - 1);
+              return start > stop ? List.of() : members.subList(start, stop + 1);
+            case "zrangeByScore":
+              return sorted((String) args[0], (double) args[1], (double) args[2]).stream()
+                  .skip((long) args[3]).limit((long) args[4]).collect(Collectors.toList());
+            default:
+              throw new UnsupportedOperationException(method.getName());
+          }
+        });
+  }
+
+  private List<String> sorted(String key, double min, double max) {
+    return sortedSets.getOrDefault(key, Map.of()).entrySet().stream()
+        .filter(e -> e.getValue() >= min && e.getValue() <= max)
+        .sorted(Map.Entry.comparingByValue())
+        .map(Map.Entry::getKey)
+        .collect(Collectors.toList());
+  }
+
+  // rebuild 之後一小時內不會自動重建，測試自己呼叫 rebuild()；ready key 不會過期
+  private TodoRedisIndex createIndex(RedisManager redisManager) {
+    return new TodoRedisIndex(() -> redisManager, VERSION_KEY, writer -> {
+      for (TodoEntity todo : table) {
+        writer.write(todo);
+      }
+      return table.size();
+    }, true, 0, 3600, 0);
+  }
+
+  private static List<Integer> ids(List<TodoEntity> todos) {
+    return todos.stream().map(todo -> todo.id).collect(Collectors.toList());
+  }
+
+  @Test
+  public void testNotReadyTriggersBackgroundRebuild() throws Exception {
+    TodoRedisIndex index = createIndex(createStubRedisManager());
+    table.add(new TodoEntity(1, "a", "b", false));
+
+    assertNull(index.page(null, 10, 0));
+
+    List<TodoEntity> page = null;
+    long deadline = System.currentTimeMillis() + 5000;
+    while (page == null && System.currentTimeMillis() < deadline) {
+      Thread.sleep(50);
+      page = index.page(null, 10, 0);
+    }
+    assertNotNull(page);
+    assertEquals(List.of(1), ids(page));
+    assertFalse(strings.containsKey("todos:index:rebuild:lock"));
+  }
+
+  @Test
+  public void testOffsetAndKeysetPages() {
+    TodoRedisIndex index = createIndex(createStubRedisManager());
+    for (int id = 1; id <= 1200; id++) { // 超過一個 rebuild batch
+      table.add(new TodoEntity(id, "title " + id, "description " + id, id % 2 == 0));
+    }
+    assertTrue(index.rebuild());
+
+    assertEquals(List.of(11, 12, 13), ids(index.page(null, 3, 10)));
+    assertEquals(List.of(1001, 1002), ids(index.page(1000, 2, 0)));
+    assertEquals(List.of(), ids(index.page(1200, 10, 0)));
+
+    TodoEntity todo = index.page(1, 1, 0).get(0);
+    assertEquals("title 2", todo.title);
+    assertEquals("description 2", todo.description);
+    assertTrue(todo.completed);
+  }
+
+  @Test
+  public void testIncrementalUpdatesAndNullFields() {
+    TodoRedisIndex index = createIndex(createStubRedisManager());
+    table.add(new TodoEntity(1, "a", "b", false));
+    table.add(new TodoEntity(2, "c", "d", false));
+    assertTrue(index.rebuild());
+
+    index.put(new TodoEntity(3, null, "", true));
+    index.put(new TodoEntity(1, "a2", null, true));
+    index.remove(2);
+
+    List<TodoEntity> page = index.page(null, 10, 0);
+    assertEquals(List.of(1, 3), ids(page));
+    assertEquals("a2", page.get(0).title);
+    assertNull(page.get(0).description);
+    assertNull(page.get(1).title);
+    assertEquals("", page.get(1).description);
+    assertFalse(hashes.containsKey("todos:item:2"));
+  }
+
+  @Test
+  public void testMissingHashFallsBack() {
+    TodoRedisIndex index = createIndex(createStubRedisManager());
+    table.add(new TodoEntity(1, "a", "b", false));
+    assertTrue(index.rebuild());
+
+    hashes.remove("todos:item:1");
+    assertNull(index.page(null, 10, 0));
+    assertEquals(1L, (long) index.getMetrics().get("todos.index.inconsistent"));
+  }
+
+  @Test
+  public void testWritesDuringRebuildAreDetected() {
+    RedisManager redisManager = createStubRedisManager();
+    // 每次 export 都有一筆寫入，rebuild 一直重試之後放棄
+    TodoRedisIndex index = new TodoRedisIndex(() -> redisManager, VERSION_KEY, writer -> {
+      redisManager.increment(VERSION_KEY);
+      return 0;
+    }, true, 0, 0, 0);
+
+    assertFalse(index.rebuild());
+    assertNull(strings.get("todos:index:ready"));
+    assertEquals(3L, (long) index.getMetrics().get("todos.index.rebuild"));
+  }
+
+  // export 讀出 id 2 之後它被刪除：舊 snapshot 的 index 不能被 RENAME 成 INDEX_KEY
+  @Test
+  public void testDeleteDuringRebuildIsNotPublished() {
+    RedisManager redisManager = createStubRedisManager();
+    table.add(new TodoEntity(1, "a", "b", false));
+    table.add(new TodoEntity(2, "c", "d", false));
+    TodoRedisIndex[] index = new TodoRedisIndex[1];
+    int[] exports = { 0 };
+    index[0] = new TodoRedisIndex(() -> redisManager, VERSION_KEY, writer -> {
+      exports[0]++;
+      // 第二次 export 開始時，live index 裡不應該有已經刪除的 id 2
+      assertFalse(sortedSets.getOrDefault("todos:index", Map.of()).containsKey("2"));
+      List<TodoEntity> snapshot = new ArrayList<>(table);
+      for (TodoEntity todo : snapshot) {
+        writer.write(todo);
+      }
+      if (exports[0] == 1) {
+        // commit -> bump version -> remove
+        table.removeIf(todo -> todo.id == 2);
+        redisManager.increment(VERSION_KEY);
+        index[0].remove(2);
+      }
+      return snapshot.size();
+    }, true, 0, 3600, 0);
+
+    assertTrue(index[0].rebuild());
+    assertEquals(2, exports[0]);
+    assertEquals(List.of(1), ids(index[0].page(null, 10, 0)));
+  }
+
+  // rebuild 超過 lock TTL，lock 過期後被其他 instance 拿走：結束時不能刪掉別人的 lock
+  @Test
+  public void testRebuildOnlyReleasesItsOwnLock() {
+    RedisManager redisManager = createStubRedisManager();
+    TodoRedisIndex index = new TodoRedisIndex(() -> redisManager, VERSION_KEY, writer -> {
+      strings.put("todos:index:rebuild:lock", "other-instance");
+      return 0;
+    }, true, 0, 3600, 0);
+
+    assertTrue(index.rebuild());
+    assertEquals("other-instance", strings.get("todos:index:rebuild:lock"));
+  }
+
+  @Test
+  public void testInvalidate() {
+    TodoRedisIndex index = createIndex(createStubRedisManager());
+    table.add(new TodoEntity(1, "a", "b", false));
+    assertTrue(index.rebuild());
+    assertNotNull(index.page(null, 10, 0));
+
+    index.invalidate();
+    assertNull(index.page(null, 10, 0));
+  }
+
+  // /v1 直接寫 PostgreSQL，不經過 put/remove：ready key 過期之後改走 PostgreSQL，背景 rebuild 之後看得到這筆寫入
+  @Test
+  public void testReadyKeyExpiresSoOutOfBandWritesAreRebuilt() throws Exception {
+    RedisManager redisManager = createStubRedisManager();
+    TodoRedisIndex index = new TodoRedisIndex(() -> redisManager, VERSION_KEY, writer -> {
+      for (TodoEntity todo : table) {
+        writer.write(todo);
+      }
+      return table.size();
+    }, true, 0, 0, 60);
+    table.add(new TodoEntity(1, "a", "b", false));
+    assertTrue(index.rebuild());
+    assertEquals(60L, (long) expirySeconds.get("todos:index:ready"));
+
+    table.add(new TodoEntity(2, "c", "d", false));
+    assertEquals(List.of(1), ids(index.page(null, 10, 0)));
+
+    strings.remove("todos:index:ready"); // TTL 到期
+    List<TodoEntity> page = null;
+    long deadline = System.currentTimeMillis() + 5000;
+    while ((page == null || page.size() < 2) && System.currentTimeMillis() < deadline) {
+      Thread.sleep(50);
+      page = index.page(null, 10, 0);
+    }
+    assertNotNull(page);
+    assertEquals(List.of(1, 2), ids(page));
+  }
+}
@@ -0,0 +1,283 @@
+package todolist.repositories.postgresql;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import todolist.entities.TodoEntity;
+import todolist.utils.database.postgres.DatabaseManagerImplv5;
+import todolist.utils.database.redis.RedisManager;
+import todolist.utils.database.redis.RedisUnavailableException;
+
+public class TodoRepositoryWithRedisImplTest {
+  // PostgreSQL 裡的資料
+  private final Map<Integer, TodoEntity> table = new ConcurrentHashMap<>();
+
+  // in-memory 的 RedisManager；failing 裡的指令丟 RedisUnavailableException (circuit breaker open)
+  // hash / sorted set 只給 pagination index 使用
+  private final Map<String, Object> values = new ConcurrentHashMap<>();
+  private final Map<String, Map<String, String>> hashes = new ConcurrentHashMap<>();
+  private final Map<String, Map<String, Double>> sortedSets = new ConcurrentHashMap<>();
+  private final Map<String, List<Consumer<String>>> listeners = new ConcurrentHashMap<>();
+  private final Set<String> failing = ConcurrentHashMap.newKeySet();
+  // 每次 INCR (bump generation) 時 pool 裡被借出的 connection 數
+  private final List<Long> connectionsInUseAtIncrement = new CopyOnWriteArrayList<>();
+  private DatabaseManagerImplv5 databaseManager;
+  private TodoRedisIndex index;
+  // index.put / remove 寫入 Redis 之前執行
+  private volatile Runnable beforeIndexUpdate = () -> { };
+
+  @SuppressWarnings("unchecked")
+  private RedisManager createStubRedisManager() {
+    return (RedisManager) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { RedisManager.class },
+        (proxy, method, args) -> {
+          if (failing.contains(method.getName()) || failing.contains("*")) {
+            throw new RedisUnavailableException("Redis circuit breaker is open");
+          }
+          switch (method.getName()) {
+            case "get":
+            case "getValue":
+              return values.get((String) args[0]);
+            case "set":
+            case "setWithExpiry":
+            case "setValueWithExpiry":
+              values.put((String) args[0], args[1]);
+              return null;
+            case "offerSetValueWithExpiry":
+              values.put((String) args[0], args[1]);
+              return true;
+            case "setIfAbsentWithExpiry":
+              return values.putIfAbsent((String) args[0], args[1]) == null;
+            case "increment":
+              Map<String, Long> metrics = databaseManager.getMetrics();
+              connectionsInUseAtIncrement.add(metrics.get("connections.total") - metrics.get("connections.idle"));
+              long value = Long.parseLong((String) values.getOrDefault((String) args[0], "0")) + 1;
+              values.put((String) args[0], String.valueOf(value));
+              return value;
+            case "delete":
+              values.remove((String) args[0]);
+              hashes.remove((String) args[0]);
+              sortedSets.remove((String) args[0]);
+              return null;
+            case "rename":
+              sortedSets.put((String) args[1], sortedSets.remove((String) args[0]));
+              return null;
+            case "hsetAll":
+              beforeIndexUpdate.run();
+              hashes.computeIfAbsent((String) args[0], k -> new ConcurrentHashMap<>())
+                  .putAll((Map<String, String>) args[1]);
+              return null;
+            case "hsetAllPipelined":
+              ((Map<String, Map<String, String>>) args[0]).forEach(
+                  (key, fields) -> hashes.computeIfAbsent(key, k -> new ConcurrentHashMap<>()).putAll(fields));
+              return null;
+            case "hmgetPipelined":
+              List<List<String>> items = new ArrayList<>();
+              for (String key : (List<String>) args[0]) {
+                Map<String, String> hash = hashes.getOrDefault(key, Map.of());
+                List<String> fieldValues = new ArrayList<>();
+                for (String field : (String[]) args[1]) {
+                  fieldValues.add(hash.get(field));
+                }
+                items.add(fieldValues);
+              }
+              return items;
+            case "zaddAll":
+              sortedSets.computeIfAbsent((String) args[0], k -> new ConcurrentHashMap<>())
+                  .putAll((Map<String, Double>) args[1]);
+              return null;
+            case "zrange":
+              List<String> members = sortedSets.getOrDefault((String) args[0], Map.of()).entrySet().stream()
+                  .sorted(Map.Entry.comparingByValue()).map(Map.Entry::getKey).collect(Collectors.toList());
+              int start = (int) (long) args[1];
+              int stop = (int) Math.min((long) args[2], members.size() - 1);
+              return start > stop ? List.of() : members.subList(start, stop + 1);
+            case "subscribe":
+              listeners.computeIfAbsent((String) args[0], k -> new CopyOnWriteArrayList<>())
+                  .add((Consumer<String>) args[1]);
+              return null;
+            case "publish":
+              for (Consumer<String> listener : listeners.getOrDefault((String) args[0], List.of())) {
+                listener.accept((String) args[1]);
+              }
+              return null;
+            default:
+              throw new UnsupportedOperationException(method.getName());
+          }
+        });
+  }
+
+  // 只支援 repository 用到的 SELECT page 和 UPDATE ... RETURNING
+  private Connection createStubConnection() {
+    return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class },
+        (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "prepareStatement":
+              return createStubStatement((String) args[0]);
+            case "isValid":
+              return true;
+            case "isClosed":
+              return false;
+            case "hashCode":
+              return System.identityHashCode(proxy);
+            case "equals":
+              return proxy == args[0];
+            default:
+              return null;
+          }
+        });
+  }
+
+  private PreparedStatement createStubStatement(String sql) {
+    Map<Integer, Object> params = new HashMap<>();
+    return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+        new Class<?>[] { PreparedStatement.class }, (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "setInt":
+            case "setString":
+            case "setBoolean":
+              params.put((Integer) args[0], args[1]);
+              return null;
+            case "executeQuery":
+              if (sql.startsWith("UPDATE")) {
+                int id = (Integer) params.get(4);
+                TodoEntity updated = new TodoEntity(id, (String) params.get(1), (String) params.get(2),
+                    (Boolean) params.get(3));
+                table.replace(id, updated);
+                return createStubResultSet(List.of(updated));
+              }
+              List<TodoEntity> rows = new ArrayList<>(table.values());
+              rows.sort((a, b) -> Integer.compare(a.id, b.id));
+              int limit = (Integer) params.get(1);
+              int offset = (Integer) params.get(2);
+              return createStubResultSet(rows.subList(Math.min(offset, rows.size()),
+                  Math.min(offset + limit, rows.size())));
+            case "hashCode":
+              return System.identityHashCode(proxy);
+            case "equals":
+              return proxy == args[0];
+            default:
+              return null;
+          }
+        });
+  }
+
+  private ResultSet createStubResultSet(List<TodoEntity> rows) {
+    int[] cursor = { -1 };
+    return (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { ResultSet.class },
+        (proxy, method, args) -> {
+          TodoEntity row = cursor[0] >= 0 && cursor[0] < rows.size() ? rows.get(cursor[0]) : null;
+          switch (method.getName()) {
+            case "next":
+              return ++cursor[0] < rows.size();
+            case "getInt":
+              return row.id;
+            case "getString":
+              return "title".equals(args[0]) ? row.title : row.description;
+            case "getBoolean":
+              return row.completed;
+            default:
+              return null;
+          }
+        });
+  }
+
+  private TodoRepositoryWithRedisImpl createRepository() {
+    RedisManager redis = createStubRedisManager();
+    databaseManager = new DatabaseManagerImplv5(this::createStubConnection, 2, 1000, 30000);
+    // index 關閉，page 只經過 L1 near cache 和 Redis page cache
+    return new TodoRepositoryWithRedisImpl(databaseManager, () -> redis,
+        (versionKey, exporter) -> new TodoRedisIndex(() -> redis, versionKey, exporter, false, 0, 3600, 0),
+        60, 0, 5, 1 << 20, 2000);
+  }
+
+  // index 開啟，rebuild 直接讀 table；測試自己呼叫 rebuild()
+  private TodoRepositoryWithRedisImpl createRepositoryWithIndex() {
+    RedisManager redis = createStubRedisManager();
+    databaseManager = new DatabaseManagerImplv5(this::createStubConnection, 2, 1000, 30000);
+    return new TodoRepositoryWithRedisImpl(databaseManager, () -> redis, (versionKey, exporter) -> {
+      index = new TodoRedisIndex(() -> redis, versionKey, writer -> {
+        for (TodoEntity todo : table.values()) {
+          writer.write(todo);
+        }
+        return table.size();
+      }, true, 0, 3600, 0);
+      return index;
+    }, 60, 0, 5, 1 << 20, 2000);
+  }
+
+  private static String firstTitle(TodoPage page) {
+    return page.todos().get(0).title;
+  }
+
+  // circuit breaker open：寫入成功但 INCR 失敗，接下來的讀取不能用 L1 裡寫入前的 page
+  @Test
+  public void testWriteWhileRedisIsDownDoesNotServeStaleNearCachedPage() {
+    table.put(1, new TodoEntity(1, "before", "description", false));
+    TodoRepositoryWithRedisImpl repository = createRepository();
+    assertEquals("before", firstTitle(repository.getTodoPage(Map.of())));
+
+    failing.add("*");
+    assertTrue(repository.updateTodo(1, new TodoEntity(1, "after", "description", false)).isPresent());
+    assertEquals("after", firstTitle(repository.getTodoPage(Map.of())));
+
+    // Redis 恢復後補做 bump，舊 generation 的 page 不會再被讀到
+    failing.clear();
+    assertEquals("after", firstTitle(repository.getTodoPage(Map.of())));
+    assertEquals("1", values.get("todos:generation"));
+  }
+
+  // 只有 INCR 失敗，GET 還拿得到舊 generation：Redis 上舊 generation 的 page 也不能用
+  @Test
+  public void testFailedGenerationBumpBypassesCachedPages() {
+    table.put(1, new TodoEntity(1, "before", "description", false));
+    TodoRepositoryWithRedisImpl repository = createRepository();
+    assertEquals("before", firstTitle(repository.getTodoPage(Map.of())));
+
+    failing.add("increment");
+    assertTrue(repository.updateTodo(1, new TodoEntity(1, "after", "description", false)).isPresent());
+    assertEquals("after", firstTitle(repository.getTodoPage(Map.of())));
+    assertEquals("after", firstTitle(repository.getTodoPage(Map.of())));
+
+    failing.clear();
+    assertEquals("after", firstTitle(repository.getTodoPage(Map.of())));
+  }
+
+  // 寫入的 Redis round trip 在 DB connection 歸還之後才做，不佔住 pool
+  @Test
+  public void testWriteReleasesConnectionBeforeRefreshingCache() {
+    table.put(1, new TodoEntity(1, "before", "description", false));
+    TodoRepositoryWithRedisImpl repository = createRepository();
+
+    assertTrue(repository.updateTodo(1, new TodoEntity(1, "after", "description", false)).isPresent());
+    assertEquals(List.of(0L), connectionsInUseAtIncrement);
+  }
+
+  // 寫入時第一次 bump generation 之後、index 更新之前的讀取，會用新的 generation 讀到寫入前的 index page；
+  // 寫入完成之後這個 page 不能再從 near cache 讀到
+  @Test
+  public void testPageReadBeforeIndexUpdateIsNotServedAfterWrite() {
+    table.put(1, new TodoEntity(1, "before", "description", false));
+    TodoRepositoryWithRedisImpl repository = createRepositoryWithIndex();
+    assertTrue(index.rebuild());
+
+    beforeIndexUpdate = () -> assertEquals("before", firstTitle(repository.getTodoPage(Map.of())));
+    assertTrue(repository.updateTodo(1, new TodoEntity(1, "after", "description", false)).isPresent());
+    beforeIndexUpdate = () -> { };
+
+    assertEquals("after", firstTitle(repository.getTodoPage(Map.of())));
+    assertEquals(2L, (long) index.getMetrics().get("todos.index.hit")); // 兩次都從 index 組出 page
+  }
+}
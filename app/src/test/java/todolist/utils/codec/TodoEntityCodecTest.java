@@ -0,0 +1,78 @@
+package todolist.utils.codec;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import todolist.entities.TodoEntity;
+import todolist.utils.json.Json;
+
+public class TodoEntityCodecTest {
+  private static List<TodoEntity> createTodos(int count) {
+    List<TodoEntity> todos = new ArrayList<>();
+    for (int i = 1; i <= count; i++) {
+      todos.add(new TodoEntity(i, "Learn SQL " + i, "Understand the basics of SQL, part " + i, i % 2 == 0));
+    }
+    return todos;
+  }
+
+  private static void assertSameTodos(List<TodoEntity> expected, List<TodoEntity> actual) {
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i).id, actual.get(i).id);
+      assertEquals(expected.get(i).title, actual.get(i).title);
+      assertEquals(expected.get(i).description, actual.get(i).description);
+      assertEquals(expected.get(i).completed, actual.get(i).completed);
+    }
+  }
+
+  @Test
+  public void testRoundTripKeepsEveryField() {
+    List<TodoEntity> todos = List.of(
+        new TodoEntity(1, "Learn SQL", "Understand the basics of SQL", false),
+        new TodoEntity(-7, null, "", true),
+        new TodoEntity(Integer.MAX_VALUE, "學習 PostgreSQL 🐘", null, true),
+        new TodoEntity(Integer.MIN_VALUE, "", "説明", false));
+    TodoEntityCodec codec = new TodoEntityCodec(0);
+
+    assertSameTodos(todos, codec.decode(codec.encode(todos)));
+    assertTrue(codec.decode(codec.encode(List.of())).isEmpty());
+  }
+
+  @Test
+  public void testLargePayloadsAreCompressed() {
+    List<TodoEntity> todos = createTodos(100);
+    byte[] raw = new TodoEntityCodec(0).encode(todos);
+    byte[] compressed = TodoEntityCodec.INSTANCE.encode(todos);
+
+    assertTrue(compressed.length < raw.length, compressed.length + " >= " + raw.length);
+    assertSameTodos(todos, TodoEntityCodec.INSTANCE.decode(compressed));
+    // 比 JSON 小
+    assertTrue(raw.length < Json.toBytes(todos).length);
+    // 小於 threshold 不壓縮
+    List<TodoEntity> small = createTodos(1);
+    assertArrayEquals(new TodoEntityCodec(0).encode(small), TodoEntityCodec.INSTANCE.encode(small));
+  }
+
+  @Test
+  public void testOptionalCodec() {
+    ValueCodec<Optional<TodoEntity>> codec = TodoEntityCodec.INSTANCE.optional();
+    TodoEntity todo = new TodoEntity(42, "title", "description", true);
+
+    assertEquals(42, codec.decode(codec.encode(Optional.of(todo))).get().id);
+    assertFalse(codec.decode(codec.encode(Optional.empty())).isPresent());
+  }
+
+  @Test
+  public void testCorruptedPayloadsAreRejected() {
+    byte[] encoded = TodoEntityCodec.INSTANCE.encode(createTodos(100));
+    byte[] truncated = Arrays.copyOf(encoded, encoded.length / 2);
+
+    assertThrows(IllegalArgumentException.class, () -> TodoEntityCodec.INSTANCE.decode(new byte[0]));
+    assertThrows(IllegalArgumentException.class, () -> TodoEntityCodec.INSTANCE.decode("[]".getBytes()));
+    assertThrows(IllegalArgumentException.class, () -> TodoEntityCodec.INSTANCE.decode(truncated));
+  }
+}
@@ -0,0 +1,39 @@
+package todolist.utils.codec;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.List;
+import todolist.entities.TodoMongoEntity;
+
+public class TodoMongoEntityCodecTest {
+
+  @Test
+  public void testRoundTripKeepsEveryField() {
+    List<TodoMongoEntity> todos = List.of(
+        new TodoMongoEntity("65f0c0ffee0123456789abcd", "Learn MongoDB", "Understand documents", true),
+        new TodoMongoEntity(null, null, "", false),
+        new TodoMongoEntity("", "學習 MongoDB 🍃", null, true));
+    List<TodoMongoEntity> decoded = TodoMongoEntityCodec.INSTANCE.decode(TodoMongoEntityCodec.INSTANCE.encode(todos));
+
+    assertEquals(todos.size(), decoded.size());
+    for (int i = 0; i < todos.size(); i++) {
+      assertEquals(todos.get(i).id, decoded.get(i).id);
+      assertEquals(todos.get(i).title, decoded.get(i).title);
+      assertEquals(todos.get(i).description, decoded.get(i).description);
+      assertEquals(todos.get(i).completed, decoded.get(i).completed);
+    }
+    assertEquals(List.of(), TodoMongoEntityCodec.INSTANCE.decode(TodoMongoEntityCodec.INSTANCE.encode(List.of())));
+  }
+
+  @Test
+  public void testCorruptedPayloadsAreRejected() {
+    byte[] encoded = TodoMongoEntityCodec.INSTANCE.encode(List.of(new TodoMongoEntity("a", "b", "c", false)));
+    assertThrows(IllegalArgumentException.class, () -> TodoMongoEntityCodec.INSTANCE.decode(new byte[0]));
+    assertThrows(IllegalArgumentException.class,
+        () -> TodoMongoEntityCodec.INSTANCE.decode(Arrays.copyOf(encoded, encoded.length - 1)));
+    encoded[0] = 2; // TodoEntityCodec 的 deflate format 不適用於 response
+    assertThrows(IllegalArgumentException.class, () -> TodoMongoEntityCodec.INSTANCE.decode(encoded));
+  }
+}
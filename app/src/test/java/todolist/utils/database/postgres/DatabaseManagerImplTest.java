@@ -0,0 +1,216 @@
+package todolist.utils.database.postgres;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DatabaseManagerImplTest {
+  private final List<Connection> created = new CopyOnWriteArrayList<>();
+  private final AtomicInteger closedCount = new AtomicInteger();
+  private final AtomicInteger validationCount = new AtomicInteger();
+  private volatile boolean failValidation;
+  private volatile CountDownLatch validationGate; // 不是 null 時 isValid() 等到 countDown 才返回
+
+  // 不需要 Postgres 的 stub connection; failValidation 時 isValid() 丟出 SQLException
+  private Connection createStubConnection() {
+    String id = "stub-" + (created.size() + 1);
+    boolean[] closed = new boolean[1];
+    Connection connection = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+        new Class<?>[] { Connection.class },
+        (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "isValid":
+              validationCount.incrementAndGet();
+              CountDownLatch gate = validationGate;
+              if (gate != null) {
+                gate.await(5, TimeUnit.SECONDS);
+              }
+              if (failValidation) {
+                throw new SQLException("validation failed");
+              }
+              return true;
+            case "isClosed":
+              return closed[0];
+            case "close":
+              if (!closed[0]) {
+                closed[0] = true;
+                closedCount.incrementAndGet();
+              }
+              return null;
+            case "getSchema":
+            case "toString":
+              return id;
+            case "hashCode":
+              return System.identityHashCode(proxy);
+            case "equals":
+              return proxy == args[0];
+            default:
+              return null;
+          }
+        });
+    created.add(connection);
+    return connection;
+  }
+
+  private static void awaitWaiting(DatabaseManagerImpl pool, long waiting) throws InterruptedException {
+    while ((long) pool.getMetrics().get("borrow.waiting") < waiting) {
+      Thread.sleep(1);
+    }
+  }
+
+  @Test
+  public void testBorrowWaitsUntilDeadlineThenTimesOut() throws Exception {
+    DatabaseManagerImpl pool = new DatabaseManagerImpl(this::createStubConnection, 1, 200, 30000);
+    DatabaseConnection first = pool.getConnection();
+
+    long start = System.nanoTime();
+    assertThrows(SQLTransientConnectionException.class, pool::getConnection);
+    long waitedMs = (System.nanoTime() - start) / 1_000_000;
+    assertTrue(waitedMs >= 200, "gave up after " + waitedMs + "ms");
+
+    // 兩次借用 (一次成功、一次 timeout) 都記錄在 histogram, timeout 那次至少等了 200ms
+    Map<String, Long> metrics = pool.getMetrics();
+    assertEquals(1L, (long) metrics.get("borrow.timeout"));
+    assertEquals(2L, (long) metrics.get("borrow.wait.us.count"));
+    assertTrue(metrics.get("borrow.wait.us.max") >= 200_000);
+    assertEquals(1L, (long) metrics.get("connections.used"));
+
+    // timeout 不會佔住名額, 歸還之後可以馬上借到
+    first.close();
+    try (DatabaseConnection again = pool.getConnection()) {
+      assertEquals("stub-1", again.getSchema());
+    }
+    assertEquals(1, created.size());
+    pool.shutdown();
+  }
+
+  @Test
+  public void testReleasedConnectionIsHandedToWaitersInFifoOrder() throws Exception {
+    DatabaseManagerImpl pool = new DatabaseManagerImpl(this::createStubConnection, 1, 5000, 30000);
+    DatabaseConnection first = pool.getConnection();
+    List<String> order = new CopyOnWriteArrayList<>();
+
+    Thread a = Thread.ofPlatform().start(() -> borrowAndRecord(pool, "a", order));
+    awaitWaiting(pool, 1);
+    Thread b = Thread.ofPlatform().start(() -> borrowAndRecord(pool, "b", order));
+    awaitWaiting(pool, 2);
+
+    first.close();
+    a.join(5000);
+    b.join(5000);
+    assertEquals(List.of("a", "b"), order);
+    assertEquals(1, created.size());
+    assertEquals(0L, (long) pool.getMetrics().get("borrow.timeout"));
+    pool.shutdown();
+  }
+
+  private static void borrowAndRecord(DatabaseManagerImpl pool, String name, List<String> order) {
+    try (DatabaseConnection connection = pool.getConnection()) {
+      order.add(name);
+    } catch (SQLException e) {
+      order.add(name + ":" + e.getMessage());
+    }
+  }
+
+  @Test
+  public void testConnectionThatFailsValidationIsClosed() throws Exception {
+    DatabaseManagerImpl pool = new DatabaseManagerImpl(this::createStubConnection, 1, 1000, 30000);
+    DatabaseConnection first = pool.getConnection();
+    pool.reportSqlError(created.get(0)); // 下次借出前一定要驗證
+    first.close();
+
+    failValidation = true;
+    try (DatabaseConnection connection = pool.getConnection()) {
+      assertEquals("stub-2", connection.getSchema());
+    }
+    assertEquals(1, closedCount.get());
+    assertEquals(1L, (long) pool.getMetrics().get("validation.failed"));
+    pool.shutdown();
+  }
+
+  @Test
+  public void testKeepaliveValidatesOutsideTheLock() throws Exception {
+    DatabaseManagerImpl pool = new DatabaseManagerImpl(this::createStubConnection, 2, 1000, 0);
+    pool.getConnection().close();
+    Thread.sleep(5); // 閒置超過 validationIntervalMs (0)
+
+    // keepalive 的 isValid() 卡住時, 借用和歸還不會被擋住
+    validationGate = new CountDownLatch(1);
+    Thread keepalive = Thread.ofPlatform().start(pool::checkIdleConnections);
+    while (validationCount.get() == 0) {
+      Thread.sleep(1);
+    }
+    List<String> borrowed = new CopyOnWriteArrayList<>();
+    Thread borrower = Thread.ofPlatform().start(() -> borrowAndRecord(pool, "borrowed", borrowed));
+    borrower.join(1000);
+    assertFalse(borrower.isAlive(), "borrow blocked by keepalive");
+    assertEquals(List.of("borrowed"), borrowed);
+    assertEquals(2, created.size()); // 驗證中的連線不在 pool 裡, 借用的人建立了新連線
+
+    validationGate.countDown();
+    keepalive.join(5000);
+    assertEquals(1L, (long) pool.getMetrics().get("validation.keepalive"));
+    assertEquals(2, pool.getPoolSize()); // 通過驗證的連線放回 pool
+    assertEquals(0, closedCount.get());
+    pool.shutdown();
+  }
+
+  @Test
+  public void testKeepaliveClosesConnectionsThatFailValidation() throws Exception {
+    DatabaseManagerImpl pool = new DatabaseManagerImpl(this::createStubConnection, 2, 1000, 0);
+    pool.getConnection().close();
+    Thread.sleep(5);
+
+    failValidation = true;
+    pool.checkIdleConnections();
+    assertEquals(0, pool.getPoolSize());
+    assertEquals(1, closedCount.get());
+    pool.shutdown();
+  }
+
+  @Test
+  public void testRecentlyUsedConnectionSkipsValidation() throws Exception {
+    DatabaseManagerImpl pool = new DatabaseManagerImpl(this::createStubConnection, 1, 1000, 30000);
+    for (int i = 0; i < 5; i++) {
+      try (DatabaseConnection connection = pool.getConnection()) {
+        assertEquals("stub-1", connection.getSchema());
+      }
+    }
+    // 剛建立和剛歸還的連線都在 validationIntervalMs 之內, 不需要 isValid() round trip
+    assertEquals(0, validationCount.get());
+    assertEquals(0L, (long) pool.getMetrics().get("validation.performed"));
+    assertEquals(4L, (long) pool.getMetrics().get("validation.skipped"));
+    pool.shutdown();
+  }
+
+  @Test
+  public void testReportedSqlErrorForcesValidationOnNextBorrow() throws Exception {
+    DatabaseManagerImpl pool = new DatabaseManagerImpl(this::createStubConnection, 1, 1000, 30000);
+    try (DatabaseConnection connection = pool.getConnection()) {
+      pool.reportSqlError(created.get(0));
+    }
+
+    try (DatabaseConnection connection = pool.getConnection()) {
+      assertEquals("stub-1", connection.getSchema()); // 驗證通過, 繼續使用同一條連線
+    }
+    assertEquals(1, validationCount.get());
+    assertEquals(1L, (long) pool.getMetrics().get("validation.performed"));
+
+    // 驗證通過之後不再是 suspect, 下一次借出又可以略過驗證
+    try (DatabaseConnection connection = pool.getConnection()) {
+      assertEquals("stub-1", connection.getSchema());
+    }
+    assertEquals(1, validationCount.get());
+    pool.shutdown();
+  }
+}
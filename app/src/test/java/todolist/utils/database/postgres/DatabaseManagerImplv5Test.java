@@ -0,0 +1,127 @@
+package todolist.utils.database.postgres;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DatabaseManagerImplv5Test {
+  private final AtomicInteger createdCount = new AtomicInteger();
+
+  // 不需要 Postgres 的 stub connection, getSchema() 回傳連線編號用來辨識是哪一條
+  private Connection createStubConnection() {
+    String id = "stub-" + createdCount.incrementAndGet();
+    return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class },
+        (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "isValid":
+              return true;
+            case "isClosed":
+              return false;
+            case "getSchema":
+            case "toString":
+              return id;
+            case "hashCode":
+              return System.identityHashCode(proxy);
+            case "equals":
+              return proxy == args[0];
+            default:
+              return null;
+          }
+        });
+  }
+
+  @Test
+  public void testConcurrentBorrowersNeverShareAConnection() throws Exception {
+    DatabaseManagerImplv5 pool = new DatabaseManagerImplv5(this::createStubConnection, 10, 5000, 30000);
+    Map<String, Boolean> inUse = new ConcurrentHashMap<>();
+    AtomicInteger violations = new AtomicInteger();
+
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0; i < 64; i++) {
+      threads.add(Thread.ofPlatform().start(() -> {
+        for (int j = 0; j < 500; j++) {
+          try (DatabaseConnection connection = pool.getConnection()) {
+            String id = connection.getSchema();
+            if (inUse.putIfAbsent(id, true) != null) {
+              violations.incrementAndGet();
+            }
+            inUse.remove(id);
+          } catch (Exception e) {
+            violations.incrementAndGet();
+          }
+        }
+      }));
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(0, violations.get());
+    assertTrue(createdCount.get() <= 10);
+    assertEquals((long) createdCount.get(), (long) pool.getMetrics().get("connections.total"));
+    assertEquals(createdCount.get(), pool.getPoolSize());
+    pool.shutdown();
+  }
+
+  @Test
+  public void testBorrowTimesOutAndHandsOffOnRelease() throws Exception {
+    DatabaseManagerImplv5 pool = new DatabaseManagerImplv5(this::createStubConnection, 1, 100, 30000);
+    DatabaseConnection first = pool.getConnection();
+    assertThrows(SQLTransientConnectionException.class, pool::getConnection);
+    assertEquals(1L, (long) pool.getMetrics().get("borrow.timeout"));
+
+    // 等待中的 thread 應該直接拿到被歸還的連線
+    CountDownLatch borrowed = new CountDownLatch(1);
+    Thread waiter = Thread.ofPlatform().start(() -> {
+      try (DatabaseConnection connection = pool.getConnection()) {
+        borrowed.countDown();
+      } catch (Exception e) {
+        e.printStackTrace();
+      }
+    });
+    while ((long) pool.getMetrics().get("borrow.waiting") == 0) {
+      Thread.sleep(1);
+    }
+    first.close();
+    waiter.join();
+    assertEquals(0, borrowed.getCount());
+    assertEquals(1, createdCount.get());
+
+    // 重複歸還不會讓同一條連線被借出兩次
+    first.close();
+    assertEquals(1, pool.getPoolSize());
+    pool.shutdown();
+  }
+
+  @Test
+  public void testClosingTwiceAfterReborrowDoesNotReleaseTheNewLease() throws Exception {
+    DatabaseManagerImplv5 pool = new DatabaseManagerImplv5(this::createStubConnection, 1, 100, 30000);
+    DatabaseConnection first = pool.getConnection();
+    first.close();
+
+    // 同一條連線借給下一個 caller 之後, 舊的 wrapper 再 close 一次
+    DatabaseConnection second = pool.getConnection();
+    assertEquals("stub-1", second.getSchema());
+    first.close();
+
+    // 連線仍然屬於 second, 不能再被借出
+    assertThrows(SQLTransientConnectionException.class, pool::getConnection);
+    assertEquals(0, pool.getPoolSize());
+
+    second.close();
+    try (DatabaseConnection third = pool.getConnection()) {
+      assertEquals("stub-1", third.getSchema());
+    }
+    assertEquals(1, createdCount.get());
+    pool.shutdown();
+  }
+}
@@ -0,0 +1,167 @@
+package todolist.utils.database.postgres;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class PreparedStatementCacheTest {
+  // stub connection 建立的所有 PreparedStatement, 用來確認是否真的被重用 / 關閉
+  private final List<PreparedStatement> prepared = new ArrayList<>();
+  private final List<PreparedStatement> closed = new ArrayList<>();
+
+  private PreparedStatement createStubStatement(String sql) {
+    PreparedStatement[] self = new PreparedStatement[1];
+    // setFetchSize(n) 之類的設定, getter 沒設定過時回傳 0
+    Map<String, Object> settings = new HashMap<>();
+    self[0] = (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+        new Class<?>[] { PreparedStatement.class }, (proxy, method, args) -> {
+          String name = method.getName();
+          if (name.startsWith("set") && (name.endsWith("Size") || name.equals("setMaxRows"))) {
+            settings.put(name.substring(3), args[0]);
+            return null;
+          }
+          if (name.startsWith("get") && (name.endsWith("Size") || name.equals("getMaxRows"))) {
+            return settings.getOrDefault(name.substring(3), 0);
+          }
+          switch (name) {
+            case "close":
+              closed.add(self[0]);
+              return null;
+            case "isClosed":
+              return closed.contains(self[0]);
+            case "executeUpdate":
+              if (sql.startsWith("BROKEN")) {
+                throw new SQLException("syntax error");
+              }
+              return 1;
+            case "hashCode":
+              return System.identityHashCode(proxy);
+            case "equals":
+              return proxy == args[0];
+            default:
+              return null;
+          }
+        });
+    prepared.add(self[0]);
+    return self[0];
+  }
+
+  private Connection createStubConnection() {
+    return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class },
+        (proxy, method, args) -> {
+          switch (method.getName()) {
+            case "prepareStatement":
+              return createStubStatement((String) args[0]);
+            case "isValid":
+              return true;
+            case "isClosed":
+              return false;
+            case "hashCode":
+              return System.identityHashCode(proxy);
+            case "equals":
+              return proxy == args[0];
+            default:
+              return null;
+          }
+        });
+  }
+
+  @Test
+  public void testStatementSurvivesConnectionClose() throws Exception {
+    DatabaseManagerImplv5 pool = new DatabaseManagerImplv5(this::createStubConnection, 1, 1000, 30000);
+
+    for (int i = 0; i < 3; i++) {
+      try (DatabaseConnection connection = pool.getConnection();
+          PreparedStatement pstmt = connection.prepareStatement("SELECT * FROM todos WHERE id = ?")) {
+        pstmt.setInt(1, i);
+        assertEquals(1, pstmt.executeUpdate());
+      }
+    }
+
+    // 同一條連線上三次 prepare 只建立一個實體 statement, 而且沒有被關閉
+    assertEquals(1, prepared.size());
+    assertTrue(closed.isEmpty());
+    assertEquals(2L, (long) pool.getMetrics().get("statement.cache.hit"));
+    assertEquals(1L, (long) pool.getMetrics().get("statement.cache.size"));
+
+    // pool 關閉實體連線時一起關閉 cached statement
+    pool.shutdown();
+    assertEquals(prepared, closed);
+  }
+
+  @Test
+  public void testConcurrentSameSqlAndFailedStatementsAreNotShared() throws Exception {
+    DatabaseManagerImplv5 pool = new DatabaseManagerImplv5(this::createStubConnection, 1, 1000, 30000);
+
+    try (DatabaseConnection connection = pool.getConnection();
+        PreparedStatement first = connection.prepareStatement("SELECT 1");
+        PreparedStatement second = connection.prepareStatement("SELECT 1")) {
+      assertEquals(2, prepared.size());
+    }
+    // 沒走 cache 的第二個 statement 會真的被關閉
+    assertEquals(1, closed.size());
+
+    try (DatabaseConnection connection = pool.getConnection();
+        PreparedStatement broken = connection.prepareStatement("BROKEN SQL")) {
+      assertThrows(SQLException.class, broken::executeUpdate);
+    }
+    // 執行失敗的 statement 不會留在 cache
+    assertEquals(2, closed.size());
+    try (DatabaseConnection connection = pool.getConnection();
+        PreparedStatement retry = connection.prepareStatement("BROKEN SQL")) {
+      assertEquals(4, prepared.size());
+    }
+    pool.shutdown();
+  }
+
+  @Test
+  public void testChangedSettingsAreResetOnRelease() throws Exception {
+    DatabaseManagerImplv5 pool = new DatabaseManagerImplv5(this::createStubConnection, 1, 1000, 30000);
+
+    try (DatabaseConnection connection = pool.getConnection();
+        PreparedStatement pstmt = connection.prepareStatement("SELECT * FROM todos")) {
+      pstmt.setFetchSize(500);
+      pstmt.setMaxRows(10);
+      assertEquals(500, pstmt.getFetchSize());
+    }
+    // 下一個借用者拿到同一個 statement, 但設定已經恢復
+    try (DatabaseConnection connection = pool.getConnection();
+        PreparedStatement pstmt = connection.prepareStatement("SELECT * FROM todos")) {
+      assertEquals(1, prepared.size());
+      assertEquals(0, pstmt.getFetchSize());
+      assertEquals(0, pstmt.getMaxRows());
+      pstmt.setCursorName("export");
+    }
+    // 無法恢復的設定: 歸還時關閉, 不再重用
+    assertEquals(prepared, closed);
+    pool.shutdown();
+  }
+
+  @Test
+  public void testMetricsArePerPool() throws Exception {
+    DatabaseManagerImplv5 first = new DatabaseManagerImplv5(this::createStubConnection, 1, 1000, 30000);
+    DatabaseManagerImplv5 second = new DatabaseManagerImplv5(this::createStubConnection, 1, 1000, 30000);
+
+    for (int i = 0; i < 3; i++) {
+      try (DatabaseConnection connection = first.getConnection();
+          PreparedStatement pstmt = connection.prepareStatement("SELECT 1")) {
+        pstmt.executeUpdate();
+      }
+    }
+    assertEquals(1L, (long) first.getMetrics().get("statement.cache.miss"));
+    assertEquals(2L, (long) first.getMetrics().get("statement.cache.hit"));
+    assertEquals(0L, (long) second.getMetrics().get("statement.cache.miss"));
+    assertEquals(0L, (long) second.getMetrics().get("statement.cache.hit"));
+    assertEquals(0L, (long) second.getMetrics().get("statement.cache.size"));
+    first.shutdown();
+    second.shutdown();
+  }
+}
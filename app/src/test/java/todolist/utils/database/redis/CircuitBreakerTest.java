@@ -0,0 +1,88 @@
+package todolist.utils.database.redis;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class CircuitBreakerTest {
+  private static final long OPEN_MS = 1000;
+  private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+  private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(500);
+
+  private final AtomicLong now = new AtomicLong(10_000);
+
+  private CircuitBreaker newBreaker() {
+    return new CircuitBreaker("test", 3, OPEN_MS, 100, now::get);
+  }
+
+  @Test
+  public void testOpensAfterConsecutiveFailures() {
+    CircuitBreaker breaker = newBreaker();
+    breaker.onFailure();
+    breaker.onFailure();
+    breaker.onSuccess(FAST); // 成功會重新計算連續失敗次數
+    breaker.onFailure();
+    breaker.onFailure();
+    assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+    breaker.onFailure();
+    assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    assertFalse(breaker.tryAcquire());
+    assertEquals(1L, (long) breaker.getMetrics().get("test.breaker.opened"));
+    assertEquals(1L, (long) breaker.getMetrics().get("test.breaker.rejected"));
+  }
+
+  @Test
+  public void testSlowCallsCountAsFailures() {
+    CircuitBreaker breaker = newBreaker();
+    for (int i = 0; i < 3; i++) {
+      assertTrue(breaker.tryAcquire());
+      breaker.onSuccess(SLOW);
+    }
+    assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    assertEquals(3L, (long) breaker.getMetrics().get("test.breaker.slow"));
+  }
+
+  @Test
+  public void testHalfOpenAllowsSingleProbe() {
+    CircuitBreaker breaker = newBreaker();
+    for (int i = 0; i < 3; i++) {
+      breaker.onFailure();
+    }
+
+    now.addAndGet(OPEN_MS - 1);
+    assertFalse(breaker.tryAcquire());
+
+    now.addAndGet(1);
+    assertTrue(breaker.tryAcquire()); // probe
+    assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+    assertFalse(breaker.tryAcquire()); // probe 還沒結束，其他指令繼續 bypass
+
+    breaker.onSuccess(FAST);
+    assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    assertTrue(breaker.tryAcquire());
+  }
+
+  @Test
+  public void testFailedProbeReopens() {
+    CircuitBreaker breaker = newBreaker();
+    for (int i = 0; i < 3; i++) {
+      breaker.onFailure();
+    }
+
+    now.addAndGet(OPEN_MS);
+    assertTrue(breaker.tryAcquire());
+    breaker.onFailure();
+    assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+    // 重新計時
+    now.addAndGet(OPEN_MS - 1);
+    assertFalse(breaker.tryAcquire());
+    now.addAndGet(1);
+    assertTrue(breaker.tryAcquire());
+    assertEquals(2L, (long) breaker.getMetrics().get("test.breaker.opened"));
+    assertEquals(2L, (long) breaker.getMetrics().get("test.breaker.probe"));
+  }
+}
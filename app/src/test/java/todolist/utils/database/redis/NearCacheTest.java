@@ -0,0 +1,125 @@
+package todolist.utils.database.redis;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+public class NearCacheTest {
+  // 只實作 publish / subscribe 的 RedisManager，publish 直接轉給同一個 process 裡的 subscriber
+  private final Map<String, List<Consumer<String>>> subscribers = new HashMap<>();
+  private final List<String> published = new ArrayList<>();
+
+  @SuppressWarnings("unchecked")
+  private RedisManager createStubRedisManager(boolean available) {
+    return (RedisManager) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { RedisManager.class },
+        (proxy, method, args) -> {
+          if (!available) {
+            throw new IllegalStateException("Redis is down");
+          }
+          switch (method.getName()) {
+            case "subscribe":
+              subscribers.computeIfAbsent((String) args[0], c -> new ArrayList<>()).add((Consumer<String>) args[1]);
+              return null;
+            case "publish":
+              published.add((String) args[1]);
+              subscribers.getOrDefault((String) args[0], List.of()).forEach(l -> l.accept((String) args[1]));
+              return null;
+            default:
+              throw new UnsupportedOperationException(method.getName());
+          }
+        });
+  }
+
+  @Test
+  public void testHitAndExpiry() throws Exception {
+    RedisManager redisManager = createStubRedisManager(true);
+    NearCache<String> cache = new NearCache<>("test", () -> redisManager, 1024);
+
+    assertNull(cache.get("a"));
+    cache.put("a", "value-a", 10, 50);
+    assertEquals("value-a", cache.get("a"));
+
+    Thread.sleep(80);
+    assertNull(cache.get("a"));
+    assertEquals(1L, (long) cache.getMetrics().get("test.near.hit"));
+    assertEquals(2L, (long) cache.getMetrics().get("test.near.miss"));
+  }
+
+  @Test
+  public void testWeightBoundEvictsLeastRecentlyUsed() {
+    RedisManager redisManager = createStubRedisManager(true);
+    NearCache<String> cache = new NearCache<>("test", () -> redisManager, 100);
+
+    for (String key : List.of("a", "b", "c")) {
+      cache.get(key);
+    }
+    cache.put("a", "a", 40, 60000);
+    cache.put("b", "b", 40, 60000);
+    cache.get("a"); // b 變成最久沒用的
+    cache.get("c");
+    cache.get("c");
+    cache.put("c", "c", 40, 60000);
+
+    assertEquals("a", cache.get("a"));
+    assertNull(cache.get("b"));
+    assertEquals("c", cache.get("c"));
+    assertEquals(80L, (long) cache.getMetrics().get("test.near.weight"));
+    assertEquals(1L, (long) cache.getMetrics().get("test.near.eviction"));
+
+    // 超過 maxWeight 的 entry 直接不收
+    cache.put("huge", "huge", 101, 60000);
+    assertNull(cache.get("huge"));
+  }
+
+  @Test
+  public void testFrequencyAdmissionKeepsHotEntries() {
+    RedisManager redisManager = createStubRedisManager(true);
+    NearCache<String> cache = new NearCache<>("test", () -> redisManager, 100);
+
+    cache.put("hot", "hot", 100, 60000);
+    for (int i = 0; i < 10; i++) {
+      assertEquals("hot", cache.get("hot"));
+    }
+
+    // 一次性的掃描不會把熱門 entry 擠掉
+    for (int i = 0; i < 50; i++) {
+      String key = "scan-" + i;
+      assertNull(cache.get(key));
+      cache.put(key, key, 100, 60000);
+    }
+    assertEquals("hot", cache.get("hot"));
+    assertEquals(50L, (long) cache.getMetrics().get("test.near.rejected"));
+  }
+
+  @Test
+  public void testInvalidateIsBroadcast() {
+    RedisManager redisManager = createStubRedisManager(true);
+    NearCache<String> local = new NearCache<>("test", () -> redisManager, 1024);
+    NearCache<String> remote = new NearCache<>("test", () -> redisManager, 1024);
+
+    local.put("a", "a", 1, 60000);
+    remote.put("a", "a", 1, 60000);
+    local.invalidate("a");
+
+    assertEquals(List.of("a"), published);
+    assertNull(local.get("a"));
+    assertNull(remote.get("a"));
+    assertEquals(1L, (long) remote.getMetrics().get("test.near.invalidation"));
+  }
+
+  @Test
+  public void testDisabledWhenSubscribeFails() {
+    RedisManager redisManager = createStubRedisManager(false);
+    NearCache<String> cache = new NearCache<>("test", () -> redisManager, 1024);
+
+    cache.put("a", "a", 1, 60000);
+    assertNull(cache.get("a"));
+    assertEquals(0L, (long) cache.getMetrics().get("test.near.size"));
+  }
+}
@@ -0,0 +1,70 @@
+package todolist.utils.database.redis;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SingleFlightTest {
+  private static final int CALLERS = 32;
+
+  @Test
+  public void testConcurrentCallersShareOneLoad() throws Exception {
+    SingleFlight<String> singleFlight = new SingleFlight<>("test");
+    AtomicInteger loads = new AtomicInteger();
+    CountDownLatch release = new CountDownLatch(1);
+
+    ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+    try {
+      List<Future<String>> results = new ArrayList<>();
+      for (int i = 0; i < CALLERS; i++) {
+        results.add(executor.submit(() -> singleFlight.load("todos:page:1", () -> {
+          loads.incrementAndGet();
+          try {
+            release.await(5, TimeUnit.SECONDS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          return "page-1";
+        })));
+      }
+
+      // 等所有 caller 都進來之後再讓 loader 完成
+      long deadline = System.currentTimeMillis() + 5000;
+      while (singleFlight.getMetrics().get("test.singleflight.coalesced") < CALLERS - 1
+          && System.currentTimeMillis() < deadline) {
+        Thread.sleep(5);
+      }
+      release.countDown();
+
+      for (Future<String> result : results) {
+        assertEquals("page-1", result.get(5, TimeUnit.SECONDS));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertEquals(1, loads.get());
+    assertEquals(0L, (long) singleFlight.getMetrics().get("test.singleflight.inflight"));
+
+    // 結束後的 caller 會重新載入
+    assertEquals("page-1-again", singleFlight.load("todos:page:1", () -> "page-1-again"));
+  }
+
+  @Test
+  public void testLoaderFailureIsSharedAndNotCached() {
+    SingleFlight<String> singleFlight = new SingleFlight<>("test");
+
+    assertThrows(IllegalStateException.class, () -> singleFlight.load("key", () -> {
+      throw new IllegalStateException("Redis is down");
+    }));
+    assertEquals("value", singleFlight.load("key", () -> "value"));
+  }
+}
@@ -0,0 +1,148 @@
+package todolist.utils.json;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.google.gson.Gson;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import todolist.entities.TodoEntity;
+import todolist.entities.TodoKafkaEntity;
+import todolist.entities.TodoMongoEntity;
+
+public class JsonTest {
+  // 沒有註冊 adapter 的 Gson，手寫 adapter 的輸出和 decode 結果要跟它一樣
+  private final Gson reflective = new Gson();
+
+  private static InputStream stream(String json) {
+    return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testEncodeMatchesReflectiveAdapter() throws Exception {
+    List<Object> values = List.of(
+        new TodoEntity(1, "Learn SQL", "Understand the basics of SQL", false),
+        new TodoEntity(-7, null, "<b>&'\"</b>", true),
+        new TodoEntity(Integer.MAX_VALUE, "學習 PostgreSQL 🐘", null, true),
+        new TodoMongoEntity("65f0c0ffee", "Mongo", null, true),
+        new TodoMongoEntity(null, null, null, false),
+        new TodoKafkaEntity("k-1", "Kafka  ", "topic", Integer.MIN_VALUE),
+        Map.of("message", "Not found"));
+    for (Object value : values) {
+      byte[] expected = reflective.toJson(value).getBytes(StandardCharsets.UTF_8);
+      assertArrayEquals(expected, Json.toBytes(value));
+
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      Json.toStream(value, out);
+      assertArrayEquals(expected, out.toByteArray());
+    }
+
+    List<TodoEntity> todos = new ArrayList<>();
+    for (int i = 0; i < 2000; i++) { // 超過 Utf8StreamWriter 的 buffer
+      todos.add(new TodoEntity(i, "待辦 " + i, i % 3 == 0 ? null : "😀 " + i, i % 2 == 0));
+    }
+    assertArrayEquals(reflective.toJson(todos).getBytes(StandardCharsets.UTF_8), Json.toBytes(todos));
+    assertArrayEquals("null".getBytes(StandardCharsets.UTF_8), Json.toBytes(null));
+  }
+
+  @Test
+  public void testDecodeAcceptsSameInputsAsReflectiveAdapter() {
+    String[] inputs = {
+        "{\"id\":3,\"title\":\"a\",\"description\":\"b\",\"completed\":true}",
+        "{\"completed\":true,\"unknown\":{\"nested\":[1,2]},\"title\":\"中文\"}",
+        "{\"id\":\"42\",\"title\":7,\"description\":false,\"completed\":\"true\"}",
+        "{\"id\":null,\"title\":null,\"completed\":null}",
+        "{}",
+    };
+    for (String input : inputs) {
+      TodoEntity expected = reflective.fromJson(input, TodoEntity.class);
+      for (TodoEntity actual : Arrays.asList(Json.fromJSON(input, TodoEntity.class),
+          Json.fromJSON(stream(input), TodoEntity.class))) {
+        assertEquals(expected.id, actual.id, input);
+        assertEquals(expected.title, actual.title, input);
+        assertEquals(expected.description, actual.description, input);
+        assertEquals(expected.completed, actual.completed, input);
+      }
+    }
+
+    TodoKafkaEntity kafka = Json.fromJSON("{\"id\":12,\"price\":\"99\",\"title\":\"t\"}", TodoKafkaEntity.class);
+    assertEquals("12", kafka.id);
+    assertEquals(99, kafka.price);
+    assertEquals("t", kafka.title);
+
+    TodoMongoEntity mongo = Json.fromJSON(stream("{\"id\":\"abc\",\"completed\":true}"), TodoMongoEntity.class);
+    assertEquals("abc", mongo.id);
+    assertTrue(mongo.completed);
+  }
+
+  @Test
+  public void testDecodeStreamAcrossBufferBoundaries() {
+    StringBuilder title = new StringBuilder();
+    for (int i = 0; i < 3000; i++) { // 3 / 4 bytes 的 sequence 會跨過 Utf8StreamReader 的 buffer 邊界
+      title.append("中😀é");
+    }
+    String json = "{\"id\":9,\"title\":\"" + title + "\"}";
+    assertEquals(title.toString(), Json.fromJSON(stream(json), TodoEntity.class).title);
+
+    // 不合法的 UTF-8 跟 new String(bytes, UTF_8) 一樣換成 U+FFFD
+    byte[] malformed = { '{', '"', 't', 'i', 't', 'l', 'e', '"', ':', '"', 'a', (byte) 0xE4, (byte) 0xB8, 'b',
+        (byte) 0xFF, '"', '}' };
+    assertEquals(reflective.fromJson(new String(malformed, StandardCharsets.UTF_8), TodoEntity.class).title,
+        Json.fromJSON(new ByteArrayInputStream(malformed), TodoEntity.class).title);
+  }
+
+  @Test
+  public void testInvalidInputReturnsDefault() {
+    TodoEntity fallback = new TodoEntity(0, "fallback", null, false);
+    assertSame(fallback, Json.fromJSON(stream("{\"id\":1.5}"), TodoEntity.class, fallback));
+    assertSame(fallback, Json.fromJSON(stream("{\"id\":1} trailing"), TodoEntity.class, fallback));
+    assertNull(Json.fromJSON(stream("{\"title\":"), TodoEntity.class));
+    assertNull(Json.fromJSON(stream(""), TodoEntity.class));
+  }
+
+  @Test
+  public void testListAndMapTypes() {
+    List<TodoEntity> todos = Json.fromJSONToList("[{\"id\":1},null,{\"id\":2}]", TodoEntity.class);
+    assertEquals(3, todos.size());
+    assertEquals(1, todos.get(0).id);
+    assertNull(todos.get(1));
+    assertEquals(2, todos.get(2).id);
+
+    Map<String, TodoMongoEntity> byKey = Json.fromJSONToMap("{\"a\":{\"id\":\"x\"}}", String.class,
+        TodoMongoEntity.class);
+    assertEquals("x", byKey.get("a").id);
+  }
+
+  @Test
+  public void testWritersAreReusedAcrossVirtualThreads() throws Exception {
+    TodoEntity todo = new TodoEntity(1, "Learn SQL", "Understand the basics of SQL", false);
+    Json.toBytes(todo);
+    long writersCreated = Json.writers.getCreated();
+    long buffersCreated = Json.buffers.getCreated();
+    // 每個 request 一個新的 virtual thread，一個接一個執行，每次都應該拿到 pool 裡同一組 writer / buffer
+    for (int i = 0; i < 100; i++) {
+      Thread thread = Thread.ofVirtual().start(() -> Json.toBytes(todo));
+      thread.join();
+    }
+    assertEquals(writersCreated, Json.writers.getCreated());
+    assertEquals(buffersCreated, Json.buffers.getCreated());
+  }
+
+  @Test
+  public void testReadersAreReusedAcrossVirtualThreads() throws Exception {
+    String json = "{\"id\":1,\"title\":\"Learn SQL\",\"completed\":true}";
+    Json.fromJSON(stream(json), TodoEntity.class);
+    long readersCreated = Json.readers.getCreated();
+    for (int i = 0; i < 100; i++) {
+      Thread thread = Thread.ofVirtual().start(() -> assertEquals(1, Json.fromJSON(stream(json), TodoEntity.class).id));
+      thread.join();
+    }
+    assertEquals(readersCreated, Json.readers.getCreated());
+  }
+}
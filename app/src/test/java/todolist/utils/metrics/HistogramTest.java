@@ -0,0 +1,40 @@
+package todolist.utils.metrics;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Map;
+
+public class HistogramTest {
+  @Test
+  public void testEmptyHistogram() {
+    Histogram histogram = new Histogram();
+    assertEquals(0, histogram.getCount());
+    assertEquals(0, histogram.getMean());
+    assertEquals(0, histogram.getPercentile(99));
+  }
+
+  @Test
+  public void testPercentilesAreBucketUpperBoundsCappedAtMax() {
+    Histogram histogram = new Histogram();
+    for (int i = 0; i < 90; i++) {
+      histogram.record(10); // bucket [8, 16)
+    }
+    for (int i = 0; i < 10; i++) {
+      histogram.record(1000); // bucket [512, 1024)
+    }
+    histogram.record(-5); // 負數當成 0
+
+    assertEquals(101, histogram.getCount());
+    assertEquals(1000, histogram.getMax());
+    assertEquals((90 * 10 + 10 * 1000) / 101, histogram.getMean());
+    assertEquals(15, histogram.getPercentile(50));
+    assertEquals(15, histogram.getPercentile(90));
+    assertEquals(1000, histogram.getPercentile(99)); // bucket 上界 1023 以 max 為上限
+
+    Map<String, Long> snapshot = histogram.snapshot("wait");
+    assertEquals(101L, (long) snapshot.get("wait.count"));
+    assertEquals(15L, (long) snapshot.get("wait.p50"));
+    assertEquals(1000L, (long) snapshot.get("wait.max"));
+  }
+}
@@ -0,0 +1,134 @@
+package todolist.utils.server;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class AdmissionHandlerTest {
+
+  private static HttpURLConnection get(HttpServer server, String path) throws Exception {
+    String url = "http://localhost:" + server.getAddress().getPort() + path;
+    return (HttpURLConnection) URI.create(url).toURL().openConnection();
+  }
+
+  @Test
+  public void testShedsWhenQueueTimeOrDepthExceeded() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch entered = new CountDownLatch(1);
+
+    HttpServer server = HttpServer.create(new InetSocketAddress(0), 0);
+    AdmissionHandler slow = new AdmissionHandler("/slow", exchange -> {
+      entered.countDown();
+      try {
+        release.await(5, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      exchange.sendResponseHeaders(200, -1);
+      exchange.close();
+    }, 1, 1, 300);
+    AdmissionHandler fast = new AdmissionHandler("/fast", exchange -> {
+      exchange.sendResponseHeaders(200, -1);
+      exchange.close();
+    }, 1, 1, 300);
+    server.createContext("/slow", slow);
+    server.createContext("/fast", fast);
+    ExecutorService executor = ExecutorMode.VIRTUAL.create(0);
+    server.setExecutor(executor);
+    server.start();
+
+    ExecutorService clients = Executors.newFixedThreadPool(3);
+    try {
+      // 佔住 /slow 唯一的名額
+      Future<Integer> first = clients.submit(() -> get(server, "/slow").getResponseCode());
+      assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+      // 第二個排隊, 等待超過 300ms 後被拒絕
+      Future<Integer> queued = clients.submit(() -> get(server, "/slow").getResponseCode());
+      while (slow.getQueued() == 0) {
+        Thread.sleep(10);
+      }
+
+      // queue 已滿, 第三個立刻被拒絕
+      HttpURLConnection rejected = get(server, "/slow");
+      assertEquals(503, rejected.getResponseCode());
+      assertEquals("1", rejected.getHeaderField("Retry-After"));
+
+      assertEquals(503, (int) queued.get(5, TimeUnit.SECONDS));
+
+      // /slow 被塞滿時 /fast 不受影響
+      assertEquals(200, get(server, "/fast").getResponseCode());
+
+      release.countDown();
+      assertEquals(200, (int) first.get(5, TimeUnit.SECONDS));
+
+      assertEquals(1L, (long) slow.getMetrics().get("admitted"));
+      assertEquals(1L, (long) slow.getMetrics().get("rejectedQueueFull"));
+      assertEquals(1L, (long) slow.getMetrics().get("rejectedQueueTimeout"));
+    } finally {
+      release.countDown();
+      clients.shutdownNow();
+      server.stop(0);
+      executor.shutdownNow();
+    }
+  }
+
+  // 名額空出來時, 排隊中的 request 要比剛到的先進入 (fair semaphore 不能被 tryAcquire 插隊)
+  @Test
+  public void testQueuedRequestIsServedBeforeLaterArrival() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch entered = new CountDownLatch(1);
+    List<String> order = new CopyOnWriteArrayList<>();
+    AdmissionHandler handler = new AdmissionHandler("/todos", exchange -> {
+      String name = Thread.currentThread().getName();
+      order.add(name);
+      if (order.size() == 1) {
+        entered.countDown();
+        try {
+          release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }, 1, 2, 5000);
+
+    // first 佔住唯一的名額, 返回之後馬上再送一個 request (晚到的)
+    Thread first = Thread.ofPlatform().name("first").start(() -> {
+      try {
+        handler.handle(null);
+        handler.handle(null);
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+    });
+    assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+    Thread queued = Thread.ofPlatform().name("queued").start(() -> {
+      try {
+        handler.handle(null);
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+    });
+    while (handler.getQueued() == 0) {
+      Thread.sleep(10);
+    }
+
+    release.countDown();
+    first.join(5000);
+    queued.join(5000);
+    assertEquals(List.of("first", "queued", "first"), order);
+    assertEquals(3L, (long) handler.getMetrics().get("admitted"));
+  }
+}
@@ -0,0 +1,219 @@
+package todolist.utils.server;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+public class CompressionHandlerTest {
+  private static final byte[] LARGE = "{\"title\":\"買牛奶\",\"description\":\"Understand the basics of SQL\"}\n"
+      .repeat(200).getBytes(StandardCharsets.UTF_8);
+  private static final byte[] SMALL = "{\"message\":\"ok\"}".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] RANDOM = new byte[4096];
+
+  static {
+    new Random(42).nextBytes(RANDOM);
+  }
+
+  private static HttpURLConnection get(HttpServer server, String path, String acceptEncoding) throws Exception {
+    String url = "http://localhost:" + server.getAddress().getPort() + path;
+    HttpURLConnection connection = (HttpURLConnection) URI.create(url).toURL().openConnection();
+    if (acceptEncoding != null) {
+      connection.setRequestProperty("Accept-Encoding", acceptEncoding);
+    }
+    return connection;
+  }
+
+  private static byte[] readBody(HttpURLConnection connection) throws Exception {
+    String encoding = connection.getHeaderField("Content-Encoding");
+    try (InputStream input = "gzip".equals(encoding) ? new GZIPInputStream(connection.getInputStream())
+        : "deflate".equals(encoding) ? new InflaterInputStream(connection.getInputStream())
+        : connection.getInputStream()) {
+      return input.readAllBytes();
+    }
+  }
+
+  private HttpServer start(CompressionHandler handler) throws Exception {
+    HttpServer server = HttpServer.create(new InetSocketAddress(0), 0);
+    server.createContext("/", handler);
+    ExecutorService executor = ExecutorMode.VIRTUAL.create(0);
+    server.setExecutor(executor);
+    server.start();
+    return server;
+  }
+
+  private CompressionHandler createHandler() {
+    return new CompressionHandler(exchange -> {
+      try {
+        String path = exchange.getRequestURI().getPath();
+        byte[] body = path.equals("/small") ? SMALL : path.equals("/random") ? RANDOM : LARGE;
+        if (path.equals("/short")) { // 寫的比 sendResponseHeaders 宣告的少
+          exchange.sendResponseHeaders(200, body.length);
+          try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body, 0, body.length / 2);
+          }
+        } else if (path.equals("/chunked-failure")) { // 已經送出一部分之後失敗
+          exchange.sendResponseHeaders(200, 0);
+          try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body, 0, body.length / 2);
+            os.flush();
+            throw new IllegalStateException("export failed");
+          }
+        } else if (path.equals("/chunked")) {
+          exchange.sendResponseHeaders(200, 0);
+          try (OutputStream os = exchange.getResponseBody()) {
+            for (int i = 0; i < body.length; i += 1000) {
+              os.write(body, i, Math.min(1000, body.length - i));
+              os.flush();
+            }
+          }
+        } else {
+          exchange.sendResponseHeaders(200, body.length);
+          try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+          }
+        }
+      } finally {
+        exchange.close();
+      }
+    }, 1024, 1);
+  }
+
+  @Test
+  public void testBufferedResponsesKeepExactContentLength() throws Exception {
+    CompressionHandler handler = createHandler();
+    HttpServer server = start(handler);
+    try {
+      for (String encoding : List.of("gzip", "deflate")) {
+        HttpURLConnection connection = get(server, "/large", encoding);
+        assertEquals(200, connection.getResponseCode());
+        assertEquals(encoding, connection.getHeaderField("Content-Encoding"));
+        assertNull(connection.getHeaderField("Transfer-Encoding"));
+        int contentLength = Integer.parseInt(connection.getHeaderField("Content-Length"));
+        assertTrue(contentLength < LARGE.length / 4, "compressed length " + contentLength);
+        assertArrayEquals(LARGE, readBody(connection));
+      }
+
+      assertEquals(2L * LARGE.length, (long) handler.getMetrics().get("bytesIn"));
+      assertEquals(2L, (long) handler.getMetrics().get("compressed"));
+      assertTrue(handler.getMetrics().get("ratioPercent") < 25);
+    } finally {
+      server.stop(0);
+    }
+  }
+
+  @Test
+  public void testChunkedResponsesAreStreamed() throws Exception {
+    HttpServer server = start(createHandler());
+    try {
+      HttpURLConnection connection = get(server, "/chunked", "gzip;q=0.5, deflate;q=0.8");
+      assertEquals("deflate", connection.getHeaderField("Content-Encoding"));
+      assertEquals("chunked", connection.getHeaderField("Transfer-Encoding"));
+      assertArrayEquals(LARGE, readBody(connection));
+    } finally {
+      server.stop(0);
+    }
+  }
+
+  @Test
+  public void testLengthMismatchFailsTheExchange() throws Exception {
+    CompressionHandler handler = createHandler();
+    HttpServer server = start(handler);
+    try {
+      // 沒有送出宣告長度不符的 response, client 只會看到連線被關閉
+      assertThrows(IOException.class, () -> get(server, "/short", "gzip").getResponseCode());
+      assertEquals(0L, (long) handler.getMetrics().get("compressed"));
+
+      HttpURLConnection connection = get(server, "/large", "gzip");
+      assertArrayEquals(LARGE, readBody(connection));
+    } finally {
+      server.stop(0);
+    }
+  }
+
+  @Test
+  public void testFailedChunkedResponseIsNotCompleted() throws Exception {
+    CompressionHandler handler = createHandler();
+    HttpServer server = start(handler);
+    try {
+      for (String encoding : List.of("gzip", "deflate")) {
+        HttpURLConnection connection = get(server, "/chunked-failure", encoding);
+        assertEquals(200, connection.getResponseCode());
+        assertEquals(encoding, connection.getHeaderField("Content-Encoding"));
+        // 沒有結尾的 chunk 和 gzip / deflate trailer, 讀完之前就會失敗, 不會得到看起來完整的一半資料
+        assertThrows(IOException.class, () -> readBody(connection));
+      }
+      assertEquals(0L, (long) handler.getMetrics().get("compressed"));
+    } finally {
+      server.stop(0);
+    }
+  }
+
+  @Test
+  public void testSkipsSmallIncompressibleAndUnsupported() throws Exception {
+    CompressionHandler handler = createHandler();
+    HttpServer server = start(handler);
+    try {
+      HttpURLConnection small = get(server, "/small", "gzip");
+      assertNull(small.getHeaderField("Content-Encoding"));
+      assertArrayEquals(SMALL, readBody(small));
+
+      HttpURLConnection random = get(server, "/random", "gzip");
+      assertNull(random.getHeaderField("Content-Encoding"));
+      assertEquals(String.valueOf(RANDOM.length), random.getHeaderField("Content-Length"));
+      assertArrayEquals(RANDOM, readBody(random));
+
+      HttpURLConnection identity = get(server, "/large", "br, gzip;q=0");
+      assertNull(identity.getHeaderField("Content-Encoding"));
+      assertEquals("Accept-Encoding", identity.getHeaderField("Vary"));
+      assertArrayEquals(LARGE, readBody(identity));
+
+      assertEquals(1L, (long) handler.getMetrics().get("skippedSmall"));
+      assertEquals(1L, (long) handler.getMetrics().get("skippedIncompressible"));
+      assertEquals(0L, (long) handler.getMetrics().get("compressed"));
+    } finally {
+      server.stop(0);
+    }
+  }
+
+  @Test
+  public void testNegotiate() {
+    assertNull(CompressionHandler.negotiate(null));
+    assertNull(CompressionHandler.negotiate(List.of("identity")));
+    assertEquals(CompressionHandler.Encoding.GZIP, CompressionHandler.negotiate(List.of("gzip, deflate, br")));
+    assertEquals(CompressionHandler.Encoding.GZIP, CompressionHandler.negotiate(List.of("*")));
+    assertEquals(CompressionHandler.Encoding.DEFLATE, CompressionHandler.negotiate(List.of("deflate")));
+    assertEquals(CompressionHandler.Encoding.DEFLATE, CompressionHandler.negotiate(List.of("gzip;q=0, *")));
+    assertNull(CompressionHandler.negotiate(List.of("*;q=0")));
+  }
+
+  // pool 裡的 Deflater 重複使用之後輸出還是正確的
+  @Test
+  public void testPooledDeflatersAreReused() throws Exception {
+    CompressionHandler handler = createHandler();
+    for (int i = 0; i < 5; i++) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      try (CompressingOutputStream stream = handler.compress(out, CompressionHandler.Encoding.GZIP)) {
+        stream.write(LARGE);
+      }
+      try (InputStream input = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+        assertArrayEquals(LARGE, input.readAllBytes());
+      }
+    }
+    assertEquals(1L, (long) handler.getMetrics().get("deflatersCreated"));
+  }
+}
@@ -0,0 +1,78 @@
+package todolist.utils.server;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import todolist.controllers.TodoController;
+
+// 用一個會 sleep 的 repository 模擬慢的 JDBC 查詢, 檢查 POOL / VIRTUAL 不會讓 request 排隊在同一條 thread
+// 看的是同時進行中的查詢數量, 不是耗時, 結果不受機器快慢影響
+// latency / throughput 的量測在 jmh 的 ExecutorModeBenchmark
+public class ExecutorModeTest {
+  private static final int QUERY_LATENCY_MS = 100;
+  private static final int REQUESTS = 8;
+
+  // 同時送出 REQUESTS 個 request, 返回同時進行中的查詢數量的最大值
+  private static int runConcurrentRequests(ExecutorMode mode) throws Exception {
+    SlowTodoRepository repository = new SlowTodoRepository(QUERY_LATENCY_MS);
+    HttpServer server = HttpServer.create(new InetSocketAddress(0), 0);
+    server.createContext("/v1/todos", new TodoController(repository));
+    ExecutorService executor = mode.create(REQUESTS);
+    server.setExecutor(executor);
+    server.start();
+
+    String url = "http://localhost:" + server.getAddress().getPort() + "/v1/todos";
+    ExecutorService clients = Executors.newFixedThreadPool(REQUESTS);
+    try {
+      List<Future<Integer>> futures = new ArrayList<>();
+      for (int i = 0; i < REQUESTS; i++) {
+        futures.add(clients.submit(() -> {
+          HttpURLConnection connection = (HttpURLConnection) URI.create(url).toURL().openConnection();
+          connection.setRequestProperty("Content-Type", "application/json");
+          connection.getInputStream().readAllBytes();
+          return connection.getResponseCode();
+        }));
+      }
+      for (Future<Integer> future : futures) {
+        assertEquals(200, (int) future.get());
+      }
+      return repository.getPeakInFlight();
+    } finally {
+      clients.shutdownNow();
+      server.stop(0);
+      if (executor != null) {
+        executor.shutdownNow();
+      }
+    }
+  }
+
+  @Test
+  public void testParseOrDefault() {
+    assertEquals(ExecutorMode.VIRTUAL, ExecutorMode.parseOrDefault("virtual", ExecutorMode.INLINE));
+    assertEquals(ExecutorMode.POOL, ExecutorMode.parseOrDefault(" Pool ", ExecutorMode.INLINE));
+    assertEquals(ExecutorMode.INLINE, ExecutorMode.parseOrDefault(null, ExecutorMode.INLINE));
+    assertEquals(ExecutorMode.VIRTUAL, ExecutorMode.parseOrDefault("unknown", ExecutorMode.VIRTUAL));
+    assertNull(ExecutorMode.INLINE.create(4));
+  }
+
+  @Test
+  public void testConcurrentModesDoNotSerializeSlowQueries() throws Exception {
+    // INLINE 模式下所有 request 排隊在同一條 thread, 查詢一次只有一個
+    assertEquals(1, runConcurrentRequests(ExecutorMode.INLINE));
+    // POOL (大小 = REQUESTS) 和 VIRTUAL 的查詢會同時進行
+    int pool = runConcurrentRequests(ExecutorMode.POOL);
+    assertTrue(pool > 1, "POOL peak in-flight " + pool);
+    int virtual = runConcurrentRequests(ExecutorMode.VIRTUAL);
+    assertTrue(virtual > 1, "VIRTUAL peak in-flight " + virtual);
+  }
+}
@@ -0,0 +1,44 @@
+package todolist.utils.server;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class MetricsHandlerTest {
+  @Test
+  public void testReturnsRegisteredMetricsAsJson() throws Exception {
+    AtomicLong admitted = new AtomicLong(3);
+    MetricsHandler metrics = new MetricsHandler()
+        .register("v1.compression", () -> Map.of("compressed", 2L, "bytesIn", 100L))
+        .register("v1.admission", () -> Map.of("admitted", admitted.get()));
+
+    HttpServer server = HttpServer.create(new InetSocketAddress(0), 0);
+    server.createContext("/metrics", metrics);
+    server.start();
+    try {
+      String url = "http://localhost:" + server.getAddress().getPort() + "/metrics";
+      admitted.set(5); // 每次 request 都重新讀取 getMetrics
+      HttpURLConnection connection = (HttpURLConnection) URI.create(url).toURL().openConnection();
+      assertEquals(200, connection.getResponseCode());
+      assertEquals("application/json; charset=UTF-8", connection.getHeaderField("Content-Type"));
+      try (InputStream input = connection.getInputStream()) {
+        assertEquals("{\"v1.admission\":{\"admitted\":5},\"v1.compression\":{\"bytesIn\":100,\"compressed\":2}}",
+            new String(input.readAllBytes(), StandardCharsets.UTF_8));
+      }
+
+      HttpURLConnection post = (HttpURLConnection) URI.create(url).toURL().openConnection();
+      post.setRequestMethod("POST");
+      assertEquals(405, post.getResponseCode());
+    } finally {
+      server.stop(0);
+    }
+  }
+}
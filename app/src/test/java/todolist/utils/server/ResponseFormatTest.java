@@ -0,0 +1,40 @@
+package todolist.utils.server;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+public class ResponseFormatTest {
+  private static ResponseFormat negotiate(String... headers) {
+    return ResponseFormat.negotiate(List.of(headers));
+  }
+
+  @Test
+  public void testJsonIsDefault() {
+    assertEquals(ResponseFormat.JSON, ResponseFormat.negotiate(null));
+    assertEquals(ResponseFormat.JSON, negotiate("*/*"));
+    assertEquals(ResponseFormat.JSON, negotiate("application/*"));
+    assertEquals(ResponseFormat.JSON, negotiate("text/html"));
+    assertEquals(ResponseFormat.JSON, negotiate("text/html,application/xhtml+xml,*/*;q=0.8"));
+    // q 值相同時選 JSON
+    assertEquals(ResponseFormat.JSON, negotiate("application/x-todo-binary, application/json"));
+  }
+
+  @Test
+  public void testBinaryWhenPreferred() {
+    assertEquals(ResponseFormat.BINARY, negotiate("application/x-todo-binary"));
+    assertEquals(ResponseFormat.BINARY, negotiate("Application/X-Todo-Binary"));
+    assertEquals(ResponseFormat.BINARY, negotiate("application/json;q=0.5, application/x-todo-binary"));
+    assertEquals(ResponseFormat.BINARY, negotiate("application/json; q=0.5", "application/x-todo-binary; q=0.9"));
+    assertEquals(ResponseFormat.BINARY, negotiate("application/x-todo-binary, */*;q=0.1"));
+  }
+
+  @Test
+  public void testMostSpecificRangeWins() {
+    // application/json 被明確排除時，*/* 不會讓 JSON 的 q 值變高
+    assertEquals(ResponseFormat.BINARY, negotiate("application/json;q=0, */*, application/x-todo-binary"));
+    assertEquals(ResponseFormat.JSON, negotiate("application/x-todo-binary;q=0, */*"));
+    assertEquals(ResponseFormat.BINARY, negotiate("application/x-todo-binary;q=abc, application/json;q=0.9"));
+  }
+}
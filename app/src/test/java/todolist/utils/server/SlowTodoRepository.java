@@ -0,0 +1,82 @@
+package todolist.utils.server;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import todolist.entities.TodoEntity;
+import todolist.repositories.postgresql.TodoRepository;
+
+// 不需要 Postgres 的 repository, 每次查詢固定 sleep latencyMs 模擬慢的 JDBC 查詢
+// 同時記錄進行中的查詢數量和最大值, ExecutorModeTest 用來檢查查詢有沒有同時進行
+// (ExecutorModeTest 和 jmh 的 ExecutorModeBenchmark 共用)
+public class SlowTodoRepository implements TodoRepository {
+  private final List<TodoEntity> todos = List.of(new TodoEntity(1, "title", "description", false));
+  private final long latencyMs;
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicInteger peakInFlight = new AtomicInteger();
+
+  public SlowTodoRepository(long latencyMs) {
+    this.latencyMs = latencyMs;
+  }
+
+  public int getPeakInFlight() {
+    return peakInFlight.get();
+  }
+
+  private void sleep() {
+    peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+    try {
+      Thread.sleep(latencyMs);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      inFlight.decrementAndGet();
+    }
+  }
+
+  @Override
+  public Optional<TodoEntity> createTodo(TodoEntity todo) {
+    sleep();
+    return Optional.of(todo);
+  }
+
+  @Override
+  public List<TodoEntity> getTodos() {
+    return getTodos(Map.of());
+  }
+
+  @Override
+  public List<TodoEntity> getTodos(Map<String, String> params) {
+    sleep();
+    return todos;
+  }
+
+  @Override
+  public Optional<TodoEntity> getTodoById(int todoId) {
+    sleep();
+    return Optional.of(todos.get(0));
+  }
+
+  @Override
+  public Optional<TodoEntity> updateTodo(int todoId, TodoEntity todo) {
+    sleep();
+    return Optional.of(todo);
+  }
+
+  @Override
+  public Optional<TodoEntity> deleteTodo(int todoId) {
+    sleep();
+    return Optional.of(todos.get(0));
+  }
+
+  @Override
+  public int exportTodos(TodoWriter writer) throws IOException {
+    sleep();
+    for (TodoEntity todo : todos) {
+      writer.write(todo);
+    }
+    return todos.size();
+  }
+}